@@ -0,0 +1,93 @@
+package com.garrizon.mail;
+
+import com.garrizon.model.Money;
+import com.garrizon.model.OrderStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders the bundled templates for 1000 different customers in turn, with
+ * models shaped like the ones {@code EmailService} builds. Scores are emails
+ * per minute per thread, to set against the 100k per minute target.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EmailTemplateEngineBenchmark {
+
+    private static final int CUSTOMERS = 1000;
+    private static final String STOREFRONT_URL = "https://garrizon.com";
+
+    private EmailTemplateEngine engine;
+    private Map<String, ?>[] confirmations;
+    private Map<String, ?>[] statusUpdates;
+    private Map<String, ?>[] reminders;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        engine = new EmailTemplateEngine("classpath:templates/email/");
+        confirmations = new Map[CUSTOMERS];
+        statusUpdates = new Map[CUSTOMERS];
+        reminders = new Map[CUSTOMERS];
+        for (int i = 0; i < CUSTOMERS; i++) {
+            String name = "Customer " + i + " & Family";
+            String orderNumber = "GZ-" + (100_000 + i);
+            confirmations[i] = Map.of(
+                    "customerName", name,
+                    "orderNumber", orderNumber,
+                    "items", List.of(
+                            Map.of("name", "Jollof Rice Mix", "quantity", 2, "subtotal", Money.ofMinor(1998 + i)),
+                            Map.of("name", "Plantain Chips <Large>", "quantity", 1, "subtotal", Money.ofMinor(499)),
+                            Map.of("name", "Palm Oil 1L", "quantity", 3, "subtotal", Money.ofMinor(2697))),
+                    "currency", "$",
+                    "totalAmount", Money.ofMinor(5194 + i),
+                    "shippingAddress", i + " Market Street, Lagos",
+                    "storefrontUrl", STOREFRONT_URL);
+            statusUpdates[i] = Map.of(
+                    "customerName", name,
+                    "orderNumber", orderNumber,
+                    "status", OrderStatus.values()[i % OrderStatus.values().length],
+                    "storefrontUrl", STOREFRONT_URL);
+            reminders[i] = Map.of(
+                    "firstName", "Customer" + i,
+                    "storefrontUrl", STOREFRONT_URL);
+        }
+    }
+
+    @Benchmark
+    public RenderedEmail orderConfirmation() {
+        return engine.render("order-confirmation", confirmations[nextCustomer()]);
+    }
+
+    @Benchmark
+    public RenderedEmail orderStatusUpdate() {
+        return engine.render("order-status-update", statusUpdates[nextCustomer()]);
+    }
+
+    @Benchmark
+    public RenderedEmail abandonedCart() {
+        return engine.render("abandoned-cart", reminders[nextCustomer()]);
+    }
+
+    private int nextCustomer() {
+        next = next + 1 == CUSTOMERS ? 0 : next + 1;
+        return next;
+    }
+}
@@ -0,0 +1,92 @@
+package com.garrizon.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.garrizon.resilience.TokenBucket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link RateLimitFilter}: a search request from one of
+ * 1024 clients through the filter, against the same request handed straight
+ * to the chain, plus the bare bucket operation under contention. Limits are
+ * set high enough that every request is let through. Pass {@code -t} to run
+ * it from several threads; on fewer cores than threads the average includes
+ * time spent descheduled.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimitFilterBenchmark {
+
+    private static final int CLIENTS = 1024;
+    private static final FilterChain CHAIN = (request, response) -> { };
+
+    @State(Scope.Benchmark)
+    public static class Limiter {
+        RateLimitFilter filter;
+        MockHttpServletRequest[] requests;
+        TokenBucket sharedBucket;
+
+        @Setup
+        public void setUp() {
+            filter = new RateLimitFilter(null, new ObjectMapper());
+            ReflectionTestUtils.setField(filter, "enabled", true);
+            ReflectionTestUtils.setField(filter, "maxTrackedClients", 100_000);
+            ReflectionTestUtils.setField(filter, "authPermitsPerMinute", 10);
+            ReflectionTestUtils.setField(filter, "authBurst", 5);
+            ReflectionTestUtils.setField(filter, "searchPermitsPerMinute", Integer.MAX_VALUE);
+            ReflectionTestUtils.setField(filter, "searchBurst", 20);
+            ReflectionTestUtils.setField(filter, "checkoutPermitsPerMinute", 20);
+            ReflectionTestUtils.setField(filter, "checkoutBurst", 10);
+            filter.init();
+
+            requests = new MockHttpServletRequest[CLIENTS];
+            for (int i = 0; i < CLIENTS; i++) {
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+                request.setParameter("search", "rice");
+                request.setRemoteAddr("10.0." + (i >> 8) + "." + (i & 0xff));
+                requests[i] = request;
+            }
+            sharedBucket = new TokenBucket(1, Integer.MAX_VALUE, System.nanoTime());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        final MockHttpServletResponse response = new MockHttpServletResponse();
+        int next;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse withoutFilter(Limiter limiter, Client client) throws Exception {
+        CHAIN.doFilter(limiter.requests[client.next++ & (CLIENTS - 1)], client.response);
+        return client.response;
+    }
+
+    @Benchmark
+    public MockHttpServletResponse throughFilter(Limiter limiter, Client client) throws Exception {
+        limiter.filter.doFilter(limiter.requests[client.next++ & (CLIENTS - 1)], client.response, CHAIN);
+        return client.response;
+    }
+
+    @Benchmark
+    public long sharedBucket(Limiter limiter) {
+        return limiter.sharedBucket.tryAcquire(System.nanoTime());
+    }
+}
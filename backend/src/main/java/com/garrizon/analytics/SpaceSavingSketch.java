@@ -0,0 +1,85 @@
+package com.garrizon.analytics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitter summary (Metwally et al.) over long keys. It keeps
+ * at most {@code capacity} counters; when a new key arrives and all are in
+ * use, the smallest counter is taken over and its count becomes the new key's
+ * error. Any key whose true count exceeds total/capacity is guaranteed to be
+ * tracked, and each count overestimates the truth by at most its error.
+ * <p>
+ * Not thread-safe; callers synchronize. Eviction scans for the minimum,
+ * which is cheap at the capacities used here.
+ */
+public class SpaceSavingSketch {
+
+    public static final class Counter {
+        private long count;
+        private long error;
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<Long, Counter> counters;
+
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void add(long key, long weight) {
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counter = new Counter();
+            counter.count = weight;
+            counters.put(key, counter);
+            return;
+        }
+
+        Map.Entry<Long, Counter> min = null;
+        for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+            if (min == null || entry.getValue().count < min.getValue().count) {
+                min = entry;
+            }
+        }
+        Counter evicted = counters.remove(min.getKey());
+        evicted.error = evicted.count;
+        evicted.count += weight;
+        counters.put(key, evicted);
+    }
+
+    /**
+     * Upper bound on the count of any key that is not tracked.
+     */
+    public long untrackedBound() {
+        if (counters.size() < capacity) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (Counter counter : counters.values()) {
+            min = Math.min(min, counter.count);
+        }
+        return min;
+    }
+
+    public Map<Long, Counter> counters() {
+        return counters;
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+}
@@ -0,0 +1,143 @@
+package com.garrizon.analytics;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Units sold per product over sliding windows, kept as a ring of hourly
+ * {@link SpaceSavingSketch}es. A slot is reused once its hour falls out of
+ * the ring, so memory is bounded by {@code hours * capacity} counters
+ * regardless of traffic. A window query merges the slots it covers.
+ */
+public class TopSellersTracker {
+
+    /**
+     * Upper bound on units sold; the true value is at most {@code errorBound}
+     * lower. Products absent from a full hourly slot are charged that slot's
+     * smallest count, as Space-Saving cannot rule out sales of that size.
+     */
+    public static final class Estimate {
+        private final long productId;
+        private final long unitsSold;
+        private final long errorBound;
+
+        Estimate(long productId, long unitsSold, long errorBound) {
+            this.productId = productId;
+            this.unitsSold = unitsSold;
+            this.errorBound = errorBound;
+        }
+
+        public long getProductId() {
+            return productId;
+        }
+
+        public long getUnitsSold() {
+            return unitsSold;
+        }
+
+        public long getErrorBound() {
+            return errorBound;
+        }
+    }
+
+    private static final class Slot {
+        private long hour = Long.MIN_VALUE;
+        private final SpaceSavingSketch sketch;
+
+        private Slot(int capacity) {
+            this.sketch = new SpaceSavingSketch(capacity);
+        }
+    }
+
+    private final Slot[] ring;
+
+    public TopSellersTracker(int hours, int capacity) {
+        this.ring = new Slot[hours];
+        for (int i = 0; i < hours; i++) {
+            ring[i] = new Slot(capacity);
+        }
+    }
+
+    public int getHours() {
+        return ring.length;
+    }
+
+    public void record(long productId, long quantity, LocalDateTime time) {
+        long hour = epochHour(time);
+        Slot slot = ring[(int) Math.floorMod(hour, (long) ring.length)];
+        synchronized (slot) {
+            if (slot.hour > hour) {
+                return; // Older than the ring covers
+            }
+            if (slot.hour != hour) {
+                slot.sketch.clear();
+                slot.hour = hour;
+            }
+            slot.sketch.add(productId, quantity);
+        }
+    }
+
+    public List<Estimate> top(int windowHours, int limit, LocalDateTime now) {
+        long currentHour = epochHour(now);
+        long oldestHour = currentHour - Math.min(windowHours, ring.length) + 1;
+
+        Map<Long, long[]> merged = new HashMap<>();
+        List<Set<Long>> fullSlotKeys = new ArrayList<>();
+        List<Long> fullSlotBounds = new ArrayList<>();
+        for (Slot slot : ring) {
+            synchronized (slot) {
+                if (slot.hour < oldestHour || slot.hour > currentHour) {
+                    continue;
+                }
+                long bound = slot.sketch.untrackedBound();
+                if (bound > 0) {
+                    fullSlotKeys.add(new HashSet<>(slot.sketch.counters().keySet()));
+                    fullSlotBounds.add(bound);
+                }
+                slot.sketch.counters().forEach((productId, counter) -> {
+                    long[] totals = merged.computeIfAbsent(productId, id -> new long[2]);
+                    totals[0] += counter.getCount();
+                    totals[1] += counter.getError();
+                });
+            }
+        }
+
+        // A product missing from a full slot may still have sold up to that slot's minimum there
+        for (int i = 0; i < fullSlotKeys.size(); i++) {
+            Set<Long> keys = fullSlotKeys.get(i);
+            long bound = fullSlotBounds.get(i);
+            merged.forEach((productId, totals) -> {
+                if (!keys.contains(productId)) {
+                    totals[0] += bound;
+                    totals[1] += bound;
+                }
+            });
+        }
+
+        List<Estimate> estimates = new ArrayList<>(merged.size());
+        merged.forEach((productId, totals) -> estimates.add(new Estimate(productId, totals[0], totals[1])));
+        estimates.sort(Comparator.comparingLong(Estimate::getUnitsSold).reversed()
+                .thenComparingLong(Estimate::getProductId));
+        return estimates.size() > limit ? new ArrayList<>(estimates.subList(0, limit)) : estimates;
+    }
+
+    public void clear() {
+        for (Slot slot : ring) {
+            synchronized (slot) {
+                slot.sketch.clear();
+                slot.hour = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    private static long epochHour(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 3600;
+    }
+}
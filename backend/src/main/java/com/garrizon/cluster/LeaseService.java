@@ -0,0 +1,258 @@
+package com.garrizon.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease-based locks in the {@code scheduler_leases} table, so replicas can
+ * coordinate scheduled work without another service. A lease belongs to one
+ * node until it expires; holders renew theirs in the background, and a node
+ * that dies simply stops renewing, so its leases fall to the others after
+ * {@code cluster.leases.ttl-ms}. Expiry is judged by the database clock.
+ * Renewal runs on its own thread, so a long job on the shared scheduler
+ * thread cannot starve it and let the job's own leases lapse.
+ * <p>
+ * Each node also holds a {@code node:<id>} membership lease, which is how
+ * {@link #acquireShards} knows how many nodes share the work.
+ */
+@Component
+@Slf4j
+public class LeaseService {
+
+    private static final String NODE_PREFIX = "node:";
+
+    private static final String CREATE_SQL =
+            "INSERT IGNORE INTO scheduler_leases (name, owner, expires_at) VALUES (?, NULL, '1970-01-01 00:00:01')";
+
+    // MySQL assigns left to right, so acquired_at is computed from the previous owner and expiry.
+    // Connector/J reports found rather than changed rows, so a matching renewal always counts as 1.
+    private static final String ACQUIRE_SQL =
+            "UPDATE scheduler_leases SET acquired_at = IF(owner = ? AND expires_at >= NOW(3), acquired_at, NOW(3)), " +
+            "owner = ?, expires_at = NOW(3) + INTERVAL ? MICROSECOND " +
+            "WHERE name = ? AND (owner = ? OR owner IS NULL OR expires_at < NOW(3))";
+
+    private static final String RELEASE_SQL =
+            "UPDATE scheduler_leases SET owner = NULL, expires_at = '1970-01-01 00:00:01' WHERE name = ? AND owner = ?";
+
+    // A lease that will lapse before the next renewal is as good as lost
+    private static final String HOLDS_SQL =
+            "SELECT COUNT(*) FROM scheduler_leases WHERE name = ? AND owner = ? " +
+            "AND expires_at >= NOW(3) + INTERVAL ? MICROSECOND";
+
+    private static final String HOLD_UNTIL_SQL =
+            "UPDATE scheduler_leases SET expires_at = GREATEST(expires_at, acquired_at + INTERVAL ? MICROSECOND) " +
+            "WHERE name = ? AND owner = ?";
+
+    private static final String COUNT_LIVE_SQL =
+            "SELECT COUNT(*) FROM scheduler_leases WHERE name LIKE ? AND expires_at >= NOW(3)";
+
+    private static final String PURGE_NODES_SQL =
+            "DELETE FROM scheduler_leases WHERE name LIKE 'node:%' AND expires_at < NOW(3) - INTERVAL 1 DAY";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    private final Duration ttl;
+    private final Duration exclusiveWindow;
+    private final Duration renewInterval;
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lease-renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Leases this node keeps renewing, with the duration each renewal extends them by
+    private final Map<String, Duration> held = new ConcurrentHashMap<>();
+    private final Set<String> knownRows = ConcurrentHashMap.newKeySet();
+
+    public LeaseService(JdbcTemplate jdbcTemplate,
+                        @Value("${cluster.leases.ttl-ms:30000}") long ttlMs,
+                        @Value("${cluster.leases.exclusive-window-ms:600000}") long exclusiveWindowMs,
+                        @Value("${cluster.leases.renew-interval-ms:10000}") long renewIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = Duration.ofMillis(ttlMs);
+        this.exclusiveWindow = Duration.ofMillis(exclusiveWindowMs);
+        this.renewInterval = Duration.ofMillis(renewIntervalMs);
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @PostConstruct
+    public void start() {
+        renewer.scheduleWithFixedDelay(this::renew, renewInterval.toMillis(), renewInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        jdbcTemplate.update(PURGE_NODES_SQL);
+        tryAcquire(NODE_PREFIX + nodeId, ttl);
+        log.info("Joined scheduler cluster as {}", nodeId);
+    }
+
+    /**
+     * Acquires the lease, or extends it when this node already holds it. On
+     * success it is renewed in the background until {@link #release}.
+     */
+    public boolean tryAcquire(String name, Duration leaseTtl) {
+        if (knownRows.add(name)) {
+            jdbcTemplate.update(CREATE_SQL, name);
+        }
+        boolean acquired = extend(name, leaseTtl);
+        if (acquired) {
+            held.put(name, leaseTtl);
+        } else {
+            held.remove(name);
+        }
+        return acquired;
+    }
+
+    public void release(String name) {
+        held.remove(name);
+        jdbcTemplate.update(RELEASE_SQL, name, nodeId);
+    }
+
+    /**
+     * Asks the database rather than trusting local state, since a lease can
+     * lapse without this node noticing until its next renewal.
+     */
+    public boolean isHeld(String name) {
+        if (!held.containsKey(name)) {
+            return false;
+        }
+        Integer count = jdbcTemplate.queryForObject(HOLDS_SQL, Integer.class, name, nodeId,
+                renewInterval.toNanos() / 1000);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Runs a cluster-wide task on at most one node per
+     * {@code cluster.leases.exclusive-window-ms}: the lease is taken for the
+     * whole window and left to expire rather than released, so nodes whose
+     * cron fires a moment later skip the run instead of repeating it.
+     *
+     * @return whether this node ran the task
+     */
+    public boolean runExclusively(String name, Runnable task) {
+        if (!tryAcquire(name, exclusiveWindow)) {
+            log.debug("Skipping {}: another node holds the lease", name);
+            return false;
+        }
+        try {
+            task.run();
+        } finally {
+            held.remove(name);
+        }
+        return true;
+    }
+
+    /**
+     * Leases this node's share of {@code shardCount} shards of a job: up to
+     * ceil(shards / live nodes), taken from shards no other node holds. When
+     * the run ends, pass the shards it finished to {@link #finishShards} and
+     * the rest to {@link #releaseShards}, so late or new nodes pick up only
+     * what is left.
+     */
+    public List<Integer> acquireShards(String job, int shardCount) {
+        int liveNodes = Math.max(1, countLive(NODE_PREFIX));
+        int target = (shardCount + liveNodes - 1) / liveNodes;
+
+        List<Integer> shards = new ArrayList<>(target);
+        // Start at a node-specific offset so simultaneous nodes don't all race for shard 0
+        int offset = Math.floorMod(nodeId.hashCode(), shardCount);
+        for (int i = 0; i < shardCount && shards.size() < target; i++) {
+            int shard = (offset + i) % shardCount;
+            if (tryAcquire(shardLease(job, shard), ttl)) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    public void releaseShards(String job, List<Integer> shards) {
+        for (Integer shard : shards) {
+            release(shardLease(job, shard));
+        }
+    }
+
+    /**
+     * Stops renewing finished shards but keeps them leased until
+     * {@code cluster.leases.exclusive-window-ms} after they were taken, so a
+     * node whose cron fires a little later does not run them again.
+     */
+    public void finishShards(String job, List<Integer> shards) {
+        for (Integer shard : shards) {
+            String name = shardLease(job, shard);
+            held.remove(name);
+            jdbcTemplate.update(HOLD_UNTIL_SQL, exclusiveWindow.toNanos() / 1000, name, nodeId);
+        }
+    }
+
+    /**
+     * True while this node still holds the shard; long-running jobs check it
+     * between chunks and stop once a lease has been lost.
+     */
+    public boolean holdsShard(String job, int shard) {
+        return isHeld(shardLease(job, shard));
+    }
+
+    private void renew() {
+        held.forEach((name, leaseTtl) -> {
+            boolean renewed;
+            try {
+                renewed = extend(name, leaseTtl);
+            } catch (RuntimeException e) {
+                log.warn("Failed to renew lease {}: {}", name, e.getMessage());
+                return; // Try again next round; the lease only lapses once its TTL runs out
+            }
+            if (!renewed && held.remove(name) != null) {
+                log.warn("Lost lease {} to another node", name);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void leave() {
+        renewer.shutdownNow();
+        for (String name : new ArrayList<>(held.keySet())) {
+            try {
+                release(name);
+            } catch (RuntimeException e) {
+                log.debug("Could not release lease {} on shutdown: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private boolean extend(String name, Duration leaseTtl) {
+        return jdbcTemplate.update(ACQUIRE_SQL, nodeId, nodeId, leaseTtl.toNanos() / 1000, name, nodeId) == 1;
+    }
+
+    private int countLive(String prefix) {
+        Integer count = jdbcTemplate.queryForObject(COUNT_LIVE_SQL, Integer.class, prefix + "%");
+        return count != null ? count : 0;
+    }
+
+    private static String shardLease(String job, int shard) {
+        return job + ":shard:" + shard;
+    }
+}
@@ -1,6 +1,7 @@
 package com.garrizon.config;
 
 import com.garrizon.model.Category;
+import com.garrizon.model.Money;
 import com.garrizon.model.Product;
 import com.garrizon.model.User;
 import com.garrizon.model.Role;
@@ -9,10 +10,9 @@ import com.garrizon.repository.ProductRepository;
 import com.garrizon.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
 
@@ -28,6 +28,7 @@ public class DataSeeder implements CommandLineRunner {
         private final CategoryRepository categoryRepository;
         private final ProductRepository productRepository;
         private final UserRepository userRepository;
+        private final PasswordEncoder passwordEncoder;
 
         @Override
         public void run(String... args) throws Exception {
@@ -85,7 +86,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Golden Harvest Wheat")
                                                 .slug("golden-harvest-wheat")
                                                 .description("Premium hard wheat perfect for breads and pastries.")
-                                                .price(new BigDecimal("4.99"))
+                                                .price(Money.of("4.99"))
                                                 .imageUrl("https://picsum.photos/seed/wheat/400/300")
                                                 .category(getCat.apply("grains"))
                                                 .stock(100)
@@ -95,7 +96,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Sunburst Millet")
                                                 .slug("sunburst-millet")
                                                 .description("Light, gluten‑free millet ideal for salads.")
-                                                .price(new BigDecimal("3.49"))
+                                                .price(Money.of("3.49"))
                                                 .imageUrl("https://picsum.photos/seed/millet/400/300")
                                                 .category(getCat.apply("grains"))
                                                 .stock(80)
@@ -105,7 +106,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Sweet Terra Yam")
                                                 .slug("sweet-terra-yam")
                                                 .description("Naturally sweet yam, great roasted or mashed.")
-                                                .price(new BigDecimal("5.79"))
+                                                .price(Money.of("5.79"))
                                                 .imageUrl("https://picsum.photos/seed/yam/400/300")
                                                 .category(getCat.apply("tubers"))
                                                 .stock(60)
@@ -115,7 +116,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Golden Potato")
                                                 .slug("golden-potato")
                                                 .description("Versatile potatoes for fries, mash, or bake.")
-                                                .price(new BigDecimal("2.99"))
+                                                .price(Money.of("2.99"))
                                                 .imageUrl("https://picsum.photos/seed/potato/400/300")
                                                 .category(getCat.apply("tubers"))
                                                 .stock(120)
@@ -125,7 +126,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Emerald Spinach")
                                                 .slug("emerald-spinach")
                                                 .description("Fresh organic spinach leaves, nutrient‑dense.")
-                                                .price(new BigDecimal("2.49"))
+                                                .price(Money.of("2.49"))
                                                 .imageUrl("https://picsum.photos/seed/spinach/400/300")
                                                 .category(getCat.apply("vegetables"))
                                                 .stock(150)
@@ -135,7 +136,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Crimson Tomato")
                                                 .slug("crimson-tomato")
                                                 .description("Juicy red tomatoes, perfect for sauces.")
-                                                .price(new BigDecimal("3.19"))
+                                                .price(Money.of("3.19"))
                                                 .imageUrl("https://picsum.photos/seed/tomato/400/300")
                                                 .category(getCat.apply("vegetables"))
                                                 .stock(130)
@@ -145,7 +146,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Alpine Wheat Flour")
                                                 .slug("alpine-wheat-flour")
                                                 .description("High‑protein flour for artisan breads.")
-                                                .price(new BigDecimal("6.99"))
+                                                .price(Money.of("6.99"))
                                                 .imageUrl("https://picsum.photos/seed/flour/400/300")
                                                 .category(getCat.apply("flour"))
                                                 .stock(70)
@@ -155,7 +156,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Pure Rice Flour")
                                                 .slug("pure-rice-flour")
                                                 .description("Gluten‑free rice flour for baking.")
-                                                .price(new BigDecimal("5.49"))
+                                                .price(Money.of("5.49"))
                                                 .imageUrl("https://picsum.photos/seed/riceflour/400/300")
                                                 .category(getCat.apply("flour"))
                                                 .stock(90)
@@ -165,7 +166,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Sun‑kissed Mango")
                                                 .slug("sun-kissed-mango")
                                                 .description("Sweet tropical mangoes, ready to eat.")
-                                                .price(new BigDecimal("4.29"))
+                                                .price(Money.of("4.29"))
                                                 .imageUrl("https://picsum.photos/seed/mango/400/300")
                                                 .category(getCat.apply("fruits"))
                                                 .stock(50)
@@ -175,7 +176,7 @@ public class DataSeeder implements CommandLineRunner {
                                                 .name("Zesty Orange")
                                                 .slug("zesty-orange")
                                                 .description("Fresh oranges, perfect for juice.")
-                                                .price(new BigDecimal("3.79"))
+                                                .price(Money.of("3.79"))
                                                 .imageUrl("https://picsum.photos/seed/orange/400/300")
                                                 .category(getCat.apply("fruits"))
                                                 .stock(80)
@@ -195,7 +196,7 @@ public class DataSeeder implements CommandLineRunner {
                                         .firstName("Admin")
                                         .lastName("User")
                                         .email("admin@garrizon.com")
-                                        .password(new BCryptPasswordEncoder().encode("admin123"))
+                                        .password(passwordEncoder.encode("admin123"))
                                         .role(Role.ADMIN)
                                         .build();
                         userRepository.save(admin);
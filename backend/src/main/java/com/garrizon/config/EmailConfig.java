@@ -0,0 +1,31 @@
+package com.garrizon.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class EmailConfig {
+
+    @Value("${email.outbox.worker-threads:8}")
+    private int workerThreads;
+
+    /**
+     * One thread per SMTP connection in use; each works through a lane of
+     * claimed messages on a single pooled connection. The dispatcher only
+     * starts as many lanes as there are free threads, so the small queue just
+     * absorbs a lane submitted while another is finishing.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor emailExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(workerThreads);
+        executor.setThreadNamePrefix("email-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
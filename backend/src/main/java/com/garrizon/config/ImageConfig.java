@@ -0,0 +1,73 @@
+package com.garrizon.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ImageConfig {
+
+    @Value("${storage.uploads.worker-threads:4}")
+    private int uploadThreads;
+
+    @Value("${storage.uploads.queue-capacity:16}")
+    private int uploadQueueCapacity;
+
+    @Value("${storage.imports.worker-threads:8}")
+    private int importThreads;
+
+    @Value("${storage.variants.worker-threads:2}")
+    private int workerThreads;
+
+    @Value("${storage.variants.queue-capacity:100}")
+    private int queueCapacity;
+
+    /**
+     * Copies uploads to the image store and Cloudinary. Each upload holds one
+     * copy buffer and at most one outbound connection; uploads beyond the
+     * queue are rejected with 429.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor uploadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(uploadThreads);
+        executor.setMaxPoolSize(uploadThreads);
+        executor.setQueueCapacity(uploadQueueCapacity);
+        executor.setThreadNamePrefix("upload-");
+        return executor;
+    }
+
+    /**
+     * Resizes product images. Each job holds one decoded image, so the thread
+     * count bounds the heap the pipeline can use; jobs beyond the queue are
+     * rejected and retried by the startup sweep.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor imageExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-");
+        return executor;
+    }
+
+    /**
+     * Fetches images for import jobs, one lane of claimed items per thread.
+     * The thread count caps outbound fetches per node across all hosts. The
+     * worker only starts as many lanes as there are free threads, so the
+     * small queue just absorbs a lane submitted while another is finishing.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor imageImportExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(importThreads);
+        executor.setMaxPoolSize(importThreads);
+        executor.setQueueCapacity(importThreads);
+        executor.setThreadNamePrefix("image-import-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
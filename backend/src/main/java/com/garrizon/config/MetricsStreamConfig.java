@@ -0,0 +1,30 @@
+package com.garrizon.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class MetricsStreamConfig {
+
+    @Value("${metrics.stream.sender-threads:2}")
+    private int senderThreads;
+
+    @Value("${metrics.stream.max-subscribers:50}")
+    private int maxSubscribers;
+
+    /**
+     * Writes to SSE subscribers, so a client with a full socket buffer blocks
+     * one sender instead of the shared producer.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor metricsStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(senderThreads);
+        executor.setMaxPoolSize(senderThreads);
+        executor.setQueueCapacity(maxSubscribers);
+        executor.setThreadNamePrefix("metrics-sse-");
+        return executor;
+    }
+}
@@ -1,5 +1,6 @@
 package com.garrizon.config;
 
+import com.garrizon.model.Money;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.info.Contact;
@@ -7,12 +8,20 @@ import io.swagger.v3.oas.models.info.Info;
 import io.swagger.v3.oas.models.info.License;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
+import org.springdoc.core.SpringDocUtils;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.math.BigDecimal;
+
 @Configuration
 public class OpenApiConfig {
 
+    static {
+        // Money is serialized as a plain decimal number
+        SpringDocUtils.getConfig().replaceWithClass(Money.class, BigDecimal.class);
+    }
+
     @Bean
     public OpenAPI customOpenAPI() {
         return new OpenAPI()
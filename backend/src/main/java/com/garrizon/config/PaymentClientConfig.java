@@ -0,0 +1,99 @@
+package com.garrizon.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Outbound HTTP for payment providers. Paystack is called through a pooled,
+ * non-blocking WebClient; the Stripe SDK only offers blocking calls, so those
+ * run on a bounded executor instead of Tomcat request threads.
+ */
+@Configuration
+public class PaymentClientConfig {
+
+    @Value("${payments.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${payments.http.pending-acquire-max-count:200}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${payments.http.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${payments.http.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
+    @Value("${payments.http.max-idle-time-ms:30000}")
+    private long maxIdleTimeMs;
+
+    @Value("${payments.executor.pool-size:16}")
+    private int executorPoolSize;
+
+    @Value("${payments.executor.queue-capacity:200}")
+    private int executorQueueCapacity;
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider paymentConnectionProvider() {
+        return ConnectionProvider.builder("payments")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(connectTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .evictInBackground(Duration.ofMillis(maxIdleTimeMs))
+                .build();
+    }
+
+    @Bean
+    public WebClient paystackWebClient(
+            WebClient.Builder builder,
+            ConnectionProvider paymentConnectionProvider,
+            @Value("${paystack.base-url:https://api.paystack.co}") String baseUrl,
+            @Value("${paystack.secret-key}") String secretKey) {
+        HttpClient httpClient = HttpClient.create(paymentConnectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(Duration.ofMillis(readTimeoutMs));
+
+        return builder
+                .baseUrl(baseUrl)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + secretKey)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor paymentExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(executorPoolSize);
+        executor.setMaxPoolSize(executorPoolSize);
+        executor.setQueueCapacity(executorQueueCapacity);
+        executor.setThreadNamePrefix("payment-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * One thread and no queue: a reconciliation still running when the next
+     * one is due makes that one skip.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor paymentReconcilerExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("payment-reconciler-");
+        return executor;
+    }
+}
@@ -0,0 +1,113 @@
+package com.garrizon.config;
+
+import com.garrizon.datasource.ReplicaRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single primary DataSource with one that sends read-only
+ * service transactions to replicas. The pools are not beans themselves: the
+ * routing DataSource is the only one, so the query-counting wrapper from
+ * {@code SqlMonitoringConfig} sees each statement exactly once. Every pool
+ * takes its settings from {@code spring.datasource.hikari}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Value("${datasource.replicas.urls}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replicas.username:${spring.datasource.username:}}")
+    private String replicaUsername;
+
+    @Value("${datasource.replicas.password:${spring.datasource.password:}}")
+    private String replicaPassword;
+
+    @Value("${datasource.replicas.max-lag-ms:5000}")
+    private long maxLagMs;
+
+    @Value("${datasource.replicas.check-interval-ms:1000}")
+    private long checkIntervalMs;
+
+    @Bean
+    public ReplicaRouter replicaRouter(DataSourceProperties properties, Environment environment,
+                                       MeterRegistry meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        configure(primary, "primary", false, environment, meterRegistry);
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(replicaUsername)
+                    .password(replicaPassword)
+                    .build();
+            configure(replica, "replica-" + (replicas.size() + 1), true, environment, meterRegistry);
+            replicas.add(replica);
+        }
+        return new ReplicaRouter(primary, replicas, maxLagMs, checkIntervalMs, meterRegistry);
+    }
+
+    /**
+     * The lazy proxy defers fetching a connection until the first statement,
+     * by which time the transaction's read-only flag is set.
+     */
+    @Bean
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        return new LazyConnectionDataSourceProxy(ReplicaRouter.routingDataSource(replicaRouter));
+    }
+
+    /**
+     * Boot's adapter, except that Spring does not prepare connections itself.
+     * Otherwise Hibernate holds one connection for the whole open-in-view
+     * session, and a request's first transaction would pick the pool for all
+     * of the later ones. Without it, each transaction gets its own connection
+     * and is routed separately. Replica pools are read-only in its place.
+     */
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties) {
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter();
+        adapter.setShowSql(properties.isShowSql());
+        if (properties.getDatabase() != null) {
+            adapter.setDatabase(properties.getDatabase());
+        }
+        if (properties.getDatabasePlatform() != null) {
+            adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        }
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        adapter.getJpaDialect().setPrepareConnection(false);
+        return adapter;
+    }
+
+    private static void configure(HikariDataSource pool, String name, boolean readOnly,
+                                  Environment environment, MeterRegistry meterRegistry) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setReadOnly(readOnly);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+    }
+}
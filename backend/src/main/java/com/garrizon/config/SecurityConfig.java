@@ -1,7 +1,9 @@
 package com.garrizon.config;
 
 import com.garrizon.security.JwtAuthenticationFilter;
+import com.garrizon.security.RateLimitFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -15,6 +17,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -33,8 +36,21 @@ import java.util.List;
 public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
+    private final RateLimitFilter rateLimitFilter;
     private final UserDetailsService userDetailsService;
 
+    @Value("${management.metrics.scrape.allowed-addresses:127.0.0.1/32}")
+    private List<String> scrapeAllowedAddresses;
+
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${security.password.hashing-threads:2}")
+    private int hashingThreads;
+
+    @Value("${security.password.queue-capacity:50}")
+    private int hashingQueueCapacity;
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -43,12 +59,15 @@ public class SecurityConfig {
                 .and()
                 .authorizeRequests()
                 .antMatchers("/api/auth/**").permitAll()
+                .antMatchers("/api/webhooks/**").permitAll()
                 .antMatchers("/api/products", "/api/products/**").permitAll()
                 .antMatchers("/api/categories", "/api/categories/**").permitAll()
                 .antMatchers("/uploads/**").permitAll()
                 .antMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html", "/swagger-resources/**",
                         "/webjars/**")
                 .permitAll()
+                .antMatchers("/actuator/health").permitAll()
+                .antMatchers("/actuator/**").access(scrapeAccessExpression())
                 .antMatchers("/api/admin/**").hasRole("ADMIN")
                 .anyRequest().authenticated()
                 .and()
@@ -60,11 +79,24 @@ public class SecurityConfig {
                         .sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized"))
                 .and()
                 .authenticationProvider(authenticationProvider())
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
 
+    /**
+     * Metrics may be scraped from the configured addresses without a token;
+     * admins can read them from anywhere.
+     */
+    private String scrapeAccessExpression() {
+        StringBuilder expression = new StringBuilder("hasRole('ADMIN')");
+        for (String address : scrapeAllowedAddresses) {
+            expression.append(" or hasIpAddress('").append(address.trim()).append("')");
+        }
+        return expression.toString();
+    }
+
     @Bean
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
@@ -96,6 +128,20 @@ public class SecurityConfig {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(bcryptStrength);
+    }
+
+    /**
+     * BCrypt is deliberately slow, so hashing gets its own small pool. When the
+     * queue is full new logins are rejected instead of eating every core.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hashingThreads);
+        executor.setMaxPoolSize(hashingThreads);
+        executor.setQueueCapacity(hashingQueueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        return executor;
     }
 }
@@ -0,0 +1,29 @@
+package com.garrizon.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class WebhookConfig {
+
+    @Value("${webhooks.worker-threads:4}")
+    private int workerThreads;
+
+    @Value("${webhooks.batch-size:100}")
+    private int batchSize;
+
+    @Bean
+    public ThreadPoolTaskExecutor webhookExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(batchSize);
+        executor.setThreadNamePrefix("webhook-");
+        // The poller never has more than a batch in flight, so the queue does not fill
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -1,20 +1,37 @@
 package com.garrizon.controller;
 
-import com.garrizon.dto.UserDTO;
-import com.garrizon.repository.UserRepository;
+import com.garrizon.dto.CustomerPageDTO;
+import com.garrizon.dto.ImageImportJobDTO;
+import com.garrizon.dto.ImageImportRequest;
+import com.garrizon.dto.RevenueSeriesDTO;
+import com.garrizon.model.RevenueGranularity;
+import com.garrizon.resilience.ProviderGuardRegistry;
+import com.garrizon.scheduler.PaymentReconciler;
+import com.garrizon.service.CustomerService;
+import com.garrizon.service.ImageImportService;
 import com.garrizon.service.MetricsService;
+import com.garrizon.service.MetricsStreamService;
+import com.garrizon.service.RevenueTimeSeriesService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDateTime;
 import java.util.Map;
 
 @RestController
@@ -25,7 +42,12 @@ import java.util.Map;
 public class AdminController {
 
     private final MetricsService metricsService;
-    private final UserRepository userRepository;
+    private final RevenueTimeSeriesService revenueTimeSeriesService;
+    private final MetricsStreamService metricsStreamService;
+    private final CustomerService customerService;
+    private final ProviderGuardRegistry providerGuardRegistry;
+    private final PaymentReconciler paymentReconciler;
+    private final ImageImportService imageImportService;
 
     @GetMapping("/metrics")
     @Operation(summary = "Get dashboard metrics")
@@ -33,15 +55,53 @@ public class AdminController {
         return ResponseEntity.ok(metricsService.getDashboardMetrics());
     }
 
+    @GetMapping(value = "/metrics/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream dashboard changes as Server-Sent Events: a snapshot first, then deltas")
+    public SseEmitter streamMetrics() {
+        return metricsStreamService.subscribe();
+    }
+
+    @GetMapping("/metrics/revenue")
+    @Operation(summary = "Get revenue and completed order counts bucketed by hour, day, week or month")
+    public ResponseEntity<RevenueSeriesDTO> getRevenueSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "DAY") RevenueGranularity granularity) {
+        return ResponseEntity.ok(revenueTimeSeriesService.getSeries(from, to, granularity));
+    }
+
+    @GetMapping("/providers")
+    @Operation(summary = "Get circuit breaker and bulkhead state of external providers")
+    public ResponseEntity<Map<String, Map<String, Object>>> getProviders() {
+        return ResponseEntity.ok(providerGuardRegistry.snapshot());
+    }
+
+    @GetMapping("/payments/reconciler")
+    @Operation(summary = "Get pending payment reconciler statistics")
+    public ResponseEntity<Map<String, Object>> getReconcilerStats() {
+        return ResponseEntity.ok(paymentReconciler.getStats());
+    }
+
     @GetMapping("/customers")
-    @Operation(summary = "Get all customers")
-    public ResponseEntity<Page<UserDTO>> getCustomers(@PageableDefault(size = 20) Pageable pageable) {
-        return ResponseEntity.ok(userRepository.findAll(pageable).map(user -> UserDTO.builder()
-                .id(user.getId())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .email(user.getEmail())
-                .role(user.getRole())
-                .build()));
+    @Operation(summary = "Get customers with order aggregates, newest first, using keyset pagination")
+    public ResponseEntity<CustomerPageDTO> getCustomers(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(customerService.getCustomers(cursor, size));
+    }
+
+    @PostMapping("/jobs/image-imports")
+    @Operation(summary = "Queue product image imports from URLs; poll the returned job for progress")
+    public ResponseEntity<ImageImportJobDTO> submitImageImport(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody ImageImportRequest request) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .body(imageImportService.submit(request, userDetails.getUsername()));
+    }
+
+    @GetMapping("/jobs/{id}")
+    @Operation(summary = "Get the progress of an image import job")
+    public ResponseEntity<ImageImportJobDTO> getJob(@PathVariable Long id) {
+        return ResponseEntity.ok(imageImportService.getJob(id));
     }
 }
@@ -1,28 +1,41 @@
 package com.garrizon.controller;
 
 import com.garrizon.dto.OrderDTO;
+import com.garrizon.dto.PaymentVerification;
 import com.garrizon.exception.BadRequestException;
+import com.garrizon.model.Money;
 import com.garrizon.model.Order;
+import com.garrizon.model.PaymentProvider;
 import com.garrizon.model.PaymentStatus;
 import com.garrizon.repository.OrderRepository;
+import com.garrizon.service.IdempotencyService;
 import com.garrizon.service.OrderService;
 import com.garrizon.service.PaystackService;
 import com.garrizon.service.StripeService;
-import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Payment endpoints complete asynchronously so Tomcat request threads are
+ * released while the provider call is in flight.
+ */
 @RestController
 @RequestMapping("/api/checkout")
 @RequiredArgsConstructor
+@Slf4j
 @Tag(name = "Checkout", description = "Payment processing APIs")
 public class CheckoutController {
 
@@ -30,60 +43,93 @@ public class CheckoutController {
     private final PaystackService paystackService;
     private final OrderRepository orderRepository;
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final ThreadPoolTaskExecutor paymentExecutor;
+
+    @Value("${webhooks.verify-fallback:true}")
+    private boolean verifyFallback;
 
     @PostMapping("/stripe/create-payment-intent")
     @Operation(summary = "Create Stripe PaymentIntent")
-    public ResponseEntity<Map<String, String>> createStripePaymentIntent(@RequestBody Map<String, Object> request) throws StripeException {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> createStripePaymentIntent(@RequestBody Map<String, Object> request) {
         Long orderId = Long.parseLong(request.get("orderId").toString());
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new BadRequestException("Order not found"));
 
-        PaymentIntent paymentIntent = stripeService.createPaymentIntent(order.getTotalAmount(), "usd");
-        
-        Map<String, String> response = new HashMap<>();
-        response.put("clientSecret", paymentIntent.getClientSecret());
-        
-        return ResponseEntity.ok(response);
+        return stripeService.createPaymentIntent(order.getId(), order.getTotalAmount())
+                .thenApply(paymentIntent -> {
+                    orderService.recordPaymentReference(orderId, paymentIntent.getId());
+
+                    Map<String, String> response = new HashMap<>();
+                    response.put("clientSecret", paymentIntent.getClientSecret());
+                    return ResponseEntity.ok(response);
+                });
     }
 
     @PostMapping("/paystack/initialize")
     @Operation(summary = "Initialize Paystack transaction")
-    public ResponseEntity<Map<String, Object>> initializePaystackTransaction(@RequestBody Map<String, Object> request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> initializePaystackTransaction(@RequestBody Map<String, Object> request) {
         Long orderId = Long.parseLong(request.get("orderId").toString());
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new BadRequestException("Order not found"));
 
-        return ResponseEntity.ok(paystackService.initializeTransaction(order.getCustomerEmail(), order.getTotalAmount()));
+        // Our own reference, stored up front, lets the reconciler verify the transaction later
+        String reference = order.getOrderNumber() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        orderService.recordPaymentReference(orderId, reference);
+
+        return paystackService.initializeTransaction(orderId, reference, order.getCustomerEmail(), order.getTotalAmount())
+                .map(ResponseEntity::ok)
+                .toFuture();
     }
 
     @PostMapping("/verify-payment")
     @Operation(summary = "Verify payment status (Stripe or Paystack)")
-    public ResponseEntity<OrderDTO> verifyPayment(@RequestBody Map<String, String> request) throws StripeException {
+    public CompletableFuture<ResponseEntity<OrderDTO>> verifyPayment(
+            @AuthenticationPrincipal UserDetails userDetails,
+            @RequestBody Map<String, String> request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Long orderId = Long.parseLong(request.get("orderId"));
-        String provider = request.get("provider");
+        String provider = request.get("provider"); // The order's own provider is used; kept for the fingerprint
         String reference = request.get("reference"); // PaymentIntentId for Stripe, Reference for Paystack
 
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new BadRequestException("Order not found"));
+        return idempotencyService.executeAsync(
+                "verify-payment:" + userDetails.getUsername() + ":" + orderId, idempotencyKey,
+                provider + "\n" + reference, OrderDTO.class,
+                () -> verify(userDetails.getUsername(), orderId, reference))
+                .thenApply(ResponseEntity::ok);
+    }
 
-        boolean isSuccess = false;
+    private CompletableFuture<OrderDTO> verify(String username, Long orderId, String reference) {
+        // Someone else's order reads as missing rather than confirming that it exists
+        Order order = orderRepository.findByIdAndUserEmail(orderId, username)
+                .orElseThrow(() -> new BadRequestException("Order not found"));
 
-        if ("STRIPE".equalsIgnoreCase(provider)) {
-            PaymentIntent intent = stripeService.retrievePaymentIntent(reference);
-            if ("succeeded".equals(intent.getStatus())) {
-                isSuccess = true;
-            }
-        } else if ("PAYSTACK".equalsIgnoreCase(provider)) {
-            isSuccess = paystackService.verifyTransaction(reference);
+        // Webhooks normally settle the order first; only ask the provider while it is still pending
+        if (order.getPaymentStatus() != PaymentStatus.PENDING || !verifyFallback) {
+            return CompletableFuture.completedFuture(orderService.getOrder(orderId));
         }
-
-        if (isSuccess) {
-            order.setPaymentStatus(PaymentStatus.COMPLETED);
-            order.setPaymentIntentId(reference);
-            orderRepository.save(order);
-            // TODO: Trigger email confirmation here
+        // Only the transaction started for this order can pay for it
+        if (reference == null || !reference.equals(order.getPaymentIntentId())) {
+            throw new BadRequestException("Payment reference does not match this order");
         }
 
-        return ResponseEntity.ok(orderService.getOrder(orderId));
+        CompletableFuture<PaymentVerification> verification = order.getPaymentProvider() == PaymentProvider.STRIPE
+                ? stripeService.verifyPaymentIntent(reference)
+                : paystackService.verifyTransaction(reference).toFuture();
+        Money total = order.getTotalAmount();
+
+        // Database work continues on the payment executor, never on a Netty event loop
+        return verification.thenApplyAsync(result -> {
+            if (result.paid(total)) {
+                // The confirmation email was queued with the order
+                orderService.updatePaymentStatus(orderId, PaymentStatus.COMPLETED, reference);
+            } else if (result.getStatus() == PaymentStatus.COMPLETED) {
+                log.warn("Order {} left pending: provider reports {} {} paid for a total of {} {}", orderId,
+                        result.getAmount(), result.getCurrency(), total.getMinorUnits(),
+                        total.getCurrency().getCurrencyCode());
+            }
+
+            return orderService.getOrder(orderId);
+        }, paymentExecutor);
     }
 }
@@ -3,6 +3,7 @@ package com.garrizon.controller;
 import com.garrizon.dto.OrderDTO;
 import com.garrizon.model.OrderStatus;
 import com.garrizon.model.PaymentProvider;
+import com.garrizon.service.IdempotencyService;
 import com.garrizon.service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -24,15 +25,20 @@ import org.springframework.web.bind.annotation.*;
 public class OrderController {
 
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
 
     @PostMapping("/orders")
     @Operation(summary = "Create order from cart")
     public ResponseEntity<OrderDTO> createOrder(
             @AuthenticationPrincipal UserDetails userDetails,
             @RequestParam String shippingAddress,
-            @RequestParam PaymentProvider paymentProvider
+            @RequestParam PaymentProvider paymentProvider,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
     ) {
-        return ResponseEntity.ok(orderService.createOrder(userDetails, shippingAddress, paymentProvider));
+        return ResponseEntity.ok(idempotencyService.execute(
+                "orders:" + userDetails.getUsername(), idempotencyKey, shippingAddress + "\n" + paymentProvider,
+                OrderDTO.class,
+                () -> orderService.createOrder(userDetails, shippingAddress, paymentProvider)));
     }
 
     @GetMapping("/orders")
@@ -1,7 +1,10 @@
 package com.garrizon.controller;
 
 import com.garrizon.dto.ProductDTO;
+import com.garrizon.dto.TopSellerDTO;
+import com.garrizon.model.TopSellerWindow;
 import com.garrizon.service.ProductService;
+import com.garrizon.service.TopSellersService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -17,6 +20,8 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
@@ -25,6 +30,7 @@ import java.io.IOException;
 public class ProductController {
 
     private final ProductService productService;
+    private final TopSellersService topSellersService;
 
     @GetMapping("/products")
     @Operation(summary = "Get all products with search and filtering")
@@ -35,6 +41,14 @@ public class ProductController {
         return ResponseEntity.ok(productService.getAllProducts(search, categoryId, pageable));
     }
 
+    @GetMapping("/products/top-sellers")
+    @Operation(summary = "Get best-selling products over the last hour, day or week")
+    public ResponseEntity<List<TopSellerDTO>> getTopSellers(
+            @RequestParam(defaultValue = "DAY") TopSellerWindow window,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(topSellersService.getTopSellers(window, limit));
+    }
+
     @GetMapping("/products/{slug}")
     @Operation(summary = "Get product by slug")
     public ResponseEntity<ProductDTO> getProductBySlug(@PathVariable String slug) {
@@ -76,10 +90,10 @@ public class ProductController {
     @PostMapping(value = "/admin/products/{id}/upload-image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Upload product image (Admin only)")
-    public ResponseEntity<String> uploadProductImage(
+    public CompletableFuture<ResponseEntity<String>> uploadProductImage(
             @PathVariable Long id,
-            @Parameter(description = "Image file") @RequestParam("file") MultipartFile file) throws IOException {
-        return ResponseEntity.ok(productService.uploadProductImage(id, file));
+            @Parameter(description = "Image file") @RequestParam("file") MultipartFile file) {
+        return productService.uploadProductImage(id, file).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/admin/products/{id}/upload-image-url")
@@ -0,0 +1,35 @@
+package com.garrizon.controller;
+
+import com.garrizon.service.WebhookService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/webhooks")
+@RequiredArgsConstructor
+@Tag(name = "Webhooks", description = "Payment provider webhook endpoints")
+public class WebhookController {
+
+    private final WebhookService webhookService;
+
+    @PostMapping("/stripe")
+    @Operation(summary = "Receive Stripe webhook events")
+    public ResponseEntity<Void> stripe(
+            @RequestBody String payload,
+            @RequestHeader(value = "Stripe-Signature", required = false) String signature) {
+        webhookService.ingestStripe(payload, signature);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/paystack")
+    @Operation(summary = "Receive Paystack webhook events")
+    public ResponseEntity<Void> paystack(
+            @RequestBody String payload,
+            @RequestHeader(value = "x-paystack-signature", required = false) String signature) {
+        webhookService.ingestPaystack(payload, signature);
+        return ResponseEntity.ok().build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.garrizon.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out primary or replica connections as {@link ReplicaRouter} decides.
+ * Must sit behind a {@code LazyConnectionDataSourceProxy}: transactions fetch
+ * their connection before the read-only flag is visible, and the proxy
+ * defers the real fetch to the first statement.
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ReplicaRouter router;
+
+    ReadWriteRoutingDataSource(ReplicaRouter router) {
+        this.router = router;
+        setTargetDataSources(router.targets());
+        setDefaultTargetDataSource(router.targets().get(ReplicaRouter.PRIMARY));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return router.route();
+    }
+}
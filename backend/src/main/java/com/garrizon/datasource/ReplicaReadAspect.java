@@ -0,0 +1,33 @@
+package com.garrizon.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Lets service methods annotated {@code @Transactional(readOnly = true)} read
+ * from replicas. Spring Data marks every repository finder read-only too, but
+ * a bare repository read is often the check right after a write (a claim
+ * read back by token, say), so those stay on the primary.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "datasource.replicas.enabled", havingValue = "true")
+public class ReplicaReadAspect {
+
+    @Around("execution(public * com.garrizon.service..*(..)) && @annotation(transactional)")
+    public Object allowReplicaReads(ProceedingJoinPoint joinPoint, Transactional transactional) throws Throwable {
+        if (!transactional.readOnly()) {
+            return joinPoint.proceed();
+        }
+        boolean previous = ReplicaRouter.allowReplicaReads(true);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRouter.allowReplicaReads(previous);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.garrizon.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the pool for each new connection. Reads go to a replica only when all
+ * of these hold:
+ * <ul>
+ *   <li>they run in a read-only transaction opened by a service method (see
+ *       {@link ReplicaReadAspect});</li>
+ *   <li>the current user, request or background thread has not written in
+ *       the last {@code max-lag-ms + check-interval-ms};</li>
+ *   <li>some replica was at most {@code max-lag-ms} behind at its last
+ *       check.</li>
+ * </ul>
+ * Everything else goes to the primary. A write committed at time {@code t}
+ * is therefore on every replica that serves reads after the sticky window
+ * ends.
+ * <p>
+ * Lag is measured with a per-node heartbeat row. Each check stamps the
+ * primary and reads the stamp back from every replica. Stickiness is
+ * tracked per node, so a user whose next request lands on another node is
+ * only protected by the lag bound.
+ */
+@Slf4j
+public class ReplicaRouter {
+
+    static final String PRIMARY = "primary";
+
+    private static final String BEAT_UPDATE_SQL = "UPDATE replication_heartbeats SET beat_at = ? WHERE node_id = ?";
+    private static final String BEAT_INSERT_SQL = "INSERT INTO replication_heartbeats (node_id, beat_at) VALUES (?, ?)";
+    private static final String BEAT_READ_SQL = "SELECT beat_at FROM replication_heartbeats WHERE node_id = ?";
+    private static final String BEAT_PURGE_SQL = "DELETE FROM replication_heartbeats WHERE beat_at < ?";
+
+    private static final String PINNED_UNTIL = ReplicaRouter.class.getName() + ".pinnedUntil";
+    private static final int CHECK_TIMEOUT_SECONDS = 2;
+
+    private static final ThreadLocal<Boolean> REPLICA_READS = new ThreadLocal<>();
+    private static final ThreadLocal<Long> THREAD_PINNED_UNTIL = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final String nodeId;
+    private final long maxLagMs;
+    private final long checkIntervalMs;
+    private final long stickyMs;
+    private final Map<String, Long> userPins = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter fallbackReads;
+    private volatile boolean purged;
+
+    public ReplicaRouter(HikariDataSource primary, List<HikariDataSource> replicaPools,
+                         long maxLagMs, long checkIntervalMs, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.primaryJdbcTemplate = jdbcTemplate(primary);
+        this.nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID().toString().substring(0, 8);
+        this.maxLagMs = maxLagMs;
+        this.checkIntervalMs = checkIntervalMs;
+        this.stickyMs = Math.max(maxLagMs, 0) + checkIntervalMs;
+
+        List<Replica> replicas = new ArrayList<>(replicaPools.size());
+        for (HikariDataSource pool : replicaPools) {
+            Replica replica = new Replica(pool.getPoolName(), pool);
+            Gauge.builder("garrizon.datasource.replica.staleness", replica, r -> r.stalenessMs)
+                    .description("How far behind the primary the replica was at its last check; -1 when unknown")
+                    .baseUnit("milliseconds")
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+            replicas.add(replica);
+        }
+        this.replicas = replicas;
+        this.replicaReads = routeCounter(meterRegistry, "replica");
+        this.stickyReads = routeCounter(meterRegistry, "primary-sticky");
+        this.fallbackReads = routeCounter(meterRegistry, "primary-fallback");
+    }
+
+    /**
+     * A DataSource that routes each connection through {@code router}. Wrap
+     * it in a {@code LazyConnectionDataSourceProxy}.
+     */
+    public static DataSource routingDataSource(ReplicaRouter router) {
+        return new ReadWriteRoutingDataSource(router);
+    }
+
+    /**
+     * Lookup keys and pools for {@link ReadWriteRoutingDataSource}.
+     */
+    Map<Object, Object> targets() {
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicas) {
+            targets.put(replica.name, replica.dataSource);
+        }
+        return targets;
+    }
+
+    String route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            recordWrite();
+            return PRIMARY;
+        }
+        if (!Boolean.TRUE.equals(REPLICA_READS.get())) {
+            return PRIMARY;
+        }
+        if (isPinned()) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (replica.usableUntil > now) {
+                replicaReads.increment();
+                return replica.name;
+            }
+        }
+        fallbackReads.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Marks the current thread as running a read-only service method.
+     *
+     * @return the previous value, to be restored afterwards
+     */
+    static boolean allowReplicaReads(boolean allow) {
+        boolean previous = Boolean.TRUE.equals(REPLICA_READS.get());
+        if (allow) {
+            REPLICA_READS.set(Boolean.TRUE);
+        } else {
+            REPLICA_READS.remove();
+        }
+        return previous;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.check-interval-ms:1000}")
+    public void checkReplicas() {
+        long now = System.currentTimeMillis();
+        userPins.values().removeIf(until -> until <= now);
+
+        if (maxLagMs >= 0) {
+            writeHeartbeat(now);
+        }
+        for (Replica replica : replicas) {
+            check(replica);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.dataSource.close();
+        }
+        primary.close();
+    }
+
+    // The window starts at commit, when replicas can first begin to apply the write
+    private void recordWrite() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pin();
+                }
+            });
+        } else {
+            pin();
+        }
+    }
+
+    private void pin() {
+        long until = System.currentTimeMillis() + stickyMs;
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.setAttribute(PINNED_UNTIL, until, RequestAttributes.SCOPE_REQUEST);
+        } else {
+            THREAD_PINNED_UNTIL.set(until);
+        }
+        String user = currentUser();
+        if (user != null) {
+            userPins.put(user, until);
+        }
+    }
+
+    private boolean isPinned() {
+        long now = System.currentTimeMillis();
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        Long until = request != null
+                ? (Long) request.getAttribute(PINNED_UNTIL, RequestAttributes.SCOPE_REQUEST)
+                : THREAD_PINNED_UNTIL.get();
+        if (until != null && until > now) {
+            return true;
+        }
+        String user = currentUser();
+        Long userUntil = user != null ? userPins.get(user) : null;
+        return userUntil != null && userUntil > now;
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private void writeHeartbeat(long now) {
+        try {
+            if (!purged) {
+                // Rows left behind by nodes that have gone away
+                primaryJdbcTemplate.update(BEAT_PURGE_SQL, now - TimeUnit.DAYS.toMillis(1));
+                purged = true;
+            }
+            if (primaryJdbcTemplate.update(BEAT_UPDATE_SQL, now, nodeId) == 0) {
+                primaryJdbcTemplate.update(BEAT_INSERT_SQL, nodeId, now);
+            }
+        } catch (Exception e) {
+            // Replicas stop seeing new beats and drop out once they look too far behind
+            log.warn("Could not write replication heartbeat: {}", e.getMessage());
+        }
+    }
+
+    private void check(Replica replica) {
+        boolean wasUsable = replica.usableUntil > System.currentTimeMillis();
+        boolean usable;
+        try {
+            if (maxLagMs < 0) {
+                usable = Boolean.TRUE.equals(replica.jdbcTemplate.execute(
+                        (ConnectionCallback<Boolean>) connection -> connection.isValid(CHECK_TIMEOUT_SECONDS)));
+            } else {
+                List<Long> beats = replica.jdbcTemplate.queryForList(BEAT_READ_SQL, Long.class, nodeId);
+                replica.stalenessMs = beats.isEmpty() ? -1 : Math.max(0, System.currentTimeMillis() - beats.get(0));
+                usable = !beats.isEmpty() && replica.stalenessMs <= maxLagMs;
+            }
+        } catch (Exception e) {
+            replica.stalenessMs = -1;
+            usable = false;
+            if (wasUsable) {
+                log.warn("Replica {} failed its check: {}", replica.name, e.getMessage());
+            }
+        }
+
+        // Valid for two intervals, so a stalled checker takes replicas out of rotation too
+        replica.usableUntil = usable ? System.currentTimeMillis() + 2 * checkIntervalMs : 0;
+        if (usable != wasUsable) {
+            log.info("Replica {} {} ({} ms behind)", replica.name,
+                    usable ? "is serving reads" : "is out of rotation", replica.stalenessMs);
+        }
+    }
+
+    private static JdbcTemplate jdbcTemplate(HikariDataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setQueryTimeout(CHECK_TIMEOUT_SECONDS);
+        return jdbcTemplate;
+    }
+
+    private static Counter routeCounter(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("garrizon.datasource.reads")
+                .description("Read-only service transactions by the pool they were routed to")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final HikariDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile long stalenessMs = -1;
+        private volatile long usableUntil;
+
+        private Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = jdbcTemplate(dataSource);
+        }
+    }
+}
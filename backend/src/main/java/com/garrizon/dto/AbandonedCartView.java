@@ -0,0 +1,17 @@
+package com.garrizon.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Abandoned-cart candidate with just what the reminder email needs, plus the
+ * keyset position of the row.
+ */
+public interface AbandonedCartView {
+    Long getId();
+
+    LocalDateTime getUpdatedAt();
+
+    String getEmail();
+
+    String getFirstName();
+}
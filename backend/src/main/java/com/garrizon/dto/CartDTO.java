@@ -1,11 +1,11 @@
 package com.garrizon.dto;
 
+import com.garrizon.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 @Data
@@ -15,5 +15,5 @@ import java.util.List;
 public class CartDTO {
     private Long id;
     private List<CartItemDTO> items;
-    private BigDecimal totalAmount;
+    private Money totalAmount;
 }
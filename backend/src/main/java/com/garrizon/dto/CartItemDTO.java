@@ -1,12 +1,11 @@
 package com.garrizon.dto;
 
+import com.garrizon.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
-
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,7 +16,7 @@ public class CartItemDTO {
     private String productName;
     private String productSlug;
     private String productImageUrl;
-    private BigDecimal price;
+    private Money price;
     private Integer quantity;
-    private BigDecimal subtotal;
+    private Money subtotal;
 }
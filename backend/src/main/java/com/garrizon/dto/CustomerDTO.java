@@ -0,0 +1,26 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+import com.garrizon.model.Role;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerDTO {
+    private Long id;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private Role role;
+    private LocalDateTime createdAt;
+    private Long orderCount;
+    private Money totalSpent;
+    private LocalDateTime lastOrderAt;
+}
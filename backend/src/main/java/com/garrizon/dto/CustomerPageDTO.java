@@ -0,0 +1,22 @@
+package com.garrizon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of customers. Pass {@code nextCursor} back as
+ * {@code cursor} to get the next page; it is null on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerPageDTO {
+    private List<CustomerDTO> content;
+    private Long nextCursor;
+    private Integer size;
+}
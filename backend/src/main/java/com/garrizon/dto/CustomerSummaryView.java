@@ -0,0 +1,30 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+import com.garrizon.model.Role;
+
+import java.time.LocalDateTime;
+
+/**
+ * Customer row for the admin list, joined with its aggregates. Leaves out
+ * the password hash and everything else the list does not show.
+ */
+public interface CustomerSummaryView {
+    Long getId();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getEmail();
+
+    Role getRole();
+
+    LocalDateTime getCreatedAt();
+
+    Long getOrderCount();
+
+    Money getTotalSpent();
+
+    LocalDateTime getLastOrderAt();
+}
@@ -0,0 +1,17 @@
+package com.garrizon.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageImportFailureDTO {
+    private Long productId;
+    private String url;
+    private Integer attempts;
+    private String error;
+}
@@ -0,0 +1,30 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.ImageImportJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress of an image import job. {@code failures} lists the first
+ * failed items so a migration can be corrected and resubmitted.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageImportJobDTO {
+    private Long id;
+    private ImageImportJobStatus status;
+    private Integer total;
+    private Integer succeeded;
+    private Integer failed;
+    private Integer pending;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private List<ImageImportFailureDTO> failures;
+}
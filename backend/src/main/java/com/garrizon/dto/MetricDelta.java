@@ -0,0 +1,30 @@
+package com.garrizon.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.garrizon.model.Money;
+import com.garrizon.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One change pushed to dashboard subscribers. Only the fields relevant to
+ * the type are set: {@code order.created}, {@code order.status} or
+ * {@code payment.completed}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MetricDelta {
+    private String type;
+    private Long orderId;
+    private OrderStatus from;
+    private OrderStatus to;
+    private Money amount;
+    private LocalDateTime at;
+}
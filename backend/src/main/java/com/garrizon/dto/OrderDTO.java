@@ -1,5 +1,6 @@
 package com.garrizon.dto;
 
+import com.garrizon.model.Money;
 import com.garrizon.model.OrderStatus;
 import com.garrizon.model.PaymentProvider;
 import com.garrizon.model.PaymentStatus;
@@ -8,7 +9,6 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -20,7 +20,7 @@ public class OrderDTO {
     private Long id;
     private String orderNumber;
     private List<OrderItemDTO> items;
-    private BigDecimal totalAmount;
+    private Money totalAmount;
     private OrderStatus status;
     private PaymentProvider paymentProvider;
     private PaymentStatus paymentStatus;
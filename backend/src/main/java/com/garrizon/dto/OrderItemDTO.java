@@ -1,12 +1,11 @@
 package com.garrizon.dto;
 
+import com.garrizon.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
-
 @Data
 @Builder
 @NoArgsConstructor
@@ -17,6 +16,6 @@ public class OrderItemDTO {
     private String productName;
     private String productImageUrl;
     private Integer quantity;
-    private BigDecimal price;
-    private BigDecimal subtotal;
+    private Money price;
+    private Money subtotal;
 }
@@ -0,0 +1,12 @@
+package com.garrizon.dto;
+
+/**
+ * Product and quantity of one order line, without loading the entities.
+ */
+public interface OrderItemQuantityView {
+    Long getOrderId();
+
+    Long getProductId();
+
+    Integer getQuantity();
+}
@@ -0,0 +1,14 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+
+/**
+ * Amount and owner of an order whose payment just completed.
+ */
+public interface OrderPaymentView {
+    Long getId();
+
+    Long getUserId();
+
+    Money getTotalAmount();
+}
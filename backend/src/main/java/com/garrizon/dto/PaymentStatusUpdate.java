@@ -0,0 +1,15 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentStatusUpdate {
+    private Long orderId;
+    private PaymentStatus status;
+    private String reference;
+}
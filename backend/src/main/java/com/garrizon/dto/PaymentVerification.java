@@ -0,0 +1,29 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+import com.garrizon.model.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What a payment provider reports for a transaction when asked directly.
+ * {@code status} is null while the payment is still open.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentVerification {
+    private PaymentStatus status;
+    private Long amount; // Minor units
+    private String currency;
+
+    /**
+     * True when the provider took exactly {@code total}; a success for any
+     * other amount or currency does not pay for the order.
+     */
+    public boolean paid(Money total) {
+        return status == PaymentStatus.COMPLETED && amount != null && amount == total.getMinorUnits()
+                && total.getCurrency().getCurrencyCode().equalsIgnoreCase(currency);
+    }
+}
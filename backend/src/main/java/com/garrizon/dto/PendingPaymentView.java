@@ -0,0 +1,21 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+import com.garrizon.model.PaymentProvider;
+
+import java.time.LocalDateTime;
+
+/**
+ * Slim projection of a pending order used by the payment reconciler.
+ */
+public interface PendingPaymentView {
+    Long getId();
+
+    PaymentProvider getPaymentProvider();
+
+    String getPaymentIntentId();
+
+    Money getTotalAmount();
+
+    LocalDateTime getCreatedAt();
+}
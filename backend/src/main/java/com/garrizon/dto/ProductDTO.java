@@ -1,11 +1,12 @@
 package com.garrizon.dto;
 
+import com.garrizon.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
+import java.util.Map;
 
 @Data
 @Builder
@@ -16,8 +17,9 @@ public class ProductDTO {
     private String name;
     private String slug;
     private String description;
-    private BigDecimal price;
+    private Money price;
     private String imageUrl;
+    private Map<String, String> imageVariants; // thumb, card, detail; null until generated
     private Long categoryId;
     private String categoryName;
     private Integer stock;
@@ -0,0 +1,13 @@
+package com.garrizon.dto;
+
+/**
+ * Units of one product sold in one hour; {@code hour} is formatted as
+ * {@code yyyy-MM-dd HH:00:00}.
+ */
+public interface ProductSalesView {
+    Long getProductId();
+
+    String getHour();
+
+    Long getQuantity();
+}
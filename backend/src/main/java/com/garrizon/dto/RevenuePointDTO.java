@@ -0,0 +1,19 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenuePointDTO {
+    private LocalDateTime bucketStart;
+    private Money revenue;
+    private Long orderCount;
+}
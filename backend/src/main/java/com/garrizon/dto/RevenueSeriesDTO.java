@@ -0,0 +1,24 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+import com.garrizon.model.RevenueGranularity;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueSeriesDTO {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private RevenueGranularity granularity;
+    private Money totalRevenue;
+    private Long totalOrders;
+    private List<RevenuePointDTO> points;
+}
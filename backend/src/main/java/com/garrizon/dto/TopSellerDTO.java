@@ -0,0 +1,21 @@
+package com.garrizon.dto;
+
+import com.garrizon.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopSellerDTO {
+    private Long productId;
+    private String name;
+    private String slug;
+    private String imageUrl;
+    private Money price;
+    private Long unitsSold;
+    private Long errorBound; // unitsSold may overstate the true count by at most this much
+}
@@ -0,0 +1,14 @@
+package com.garrizon.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class OrderCreatedEvent {
+    private Long orderId;
+    private Long userId;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,13 @@
+package com.garrizon.event;
+
+import com.garrizon.model.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+    private Long orderId;
+    private OrderStatus previousStatus;
+    private OrderStatus newStatus;
+}
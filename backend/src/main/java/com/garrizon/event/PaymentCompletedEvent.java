@@ -0,0 +1,21 @@
+package com.garrizon.event;
+
+import com.garrizon.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Published once per order when its payment moves from PENDING to COMPLETED.
+ */
+@Data
+@AllArgsConstructor
+public class PaymentCompletedEvent {
+    private Long orderId;
+    private Long userId;
+    private Money amount;
+    private LocalDateTime completedAt;
+    private Map<Long, Integer> productQuantities;
+}
@@ -0,0 +1,10 @@
+package com.garrizon.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ProductDeletedEvent {
+    private Long productId;
+}
@@ -0,0 +1,232 @@
+package com.garrizon.mail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An email template compiled into a flat tree of segments. Supports
+ * {@code {{name}}} (HTML-escaped), {@code {{{name}}}} (raw),
+ * {@code {{#name}}...{{/name}}} sections that repeat for each map in a
+ * collection or render once for any other non-null, non-false value,
+ * inverted {@code {{^name}}...{{/name}}} sections that render only when
+ * the value is missing, false or empty, and {@code {{! comments }}}. Inside a section, names resolve against the
+ * current item first and then the enclosing scopes.
+ * <p>
+ * Compiled templates are immutable and safe to share between threads;
+ * rendering walks the segments once, appending straight into the caller's
+ * buffer.
+ */
+public final class EmailTemplate {
+
+    private final String name;
+    private final Segment[] subject;
+    private final Segment[] body;
+
+    private EmailTemplate(String name, Segment[] subject, Segment[] body) {
+        this.name = name;
+        this.subject = subject;
+        this.body = body;
+    }
+
+    /**
+     * Compiles an HTML template. The subject line is the text of its
+     * {@code <title>} element, rendered without HTML escaping.
+     *
+     * @throws IllegalArgumentException if the template is malformed
+     */
+    public static EmailTemplate compile(String name, String source) {
+        int titleStart = source.indexOf("<title>");
+        int titleEnd = source.indexOf("</title>");
+        if (titleStart < 0 || titleEnd < titleStart) {
+            throw new IllegalArgumentException("Email template " + name + " has no <title> to use as the subject");
+        }
+        String subject = source.substring(titleStart + "<title>".length(), titleEnd).trim();
+        return new EmailTemplate(name, parse(name, subject, false), parse(name, source, true));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void renderSubject(Map<String, ?> model, StringBuilder out) {
+        render(subject, new Scope(model, null), out);
+    }
+
+    public void renderBody(Map<String, ?> model, StringBuilder out) {
+        render(body, new Scope(model, null), out);
+    }
+
+    private static void render(Segment[] segments, Scope scope, StringBuilder out) {
+        for (Segment segment : segments) {
+            segment.render(scope, out);
+        }
+    }
+
+    private static Segment[] parse(String templateName, String source, boolean escape) {
+        Deque<Section> open = new ArrayDeque<>();
+        Deque<List<Segment>> levels = new ArrayDeque<>();
+        levels.push(new ArrayList<>());
+
+        int pos = 0;
+        while (pos < source.length()) {
+            int tag = source.indexOf("{{", pos);
+            if (tag < 0) {
+                addLiteral(levels.peek(), source.substring(pos));
+                break;
+            }
+            addLiteral(levels.peek(), source.substring(pos, tag));
+
+            boolean triple = source.startsWith("{{{", tag);
+            String close = triple ? "}}}" : "}}";
+            int end = source.indexOf(close, tag);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed tag in email template " + templateName + " at offset " + tag);
+            }
+            String content = source.substring(tag + close.length(), end).trim();
+            pos = end + close.length();
+
+            if (triple) {
+                levels.peek().add(new Variable(content, false));
+            } else if (content.startsWith("!")) {
+                continue;
+            } else if (content.startsWith("#") || content.startsWith("^")) {
+                Section section = new Section(content.substring(1).trim(), content.charAt(0) == '^');
+                levels.peek().add(section);
+                open.push(section);
+                levels.push(new ArrayList<>());
+            } else if (content.startsWith("/")) {
+                String sectionName = content.substring(1).trim();
+                if (open.isEmpty() || !open.peek().name.equals(sectionName)) {
+                    throw new IllegalArgumentException("Unexpected {{/" + sectionName + "}} in email template " + templateName);
+                }
+                open.pop().body = levels.pop().toArray(new Segment[0]);
+            } else {
+                levels.peek().add(new Variable(content, escape));
+            }
+        }
+
+        if (!open.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed {{#" + open.peek().name + "}} in email template " + templateName);
+        }
+        return levels.pop().toArray(new Segment[0]);
+    }
+
+    private static void addLiteral(List<Segment> segments, String text) {
+        if (!text.isEmpty()) {
+            segments.add(new Literal(text));
+        }
+    }
+
+    private static void appendEscaped(CharSequence value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&': out.append("&amp;"); break;
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '"': out.append("&quot;"); break;
+                case '\'': out.append("&#39;"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    private interface Segment {
+        void render(Scope scope, StringBuilder out);
+    }
+
+    private static final class Literal implements Segment {
+        private final String text;
+
+        private Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            out.append(text);
+        }
+    }
+
+    private static final class Variable implements Segment {
+        private final String name;
+        private final boolean escape;
+
+        private Variable(String name, boolean escape) {
+            this.name = name;
+            this.escape = escape;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            Object value = scope.lookup(name);
+            if (value == null) {
+                return;
+            }
+            CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+            if (escape) {
+                appendEscaped(text, out);
+            } else {
+                out.append(text);
+            }
+        }
+    }
+
+    private static final class Section implements Segment {
+        private final String name;
+        private final boolean inverted;
+        private Segment[] body; // Set once when the closing tag is parsed
+
+        private Section(String name, boolean inverted) {
+            this.name = name;
+            this.inverted = inverted;
+        }
+
+        @Override
+        public void render(Scope scope, StringBuilder out) {
+            Object value = scope.lookup(name);
+            boolean empty = value == null || Boolean.FALSE.equals(value)
+                    || (value instanceof Collection && ((Collection<?>) value).isEmpty());
+            if (inverted) {
+                if (empty) {
+                    EmailTemplate.render(body, scope, out);
+                }
+                return;
+            }
+            if (empty) {
+                return;
+            }
+            if (value instanceof Collection) {
+                for (Object item : (Collection<?>) value) {
+                    EmailTemplate.render(body, new Scope(item instanceof Map ? (Map<?, ?>) item : Map.of(), scope), out);
+                }
+            } else {
+                EmailTemplate.render(body, scope, out);
+            }
+        }
+    }
+
+    private static final class Scope {
+        private final Map<?, ?> values;
+        private final Scope parent;
+
+        private Scope(Map<?, ?> values, Scope parent) {
+            this.values = values;
+            this.parent = parent;
+        }
+
+        private Object lookup(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                Object value = scope.values.get(name);
+                if (value != null) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.garrizon.mail;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles every {@code *.html} template under {@code email.templates.location}
+ * once at startup and renders them from the cache. A malformed template
+ * fails startup rather than the first send.
+ * <p>
+ * Each thread renders into its own reusable buffer, so a render allocates
+ * little beyond the two result strings.
+ */
+@Component
+@Slf4j
+public class EmailTemplateEngine {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private final Map<String, EmailTemplate> templates;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_SIZE));
+
+    public EmailTemplateEngine(@Value("${email.templates.location:classpath:templates/email/}") String location)
+            throws IOException {
+        Map<String, EmailTemplate> compiled = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(location + "*.html")) {
+            String filename = resource.getFilename();
+            String name = filename.substring(0, filename.length() - ".html".length());
+            try (InputStream in = resource.getInputStream()) {
+                compiled.put(name, EmailTemplate.compile(name, StreamUtils.copyToString(in, StandardCharsets.UTF_8)));
+            }
+        }
+        this.templates = Map.copyOf(compiled);
+        log.info("Compiled {} email templates from {}", templates.size(), location);
+    }
+
+    /**
+     * @throws IllegalArgumentException if no template has that name
+     */
+    public RenderedEmail render(String templateName, Map<String, ?> model) {
+        EmailTemplate template = templates.get(templateName);
+        if (template == null) {
+            throw new IllegalArgumentException("Unknown email template: " + templateName);
+        }
+
+        StringBuilder buffer = buffers.get();
+        try {
+            buffer.setLength(0);
+            template.renderSubject(model, buffer);
+            String subject = buffer.toString();
+
+            buffer.setLength(0);
+            template.renderBody(model, buffer);
+            return new RenderedEmail(subject, buffer.toString());
+        } finally {
+            // Don't pin an oversized buffer to a pooled thread after one huge email
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                buffers.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.garrizon.mail;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RenderedEmail {
+    private String subject;
+    private String htmlBody;
+}
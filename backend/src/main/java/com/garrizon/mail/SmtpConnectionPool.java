@@ -0,0 +1,129 @@
+package com.garrizon.mail;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.Iterator;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps authenticated SMTP connections open between sends. A fresh
+ * {@link JavaMailSender#send} call pays for TCP, TLS and AUTH every time;
+ * borrowing a live {@link Transport} here pays it once per connection.
+ * <p>
+ * Connections are handed out most-recently-used first so surplus ones go
+ * idle and are closed by {@link #evictIdle()}. When {@code spring.mail.host}
+ * is not set there is no sender and {@link #isConfigured()} is false.
+ */
+@Component
+@Slf4j
+public class SmtpConnectionPool implements DisposableBean {
+
+    private final JavaMailSenderImpl mailSender;
+    private final BlockingDeque<IdleConnection> idle = new LinkedBlockingDeque<>();
+
+    @Value("${email.smtp.max-idle-connections:8}")
+    private int maxIdleConnections;
+
+    @Value("${email.smtp.idle-timeout-ms:30000}")
+    private long idleTimeoutMs;
+
+    public SmtpConnectionPool(ObjectProvider<JavaMailSender> mailSenderProvider) {
+        JavaMailSender sender = mailSenderProvider.getIfAvailable();
+        this.mailSender = sender instanceof JavaMailSenderImpl ? (JavaMailSenderImpl) sender : null;
+    }
+
+    public boolean isConfigured() {
+        return mailSender != null;
+    }
+
+    public Session getSession() {
+        return mailSender.getSession();
+    }
+
+    /**
+     * Returns a connected transport, reusing an idle one when it still
+     * answers. The caller must {@link #release} or {@link #invalidate} it.
+     */
+    public Transport borrow() throws MessagingException {
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (connection.transport.isConnected()) {
+                return connection.transport;
+            }
+            close(connection.transport);
+        }
+
+        String protocol = mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp";
+        Transport transport = mailSender.getSession().getTransport(protocol);
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    public void release(Transport transport) {
+        if (idle.size() >= maxIdleConnections) {
+            close(transport);
+            return;
+        }
+        idle.offerFirst(new IdleConnection(transport, System.nanoTime()));
+    }
+
+    /**
+     * Discards a transport whose connection failed mid-send.
+     */
+    public void invalidate(Transport transport) {
+        close(transport);
+    }
+
+    @Scheduled(fixedDelayString = "${email.smtp.idle-timeout-ms:30000}")
+    public void evictIdle() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        Iterator<IdleConnection> oldestFirst = idle.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            IdleConnection connection = oldestFirst.next();
+            if (connection.returnedAt - cutoff >= 0) {
+                break;
+            }
+            if (idle.removeLastOccurrence(connection)) {
+                close(connection.transport);
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            close(connection.transport);
+        }
+    }
+
+    private void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    private static final class IdleConnection {
+        private final Transport transport;
+        private final long returnedAt;
+
+        private IdleConnection(Transport transport, long returnedAt) {
+            this.transport = transport;
+            this.returnedAt = returnedAt;
+        }
+    }
+}
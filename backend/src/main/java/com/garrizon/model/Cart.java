@@ -11,7 +11,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = {
+        // Abandoned-cart scan: range on updated_at in keyset order, with item_count filtered from the index
+        @Index(name = "idx_carts_idle", columnList = "updated_at, id, item_count")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -30,6 +33,11 @@ public class Cart {
     @Builder.Default
     private List<CartItem> cartItems = new ArrayList<>();
 
+    // Denormalized cartItems.size(); rows that predate the column start at -1 until backfilled
+    @Column(nullable = false, columnDefinition = "integer not null default -1")
+    @Builder.Default
+    private Integer itemCount = 0;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -52,10 +60,17 @@ public class Cart {
     public void addItem(CartItem item) {
         cartItems.add(item);
         item.setCart(this);
+        itemCount = cartItems.size();
     }
 
     public void removeItem(CartItem item) {
         cartItems.remove(item);
         item.setCart(null);
+        itemCount = cartItems.size();
+    }
+
+    public void clearItems() {
+        cartItems.clear();
+        itemCount = 0;
     }
 }
@@ -6,8 +6,6 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
-
 @Entity
 @Table(name = "cart_items")
 @Data
@@ -32,5 +30,5 @@ public class CartItem {
     private Integer quantity;
 
     @Column(nullable = false, precision = 10, scale = 2)
-    private BigDecimal price; // Price snapshot at time of adding
+    private Money price; // Price snapshot at time of adding
 }
@@ -0,0 +1,33 @@
+package com.garrizon.model;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-customer order aggregates, kept up to date from order and payment
+ * events so the admin customer list never has to scan orders.
+ */
+@Entity
+@Table(name = "customer_stats")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerStats {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long orderCount;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private Money totalSpent;
+
+    private LocalDateTime lastOrderAt;
+}
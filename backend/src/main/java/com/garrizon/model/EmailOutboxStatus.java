@@ -0,0 +1,8 @@
+package com.garrizon.model;
+
+public enum EmailOutboxStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    DEAD
+}
@@ -0,0 +1,57 @@
+package com.garrizon.model;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"scope", "idempotencyKey"}),
+        indexes = @Index(name = "idx_idempotency_expires_at", columnList = "expiresAt"))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 150)
+    private String scope; // e.g. "orders:user@example.com"
+
+    @Column(nullable = false, length = 100)
+    private String idempotencyKey;
+
+    // SHA-256 of the request's significant fields; empty on rows stored before fingerprints existed
+    @Column(nullable = false, columnDefinition = "varchar(64) not null default ''")
+    @Builder.Default
+    private String requestHash = "";
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "varchar(20) not null default 'COMPLETED'")
+    @Builder.Default
+    private IdempotencyStatus status = IdempotencyStatus.COMPLETED;
+
+    private LocalDateTime claimedAt; // When the node running the request claimed the key
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGTEXT")
+    private String responseBody; // Serialized JSON of the first successful response; empty while in progress
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
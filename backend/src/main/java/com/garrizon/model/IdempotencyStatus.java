@@ -0,0 +1,6 @@
+package com.garrizon.model;
+
+public enum IdempotencyStatus {
+    IN_PROGRESS,
+    COMPLETED
+}
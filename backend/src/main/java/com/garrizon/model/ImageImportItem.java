@@ -0,0 +1,61 @@
+package com.garrizon.model;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "image_import_items", indexes = {
+        @Index(name = "idx_image_import_items_due", columnList = "status, next_attempt_at, id"),
+        @Index(name = "idx_image_import_items_job", columnList = "job_id, status, id")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageImportItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    @Column(nullable = false, length = 2000)
+    private String sourceUrl;
+
+    @Column(nullable = false)
+    private String host; // Lower-cased, for per-host fetch limits
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private ImageImportItemStatus status = ImageImportItemStatus.PENDING;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 36)
+    private String claimToken;
+
+    private LocalDateTime claimedAt;
+
+    private String imageUrl; // Set on success
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private LocalDateTime completedAt;
+}
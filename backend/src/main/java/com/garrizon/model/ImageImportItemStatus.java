@@ -0,0 +1,8 @@
+package com.garrizon.model;
+
+public enum ImageImportItemStatus {
+    PENDING,
+    FETCHING,
+    SUCCEEDED,
+    FAILED
+}
@@ -0,0 +1,51 @@
+package com.garrizon.model;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "image_import_jobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageImportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private ImageImportJobStatus status = ImageImportJobStatus.RUNNING;
+
+    @Column(nullable = false)
+    private Integer total;
+
+    // Advanced by the worker as item results are written
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer succeeded = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer failed = 0;
+
+    private String submittedBy;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
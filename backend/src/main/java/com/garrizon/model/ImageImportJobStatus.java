@@ -0,0 +1,6 @@
+package com.garrizon.model;
+
+public enum ImageImportJobStatus {
+    RUNNING,
+    COMPLETED
+}
@@ -0,0 +1,37 @@
+package com.garrizon.model;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpointed value of one dashboard counter. Money totals are stored in
+ * minor units.
+ */
+@Entity
+@Table(name = "metric_rollups")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricRollup {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(nullable = false)
+    private Long total;
+
+    // Epoch millis of the last reconcile's cut-off; deltas recorded before it are already in total
+    @Column(nullable = false, columnDefinition = "bigint not null default 0")
+    @Builder.Default
+    private Long countedUntil = 0L;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
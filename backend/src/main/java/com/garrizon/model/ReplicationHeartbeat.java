@@ -0,0 +1,28 @@
+package com.garrizon.model;
+
+import javax.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row per backend node, stamped on the primary with the node's own
+ * clock and read back from each replica by {@code ReplicaRouter}. The age
+ * of the stamp a replica returns bounds how stale that replica is.
+ */
+@Entity
+@Table(name = "replication_heartbeats")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicationHeartbeat {
+
+    @Id
+    @Column(length = 100)
+    private String nodeId;
+
+    @Column(nullable = false)
+    private Long beatAt; // Epoch milliseconds
+}
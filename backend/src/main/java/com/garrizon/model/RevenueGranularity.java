@@ -0,0 +1,52 @@
+package com.garrizon.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Bucket sizes of the revenue time series. Only HOUR and DAY are stored;
+ * WEEK and MONTH are summed from daily buckets when queried.
+ */
+public enum RevenueGranularity {
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS),
+    WEEK(ChronoUnit.WEEKS),
+    MONTH(ChronoUnit.MONTHS);
+
+    private final ChronoUnit unit;
+
+    RevenueGranularity(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public LocalDateTime truncate(LocalDateTime time) {
+        switch (this) {
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            case DAY:
+                return time.truncatedTo(ChronoUnit.DAYS);
+            case WEEK:
+                return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            default:
+                return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+        }
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+
+    public long countBuckets(LocalDateTime from, LocalDateTime to) {
+        return unit.between(truncate(from), to.minusNanos(1)) + 1;
+    }
+
+    public RevenueGranularity storedSource() {
+        return this == HOUR ? HOUR : DAY;
+    }
+
+    public RevenueGranularity coarser() {
+        return this == MONTH ? null : values()[ordinal() + 1];
+    }
+}
@@ -0,0 +1,20 @@
+package com.garrizon.model;
+
+/**
+ * Sliding windows served by the top-sellers leaderboard, ending now.
+ */
+public enum TopSellerWindow {
+    HOUR(1),
+    DAY(24),
+    WEEK(168);
+
+    private final int hours;
+
+    TopSellerWindow(int hours) {
+        this.hours = hours;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+}
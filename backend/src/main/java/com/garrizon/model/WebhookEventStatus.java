@@ -0,0 +1,10 @@
+package com.garrizon.model;
+
+public enum WebhookEventStatus {
+    RECEIVED,
+    PROCESSING,
+    PROCESSED,
+    IGNORED,
+    REJECTED,
+    FAILED
+}
@@ -0,0 +1,91 @@
+package com.garrizon.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every public controller and service method as {@code garrizon.method}.
+ * Asynchronous results are timed until the future or Mono completes rather
+ * than until the method returns. Histogram buckets are switched on through
+ * {@code management.metrics.distribution.*} for the {@code garrizon} prefix.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class MethodTimingAspect {
+
+    private static final String METRIC_NAME = "garrizon.method";
+
+    private final MeterRegistry meterRegistry;
+
+    // Timers for successful calls, by far the common case, are cached per method
+    private final Map<Method, Timer> successTimers = new ConcurrentHashMap<>();
+
+    @Around("execution(public * com.garrizon.controller..*(..)) || execution(public * com.garrizon.service..*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        long start = System.nanoTime();
+
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            record(method, start, e);
+            throw e;
+        }
+
+        if (result instanceof CompletableFuture) {
+            // Observe without replacing the future, so callers still see the original exception
+            ((CompletableFuture<?>) result).whenComplete((value, error) -> record(method, start, error));
+            return result;
+        }
+        if (result instanceof Mono) {
+            Mono<?> mono = (Mono<?>) result;
+            return Mono.defer(() -> {
+                long subscribedAt = System.nanoTime();
+                return mono.doOnSuccess(value -> record(method, subscribedAt, null))
+                        .doOnError(error -> record(method, subscribedAt, error));
+            });
+        }
+
+        record(method, start, null);
+        return result;
+    }
+
+    private void record(Method method, long startNanos, Throwable error) {
+        long elapsed = System.nanoTime() - startNanos;
+        Timer timer = error == null
+                ? successTimers.computeIfAbsent(method, m -> timer(m, "none"))
+                : timer(method, unwrap(error).getClass().getSimpleName());
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(Method method, String exception) {
+        String className = method.getDeclaringClass().getSimpleName();
+        return Timer.builder(METRIC_NAME)
+                .description("Latency of controller and service methods")
+                .tag("layer", method.getDeclaringClass().getPackageName().endsWith(".controller") ? "controller" : "service")
+                .tag("class", className)
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(meterRegistry);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
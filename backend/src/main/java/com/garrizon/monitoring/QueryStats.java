@@ -0,0 +1,90 @@
+package com.garrizon.monitoring;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SQL statements, rows and JDBC time recorded on the current thread between
+ * {@link #begin()} and {@link #close()}. Scopes nest: a statement counts
+ * towards the current scope and every enclosing one, and closing a scope
+ * restores the enclosing one.
+ * <p>
+ * Rows are rows read from result sets plus rows reported by updates.
+ */
+public final class QueryStats implements AutoCloseable {
+
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private final QueryStats previous;
+    private final Map<String, Integer> executions = new HashMap<>();
+    private int statements;
+    private long rows;
+    private long nanos;
+
+    private QueryStats(QueryStats previous) {
+        this.previous = previous;
+    }
+
+    public static QueryStats begin() {
+        QueryStats stats = new QueryStats(CURRENT.get());
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static QueryStats current() {
+        return CURRENT.get();
+    }
+
+    static void recordStatement(String sql, long elapsedNanos, long affectedRows) {
+        for (QueryStats stats = CURRENT.get(); stats != null; stats = stats.previous) {
+            stats.statements++;
+            stats.nanos += elapsedNanos;
+            stats.rows += Math.max(0, affectedRows);
+            stats.executions.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    static void recordRow() {
+        for (QueryStats stats = CURRENT.get(); stats != null; stats = stats.previous) {
+            stats.rows++;
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Statements executed at least {@code threshold} times with identical SQL,
+     * the usual signature of an N+1 pattern, most frequent first.
+     */
+    public Map<String, Integer> repeatedStatements(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        executions.entrySet().stream()
+                .filter(entry -> entry.getValue() >= threshold)
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .forEach(entry -> repeated.put(entry.getKey(), entry.getValue()));
+        return repeated.isEmpty() ? Collections.emptyMap() : repeated;
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.garrizon.monitoring;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds the request's SQL statistics as {@code X-SQL-*} response headers when
+ * {@code monitoring.sql.response-headers} is on (the dev profile). Headers
+ * are written just before the body, so they cover everything the handler
+ * executed on the request thread.
+ */
+@ControllerAdvice
+public class QueryStatsResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Value("${monitoring.sql.response-headers:false}")
+    private boolean enabled;
+
+    @Value("${monitoring.sql.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold;
+
+    @Override
+    public boolean supports(@NonNull MethodParameter returnType,
+            @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
+        return enabled;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, @NonNull MethodParameter returnType,
+            @NonNull MediaType selectedContentType,
+            @NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType,
+            @NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response) {
+        QueryStats stats = QueryStats.current();
+        if (stats != null) {
+            response.getHeaders().set("X-SQL-Statements", Integer.toString(stats.getStatements()));
+            response.getHeaders().set("X-SQL-Rows", Long.toString(stats.getRows()));
+            response.getHeaders().set("X-SQL-Time-Ms", Long.toString(TimeUnit.NANOSECONDS.toMillis(stats.getNanos())));
+            response.getHeaders().set("X-SQL-Suspected-N-Plus-One",
+                    Integer.toString(stats.repeatedStatements(nPlusOneThreshold).size()));
+        }
+        return body;
+    }
+}
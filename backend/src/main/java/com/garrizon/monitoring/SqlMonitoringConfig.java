@@ -0,0 +1,29 @@
+package com.garrizon.monitoring;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+
+@Configuration
+public class SqlMonitoringConfig {
+
+    /**
+     * Wraps the application's DataSource so each statement is counted against
+     * the request that issued it.
+     */
+    @Bean
+    public static BeanPostProcessor queryCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !Proxy.isProxyClass(bean.getClass())) {
+                    return QueryCountingDataSource.wrap((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -1,11 +1,15 @@
 package com.garrizon.repository;
 
+import com.garrizon.dto.AbandonedCartView;
 import com.garrizon.model.Cart;
 import com.garrizon.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,11 +20,31 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUser(User user);
     Optional<Cart> findByUserId(Long userId);
     
-    @Query("SELECT c FROM Cart c WHERE SIZE(c.cartItems) > 0 AND " +
-           "c.updatedAt < :threshold AND " +
-           "(c.lastEmailSentAt IS NULL OR c.lastEmailSentAt < :emailThreshold)")
-    List<Cart> findAbandonedCarts(
+    /**
+     * One keyset page of abandoned carts, ordered by {@code (updatedAt, id)}
+     * so it walks {@code idx_carts_idle}. Pass the last row of the previous
+     * page as {@code afterUpdatedAt}/{@code afterId}, or the epoch and 0 for
+     * the first page.
+     */
+    @Query("SELECT c.id AS id, c.updatedAt AS updatedAt, u.email AS email, u.firstName AS firstName " +
+           "FROM Cart c JOIN c.user u " +
+           "WHERE c.updatedAt < :threshold AND c.itemCount > 0 AND MOD(c.id, :shardCount) = :shard " +
+           "AND (c.updatedAt > :afterUpdatedAt OR (c.updatedAt = :afterUpdatedAt AND c.id > :afterId)) " +
+           "AND (c.lastEmailSentAt IS NULL OR c.lastEmailSentAt < :emailThreshold) " +
+           "ORDER BY c.updatedAt, c.id")
+    List<AbandonedCartView> findAbandonedCarts(
         @Param("threshold") LocalDateTime threshold,
-        @Param("emailThreshold") LocalDateTime emailThreshold
+        @Param("emailThreshold") LocalDateTime emailThreshold,
+        @Param("shardCount") int shardCount,
+        @Param("shard") int shard,
+        @Param("afterUpdatedAt") LocalDateTime afterUpdatedAt,
+        @Param("afterId") Long afterId,
+        Pageable pageable
     );
+
+    // Bulk update: skips @PreUpdate, so updatedAt and the cart's idle position are left alone
+    @Modifying
+    @Transactional
+    @Query("UPDATE Cart c SET c.lastEmailSentAt = :sentAt WHERE c.id IN :ids")
+    int markEmailSent(@Param("ids") List<Long> ids, @Param("sentAt") LocalDateTime sentAt);
 }
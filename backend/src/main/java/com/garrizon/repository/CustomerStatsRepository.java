@@ -0,0 +1,22 @@
+package com.garrizon.repository;
+
+import com.garrizon.dto.CustomerSummaryView;
+import com.garrizon.model.CustomerStats;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface CustomerStatsRepository extends JpaRepository<CustomerStats, Long> {
+
+    @Query("SELECT u.id AS id, u.firstName AS firstName, u.lastName AS lastName, u.email AS email, " +
+           "u.role AS role, u.createdAt AS createdAt, s.orderCount AS orderCount, " +
+           "s.totalSpent AS totalSpent, s.lastOrderAt AS lastOrderAt " +
+           "FROM User u LEFT JOIN CustomerStats s ON s.userId = u.id " +
+           "WHERE u.id < :before ORDER BY u.id DESC")
+    List<CustomerSummaryView> findCustomersBefore(@Param("before") Long before, Pageable pageable);
+}
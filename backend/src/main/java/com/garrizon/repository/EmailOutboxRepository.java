@@ -0,0 +1,65 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    @Query("SELECT e.id FROM EmailOutbox e WHERE (e.status = 'PENDING' AND e.nextAttemptAt <= :now) OR " +
+           "(e.status = 'SENDING' AND e.claimedAt < :staleBefore) ORDER BY e.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore,
+                          Pageable pageable);
+
+    // Skips domains whose lanes on this node are all busy, so their backlog can't crowd out other domains
+    @Query("SELECT e.id FROM EmailOutbox e WHERE ((e.status = 'PENDING' AND e.nextAttemptAt <= :now) OR " +
+           "(e.status = 'SENDING' AND e.claimedAt < :staleBefore)) AND e.recipientDomain NOT IN :busyDomains " +
+           "ORDER BY e.id")
+    List<Long> findDueIdsExcludingDomains(@Param("now") LocalDateTime now,
+                                          @Param("staleBefore") LocalDateTime staleBefore,
+                                          @Param("busyDomains") Collection<String> busyDomains, Pageable pageable);
+
+    /**
+     * Claims a batch for this node in one statement. Rows another worker got
+     * first are skipped; read the claimed ones back by token.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.status = 'SENDING', e.claimToken = :token, e.claimedAt = :now " +
+           "WHERE e.id IN :ids AND ((e.status = 'PENDING' AND e.nextAttemptAt <= :now) OR " +
+           "(e.status = 'SENDING' AND e.claimedAt < :staleBefore))")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+              @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Hands back claimed messages this node has no lane for, without costing an attempt
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.status = 'PENDING', e.claimToken = NULL " +
+           "WHERE e.id IN :ids AND e.claimToken = :token")
+    int release(@Param("ids") Collection<Long> ids, @Param("token") String token);
+
+    List<EmailOutbox> findByIdInAndClaimToken(Collection<Long> ids, String claimToken);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailOutbox e SET e.status = 'SENT', e.sentAt = :sentAt, e.claimToken = NULL " +
+           "WHERE e.id IN :ids AND e.claimToken = :token")
+    int markSent(@Param("ids") Collection<Long> ids, @Param("token") String token,
+                 @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM email_outbox WHERE status = 'SENT' AND sent_at < :before LIMIT :limit",
+           nativeQuery = true)
+    int deleteSentBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
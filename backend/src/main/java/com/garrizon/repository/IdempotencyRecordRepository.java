@@ -0,0 +1,45 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+    Optional<IdempotencyRecord> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    /**
+     * Takes over a key whose record has expired, or whose claim was left
+     * behind by a node that stopped before finishing the same request.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.status = 'IN_PROGRESS', r.requestHash = :hash, r.responseBody = '', " +
+           "r.claimedAt = :now, r.expiresAt = :expiresAt WHERE r.id = :id AND (r.expiresAt < :now OR " +
+           "(r.status = 'IN_PROGRESS' AND r.claimedAt < :staleBefore AND r.requestHash = :hash))")
+    int takeOver(@Param("id") Long id, @Param("hash") String hash, @Param("now") LocalDateTime now,
+                 @Param("staleBefore") LocalDateTime staleBefore, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE IdempotencyRecord r SET r.status = 'COMPLETED', r.responseBody = :body, r.expiresAt = :expiresAt " +
+           "WHERE r.id = :id AND r.status = 'IN_PROGRESS'")
+    int complete(@Param("id") Long id, @Param("body") String body, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.id = :id AND r.status = 'IN_PROGRESS'")
+    int release(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
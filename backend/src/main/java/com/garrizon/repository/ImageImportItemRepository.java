@@ -0,0 +1,53 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.ImageImportItem;
+import com.garrizon.model.ImageImportItemStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ImageImportItemRepository extends JpaRepository<ImageImportItem, Long> {
+
+    @Query("SELECT i.id FROM ImageImportItem i WHERE (i.status = 'PENDING' AND i.nextAttemptAt <= :now) OR " +
+           "(i.status = 'FETCHING' AND i.claimedAt < :staleBefore) ORDER BY i.id")
+    List<Long> findDueIds(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore,
+                          Pageable pageable);
+
+    // Skips hosts whose lanes on this node are all busy, so their backlog can't crowd out other hosts
+    @Query("SELECT i.id FROM ImageImportItem i WHERE ((i.status = 'PENDING' AND i.nextAttemptAt <= :now) OR " +
+           "(i.status = 'FETCHING' AND i.claimedAt < :staleBefore)) AND i.host NOT IN :busyHosts ORDER BY i.id")
+    List<Long> findDueIdsExcludingHosts(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore,
+                                        @Param("busyHosts") Collection<String> busyHosts, Pageable pageable);
+
+    /**
+     * Claims a batch for this node in one statement, like the email outbox.
+     * Read the claimed rows back by token.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageImportItem i SET i.status = 'FETCHING', i.claimToken = :token, i.claimedAt = :now " +
+           "WHERE i.id IN :ids AND ((i.status = 'PENDING' AND i.nextAttemptAt <= :now) OR " +
+           "(i.status = 'FETCHING' AND i.claimedAt < :staleBefore))")
+    int claim(@Param("ids") Collection<Long> ids, @Param("token") String token,
+              @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Hands back claimed items this node has no lane for, without costing an attempt
+    @Modifying
+    @Transactional
+    @Query("UPDATE ImageImportItem i SET i.status = 'PENDING', i.claimToken = NULL " +
+           "WHERE i.id IN :ids AND i.claimToken = :token")
+    int release(@Param("ids") Collection<Long> ids, @Param("token") String token);
+
+    List<ImageImportItem> findByIdInAndClaimToken(Collection<Long> ids, String claimToken);
+
+    List<ImageImportItem> findByJobIdAndStatusOrderById(Long jobId, ImageImportItemStatus status, Pageable pageable);
+}
@@ -0,0 +1,9 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.ImageImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImageImportJobRepository extends JpaRepository<ImageImportJob, Long> {
+}
@@ -0,0 +1,18 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.MetricRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface MetricRollupRepository extends JpaRepository<MetricRollup, String> {
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MetricRollup m WHERE m.name LIKE :prefix% AND m.name < :keepFrom")
+    int deleteOlderThan(@Param("prefix") String prefix, @Param("keepFrom") String keepFrom);
+}
@@ -1,9 +1,32 @@
 package com.garrizon.repository;
 
+import com.garrizon.dto.OrderItemQuantityView;
+import com.garrizon.dto.ProductSalesView;
 import com.garrizon.model.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+
+    @Query("SELECT oi.order.id AS orderId, oi.product.id AS productId, oi.quantity AS quantity " +
+           "FROM OrderItem oi WHERE oi.order.id IN :ids")
+    List<OrderItemQuantityView> findItemQuantities(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Units sold per product and hour of payment completion, for warming the
+     * top-sellers tracker.
+     */
+    @Query(value = "SELECT oi.product_id AS productId, " +
+                   "DATE_FORMAT(o.updated_at, '%Y-%m-%d %H:00:00') AS hour, SUM(oi.quantity) AS quantity " +
+                   "FROM order_items oi JOIN orders o ON o.id = oi.order_id " +
+                   "WHERE o.payment_status = 'COMPLETED' AND o.updated_at >= :since " +
+                   "GROUP BY oi.product_id, hour", nativeQuery = true)
+    List<ProductSalesView> findHourlySalesSince(@Param("since") LocalDateTime since);
 }
@@ -1,22 +1,31 @@
 package com.garrizon.repository;
 
+import com.garrizon.dto.OrderPaymentView;
+import com.garrizon.dto.PendingPaymentView;
 import com.garrizon.model.Order;
 import com.garrizon.model.OrderStatus;
+import com.garrizon.model.PaymentStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Optional<Order> findByOrderNumber(String orderNumber);
+
+    Optional<Order> findFirstByPaymentIntentId(String paymentIntentId);
+
+    Optional<Order> findByIdAndUserEmail(Long id, String email);
     
     Page<Order> findByUserIdOrderByCreatedAtDesc(Long userId, Pageable pageable);
     
@@ -24,14 +33,39 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     
     Page<Order> findAllByOrderByCreatedAtDesc(Pageable pageable);
     
-    @Query("SELECT SUM(o.totalAmount) FROM Order o WHERE o.paymentStatus = 'COMPLETED'")
+    @Query(value = "SELECT SUM(total_amount) FROM orders WHERE payment_status = 'COMPLETED'", nativeQuery = true)
     BigDecimal getTotalRevenue();
     
     @Query("SELECT COUNT(o) FROM Order o WHERE o.createdAt >= :startDate")
     Long countOrdersSince(@Param("startDate") LocalDateTime startDate);
     
-    @Query("SELECT o FROM Order o WHERE o.createdAt >= :startDate AND o.paymentStatus = 'COMPLETED' ORDER BY o.createdAt")
-    List<Order> findCompletedOrdersSince(@Param("startDate") LocalDateTime startDate);
-    
     Long countByStatus(OrderStatus status);
+
+    @Query("SELECT o.id AS id, o.user.id AS userId, o.totalAmount AS totalAmount FROM Order o WHERE o.id IN :ids")
+    List<OrderPaymentView> findPaymentViews(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentStatus = :status, o.paymentIntentId = :reference, o.updatedAt = :now " +
+           "WHERE o.id = :id AND o.paymentStatus = 'PENDING'")
+    int updatePaymentStatusIfPending(
+        @Param("id") Long id,
+        @Param("status") PaymentStatus status,
+        @Param("reference") String reference,
+        @Param("now") LocalDateTime now
+    );
+
+    @Modifying
+    @Query("UPDATE Order o SET o.paymentIntentId = :reference WHERE o.id = :id AND o.paymentStatus = 'PENDING'")
+    int updatePaymentReference(@Param("id") Long id, @Param("reference") String reference);
+
+    @Query("SELECT o.id AS id, o.paymentProvider AS paymentProvider, o.paymentIntentId AS paymentIntentId, " +
+           "o.totalAmount AS totalAmount, o.createdAt AS createdAt FROM Order o WHERE o.paymentStatus = 'PENDING' AND o.id > :afterId AND " +
+           "o.paymentIntentId IS NOT NULL AND o.createdAt < :createdBefore AND o.createdAt > :createdAfter " +
+           "ORDER BY o.id")
+    List<PendingPaymentView> findPendingPayments(
+        @Param("afterId") Long afterId,
+        @Param("createdBefore") LocalDateTime createdBefore,
+        @Param("createdAfter") LocalDateTime createdAfter,
+        Pageable pageable
+    );
 }
@@ -4,10 +4,15 @@ import com.garrizon.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -22,4 +27,21 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Page<Product> searchProducts(@Param("search") String search, Pageable pageable);
     
     Page<Product> findByCategoryIdAndIsActiveTrue(Long categoryId, Pageable pageable);
+
+    List<Product> findByImageVariantsReadyFalseAndImageUrlStartingWith(String prefix);
+
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Sets only the image columns, so edits saved while an upload was in flight are kept
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.imageUrl = :imageUrl, p.imageVariantsReady = false, p.updatedAt = :now " +
+           "WHERE p.id = :id")
+    int updateImage(@Param("id") Long id, @Param("imageUrl") String imageUrl, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.imageVariantsReady = true WHERE p.id = :id AND p.imageUrl = :imageUrl")
+    int markImageVariantsReady(@Param("id") Long id, @Param("imageUrl") String imageUrl);
 }
@@ -0,0 +1,40 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.RefreshTokenFamily;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RefreshTokenFamilyRepository extends JpaRepository<RefreshTokenFamily, String> {
+
+    /**
+     * Swaps in the next token of a family. Returns 0 if the presented token is
+     * no longer current or the family was revoked.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshTokenFamily f SET f.currentTokenId = :nextTokenId, f.expiresAt = :expiresAt " +
+           "WHERE f.id = :id AND f.currentTokenId = :tokenId AND f.revoked = false")
+    int rotate(@Param("id") String id, @Param("tokenId") String tokenId,
+               @Param("nextTokenId") String nextTokenId, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE RefreshTokenFamily f SET f.revoked = true WHERE f.id = :id")
+    int revoke(@Param("id") String id);
+
+    @Query("SELECT f FROM RefreshTokenFamily f WHERE f.revoked = true AND f.expiresAt > :now")
+    List<RefreshTokenFamily> findActiveRevoked(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RefreshTokenFamily f WHERE f.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,25 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.RevenueGranularity;
+import com.garrizon.model.RevenueRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevenueRollupRepository extends JpaRepository<RevenueRollup, Long> {
+
+    List<RevenueRollup> findByGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStart(
+            RevenueGranularity granularity, LocalDateTime from, LocalDateTime to);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevenueRollup r WHERE r.granularity = :granularity AND r.bucketStart < :before")
+    int deleteOlderThan(@Param("granularity") RevenueGranularity granularity, @Param("before") LocalDateTime before);
+}
@@ -0,0 +1,59 @@
+package com.garrizon.repository;
+
+import com.garrizon.model.WebhookEvent;
+import com.garrizon.model.WebhookEventStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WebhookEventRepository extends JpaRepository<WebhookEvent, Long> {
+
+    @Query("SELECT e.id FROM WebhookEvent e WHERE " +
+           "(e.status = 'RECEIVED' AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now)) OR " +
+           "(e.status = 'PROCESSING' AND e.claimedAt < :staleBefore) ORDER BY e.id")
+    List<Long> findPendingIds(@Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore,
+                              Pageable pageable);
+
+    /**
+     * Claims an event for this node. Returns 0 when another worker got it first.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookEvent e SET e.status = 'PROCESSING', e.claimedAt = :now, e.attempts = e.attempts + 1 " +
+           "WHERE e.id = :id AND ((e.status = 'RECEIVED' AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now)) OR " +
+           "(e.status = 'PROCESSING' AND e.claimedAt < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    /**
+     * Hands back a claimed event this node could not start, without counting
+     * the attempt.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookEvent e SET e.status = 'RECEIVED', e.attempts = e.attempts - 1 " +
+           "WHERE e.id = :id AND e.status = 'PROCESSING'")
+    int release(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookEvent e SET e.status = :status, e.lastError = :error, e.processedAt = :processedAt WHERE e.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") WebhookEventStatus status,
+                     @Param("error") String error, @Param("processedAt") LocalDateTime processedAt);
+
+    /**
+     * Puts a failed event back in the inbox, due again at {@code nextAttemptAt}.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE WebhookEvent e SET e.status = 'RECEIVED', e.lastError = :error, e.nextAttemptAt = :nextAttemptAt " +
+           "WHERE e.id = :id")
+    int retry(@Param("id") Long id, @Param("error") String error, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+}
@@ -0,0 +1,314 @@
+package com.garrizon.resilience;
+
+import com.garrizon.exception.ProviderUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead plus circuit breaker for a single external provider.
+ * <p>
+ * The bulkhead caps concurrent calls and rejects immediately when full. The
+ * breaker tracks the outcome of the last {@code slidingWindowSize} calls and
+ * opens when the failure rate crosses the threshold. Only slow calls and
+ * errors that {@code isFailure} blames on the provider (5xx, timeouts,
+ * connection errors) count as failures; a 4xx for a bad reference says
+ * nothing about the provider's health and counts as a success. After {@code waitDurationOpenMs} it lets a few probe calls
+ * through (half-open) and closes again only if they all succeed.
+ * <p>
+ * Call latency is recorded as {@code garrizon.provider.calls}, alongside
+ * gauges for breaker state and active calls and counters for rejections.
+ */
+public class ProviderGuard {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @FunctionalInterface
+    public interface GuardedCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long waitDurationOpenMs;
+    private final int halfOpenCalls;
+    private final long slowCallThresholdNanos;
+    private final Predicate<Throwable> isFailure;
+
+    private final Semaphore bulkhead;
+
+    // Breaker state, guarded by this
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCount;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private final AtomicLong successfulCalls = new AtomicLong();
+    private final AtomicLong failedCalls = new AtomicLong();
+    private final AtomicLong bulkheadRejections = new AtomicLong();
+    private final AtomicLong circuitRejections = new AtomicLong();
+
+    private final Timer successTimer;
+    private final Timer failureTimer;
+
+    public ProviderGuard(String name, int maxConcurrentCalls, int failureRateThreshold, int slidingWindowSize,
+            int minimumCalls, long waitDurationOpenMs, int halfOpenCalls, long slowCallThresholdMs,
+            Predicate<Throwable> isFailure, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.min(minimumCalls, slidingWindowSize);
+        this.waitDurationOpenMs = waitDurationOpenMs;
+        this.halfOpenCalls = halfOpenCalls;
+        this.slowCallThresholdNanos = slowCallThresholdMs * 1_000_000L;
+        this.isFailure = isFailure;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.window = new boolean[slidingWindowSize];
+        this.successTimer = callTimer(meterRegistry, "success");
+        this.failureTimer = callTimer(meterRegistry, "failure");
+        registerMeters(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public <T, E extends Exception> T execute(GuardedCall<T, E> call) throws E {
+        acquire();
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            onComplete(start, null);
+            return result;
+        } catch (Exception e) {
+            onComplete(start, e);
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+        try {
+            acquire();
+        } catch (ProviderUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            onComplete(start, e);
+            bulkhead.release();
+            throw e;
+        }
+        return future.whenComplete((value, error) -> {
+            onComplete(start, error);
+            bulkhead.release();
+        });
+    }
+
+    /**
+     * The outcome is settled in {@code doFinally}, which also runs when the
+     * subscriber cancels. A cancelled call says nothing about the provider,
+     * so it is not recorded, but a half-open probe permit is handed back.
+     */
+    public <T> Mono<T> executeMono(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            acquire();
+            long start = System.nanoTime();
+            Mono<T> mono;
+            try {
+                mono = call.get();
+            } catch (RuntimeException e) {
+                onComplete(start, e);
+                bulkhead.release();
+                throw e;
+            }
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            return mono
+                    .doOnError(failure::set)
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            releaseHalfOpenPermit();
+                        } else {
+                            onComplete(start, failure.get());
+                        }
+                        bulkhead.release();
+                    });
+        });
+    }
+
+    public synchronized State getState() {
+        return currentState(System.currentTimeMillis());
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        synchronized (this) {
+            snapshot.put("state", currentState(System.currentTimeMillis()));
+            snapshot.put("failureRate", windowCount == 0 ? 0 : windowFailures * 100 / windowCount);
+            snapshot.put("bufferedCalls", windowCount);
+        }
+        snapshot.put("activeCalls", maxConcurrentCalls - bulkhead.availablePermits());
+        snapshot.put("maxConcurrentCalls", maxConcurrentCalls);
+        snapshot.put("successfulCalls", successfulCalls.get());
+        snapshot.put("failedCalls", failedCalls.get());
+        snapshot.put("bulkheadRejections", bulkheadRejections.get());
+        snapshot.put("circuitRejections", circuitRejections.get());
+        return snapshot;
+    }
+
+    private void acquire() {
+        if (!tryAcquireCircuit()) {
+            circuitRejections.incrementAndGet();
+            throw new ProviderUnavailableException(name + " is temporarily unavailable");
+        }
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejections.incrementAndGet();
+            releaseHalfOpenPermit();
+            throw new ProviderUnavailableException(name + " is at capacity, try again shortly");
+        }
+    }
+
+    private synchronized boolean tryAcquireCircuit() {
+        State current = currentState(System.currentTimeMillis());
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void releaseHalfOpenPermit() {
+        if (state == State.HALF_OPEN && halfOpenPermits < halfOpenCalls) {
+            halfOpenPermits++;
+        }
+    }
+
+    private State currentState(long now) {
+        if (state == State.OPEN && now - openedAt >= waitDurationOpenMs) {
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        return state;
+    }
+
+    private void onComplete(long startNanos, Throwable error) {
+        long elapsed = System.nanoTime() - startNanos;
+        boolean failure = elapsed > slowCallThresholdNanos || (error != null && isFailure.test(unwrap(error)));
+        if (error != null) {
+            failedCalls.incrementAndGet();
+            failureTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        } else {
+            successfulCalls.incrementAndGet();
+            successTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+        record(failure);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private synchronized void record(boolean failure) {
+        if (state == State.HALF_OPEN) {
+            if (failure) {
+                open();
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return; // Late completion of a call started before the breaker opened
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowPosition = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private Timer callTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("garrizon.provider.calls")
+                .description("Latency of outbound calls to external providers")
+                .tag("provider", name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private void registerMeters(MeterRegistry registry) {
+        Gauge.builder("garrizon.provider.circuit.state", this, guard -> guard.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("provider", name)
+                .register(registry);
+        Gauge.builder("garrizon.provider.active.calls", bulkhead, permits -> maxConcurrentCalls - permits.availablePermits())
+                .tag("provider", name)
+                .register(registry);
+        FunctionCounter.builder("garrizon.provider.rejections", bulkheadRejections, AtomicLong::get)
+                .tag("provider", name)
+                .tag("reason", "bulkhead")
+                .register(registry);
+        FunctionCounter.builder("garrizon.provider.rejections", circuitRejections, AtomicLong::get)
+                .tag("provider", name)
+                .tag("reason", "circuit")
+                .register(registry);
+    }
+}
@@ -0,0 +1,91 @@
+package com.garrizon.resilience;
+
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Creates one {@link ProviderGuard} per external provider. Settings are read
+ * from {@code resilience.<provider>.*}, falling back to
+ * {@code resilience.defaults.*}.
+ * <p>
+ * Only errors that point at the provider itself count towards opening a
+ * breaker: 5xx responses, timeouts and connection failures. Client errors
+ * such as a 404 for an unknown reference are the caller's problem.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProviderGuardRegistry {
+
+    public static final String PAYSTACK = "paystack";
+    public static final String STRIPE = "stripe";
+    public static final String CLOUDINARY = "cloudinary";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ProviderGuard> guards = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        List.of(PAYSTACK, STRIPE, CLOUDINARY).forEach(this::get);
+    }
+
+    public ProviderGuard get(String provider) {
+        return guards.computeIfAbsent(provider, this::create);
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        guards.forEach((name, guard) -> snapshot.put(name, guard.snapshot()));
+        return snapshot;
+    }
+
+    private ProviderGuard create(String provider) {
+        return new ProviderGuard(
+                provider,
+                setting(provider, "max-concurrent-calls", 20),
+                setting(provider, "failure-rate-threshold", 50),
+                setting(provider, "sliding-window-size", 20),
+                setting(provider, "minimum-calls", 10),
+                setting(provider, "wait-duration-open-ms", 30000),
+                setting(provider, "half-open-calls", 3),
+                setting(provider, "slow-call-threshold-ms", 5000),
+                ProviderGuardRegistry::isProviderFailure,
+                meterRegistry);
+    }
+
+    static boolean isProviderFailure(Throwable error) {
+        if (error instanceof WebClientResponseException) {
+            return ((WebClientResponseException) error).getStatusCode().is5xxServerError();
+        }
+        if (error instanceof StripeException) {
+            // No status code means the request never got an answer
+            Integer status = ((StripeException) error).getStatusCode();
+            return status == null || status >= 500;
+        }
+        if (error instanceof WebClientRequestException || error instanceof IOException
+                || error instanceof TimeoutException) {
+            return true;
+        }
+        // Cloudinary reports every HTTP error as a plain RuntimeException
+        String message = error.getMessage();
+        return message != null && message.startsWith("Server returned unexpected status code - 5");
+    }
+
+    private int setting(String provider, String key, int defaultValue) {
+        Integer fallback = environment.getProperty("resilience.defaults." + key, Integer.class, defaultValue);
+        return environment.getProperty("resilience." + provider + "." + key, Integer.class, fallback);
+    }
+}
@@ -0,0 +1,50 @@
+package com.garrizon.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking token bucket kept as a single "theoretical arrival time"
+ * (the GCRA formulation), so acquiring a permit is one CAS on one long and
+ * needs no refill thread or lock.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public TokenBucket(long intervalNanos, int burst, long nowNanos) {
+        this.intervalNanos = intervalNanos;
+        this.capacityNanos = intervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes one permit. Returns the permits left (zero or more) on success,
+     * or the negated nanoseconds until a permit frees up when rejected.
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, nowNanos) + intervalNanos;
+            long used = next - nowNanos;
+            if (used > capacityNanos) {
+                return -(used - capacityNanos);
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return (capacityNanos - used) / intervalNanos;
+            }
+        }
+    }
+
+    public long nanosUntilFull(long nowNanos) {
+        return Math.max(0, theoreticalArrival.get() - nowNanos);
+    }
+
+    /**
+     * A full bucket behaves exactly like a new one, so it can be dropped.
+     */
+    public boolean isFull(long nowNanos) {
+        return theoreticalArrival.get() <= nowNanos;
+    }
+}
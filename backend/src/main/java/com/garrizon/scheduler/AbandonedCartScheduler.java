@@ -1,40 +1,115 @@
 package com.garrizon.scheduler;
 
-import com.garrizon.model.Cart;
+import com.garrizon.cluster.LeaseService;
+import com.garrizon.dto.AbandonedCartView;
 import com.garrizon.repository.CartRepository;
-import com.garrizon.service.EmailService;
+import com.garrizon.service.CartService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
-// @Component - Disabled for development (depends on EmailService)
+/**
+ * Sends reminder emails for carts that have sat idle with items in them.
+ * Candidates are read in keyset chunks without a surrounding transaction,
+ * and each chunk's reminders are queued in the email outbox together with
+ * one bulk update of the carts, so memory and lock time stay per-chunk
+ * however many carts are idle.
+ * <p>
+ * Carts are split into {@code shard-count} shards by {@code id} modulo the
+ * count. Each replica leases its share of the shards for the run, so
+ * replicas divide the carts between them instead of all emailing the same ones.
+ * Finished shards stay leased for the rest of the exclusive window, so a
+ * replica whose cron fires later does not pick them up again.
+ */
+@Component
+@ConditionalOnProperty(name = "scheduler.abandoned-cart.enabled", havingValue = "true")
 @RequiredArgsConstructor
 @Slf4j
 public class AbandonedCartScheduler {
 
+    private static final String JOB_NAME = "abandoned-cart";
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final CartRepository cartRepository;
-    private final EmailService emailService;
+    private final CartService cartService;
+    private final LeaseService leaseService;
+
+    @Value("${scheduler.abandoned-cart.inactivity-threshold-hours:1}")
+    private long inactivityThresholdHours;
+
+    @Value("${scheduler.abandoned-cart.resend-after-hours:24}")
+    private long resendAfterHours;
+
+    @Value("${scheduler.abandoned-cart.batch-size:500}")
+    private int batchSize;
+
+    @Value("${scheduler.abandoned-cart.shard-count:16}")
+    private int shardCount;
 
     @Scheduled(cron = "${scheduler.abandoned-cart.cron}")
-    @Transactional
     public void processAbandonedCarts() {
-        LocalDateTime threshold = LocalDateTime.now().minusHours(1); // 1 hour inactivity
-        LocalDateTime emailThreshold = LocalDateTime.now().minusDays(1); // Don't spam, 1 email per day max
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime threshold = now.minusHours(inactivityThresholdHours);
+        LocalDateTime emailThreshold = now.minusHours(resendAfterHours); // Don't spam
 
-        List<Cart> abandonedCarts = cartRepository.findAbandonedCarts(threshold, emailThreshold);
+        List<Integer> shards = leaseService.acquireShards(JOB_NAME, shardCount);
+        List<Integer> finished = new ArrayList<>(shards.size());
+        int scanned = 0;
+        try {
+            for (Integer shard : shards) {
+                int shardScanned = processShard(shard, threshold, emailThreshold);
+                if (shardScanned >= 0) {
+                    scanned += shardScanned;
+                    finished.add(shard);
+                }
+            }
+        } finally {
+            leaseService.finishShards(JOB_NAME, finished);
+            List<Integer> unfinished = new ArrayList<>(shards);
+            unfinished.removeAll(finished);
+            leaseService.releaseShards(JOB_NAME, unfinished);
+        }
 
-        for (Cart cart : abandonedCarts) {
-            if (cart.getUser() != null) {
-                emailService.sendAbandonedCartEmail(cart.getUser().getEmail(), cart.getUser().getFirstName());
+        if (scanned > 0) {
+            log.info("Queued abandoned cart reminders for {} idle carts in shards {}", scanned, shards);
+        }
+    }
+
+    /**
+     * @return the carts scanned, or -1 when the shard's lease was lost
+     */
+    private int processShard(int shard, LocalDateTime threshold, LocalDateTime emailThreshold) {
+        LocalDateTime afterUpdatedAt = KEYSET_START;
+        long afterId = 0;
+        int scanned = 0;
 
-                cart.setLastEmailSentAt(LocalDateTime.now());
-                cartRepository.save(cart);
+        List<AbandonedCartView> chunk;
+        do {
+            // A lost lease means another node has taken the shard over
+            if (!leaseService.holdsShard(JOB_NAME, shard)) {
+                log.warn("Lost abandoned cart shard {} mid-run; leaving it to its new owner", shard);
+                return -1;
             }
-        }
+            chunk = cartRepository.findAbandonedCarts(threshold, emailThreshold, shardCount, shard,
+                    afterUpdatedAt, afterId, PageRequest.of(0, batchSize));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            cartService.queueAbandonedCartReminders(chunk);
+            scanned += chunk.size();
+
+            AbandonedCartView last = chunk.get(chunk.size() - 1);
+            afterUpdatedAt = last.getUpdatedAt();
+            afterId = last.getId();
+        } while (chunk.size() == batchSize);
+        return scanned;
     }
 }
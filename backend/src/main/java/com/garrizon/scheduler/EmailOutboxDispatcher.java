@@ -0,0 +1,378 @@
+package com.garrizon.scheduler;
+
+
+import com.garrizon.cluster.LeaseService;
+import com.garrizon.mail.SmtpConnectionPool;
+import com.garrizon.model.EmailOutbox;
+import com.garrizon.model.EmailOutboxStatus;
+import com.garrizon.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Transport;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.MimeMessage;
+import java.io.UnsupportedEncodingException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers the email outbox. Each poll claims only what the free threads of
+ * {@code emailExecutor} can take with one conditional update, splits it by
+ * recipient domain into lanes, with at most
+ * {@code email.outbox.per-domain-concurrency} per domain across polls, and
+ * starts the lanes without waiting for them. Each lane sends over one pooled
+ * SMTP connection and writes its results in two batched writes when done.
+ * <p>
+ * A lane sends its messages one after another, so lanes are kept short
+ * enough that one where every message hits the SMTP timeouts still finishes
+ * within half of {@code stale-claim-minutes}. Otherwise another node would
+ * re-claim the lane's messages and send them twice. Claimed messages
+ * without a lane are released at once.
+ * <p>
+ * Temporary failures are retried with exponential backoff and jitter;
+ * rejected addresses and messages that run out of attempts are dead-lettered.
+ * Delivery is at-least-once: a node that dies mid-send leaves its claim to
+ * go stale and be picked up again.
+ */
+@Component
+@Slf4j
+public class EmailOutboxDispatcher {
+
+    private static final String FAILURE_SQL =
+            "UPDATE email_outbox SET status = ?, attempts = ?, next_attempt_at = ?, last_error = ?, " +
+            "claim_token = NULL WHERE id = ? AND claim_token = ?";
+
+    private static final int PURGE_BATCH_SIZE = 5000;
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final SmtpConnectionPool connectionPool;
+    private final ThreadPoolTaskExecutor emailExecutor;
+    private final JdbcTemplate jdbcTemplate;
+    private final LeaseService leaseService;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+    private final AtomicBoolean warnedUnconfigured = new AtomicBoolean();
+    private final AtomicInteger activeLanes = new AtomicInteger();
+    private final Map<String, Integer> activeLanesByDomain = new ConcurrentHashMap<>();
+
+    @Value("${email.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${email.outbox.per-domain-concurrency:2}")
+    private int perDomainConcurrency;
+
+    @Value("${email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email.outbox.initial-backoff-ms:30000}")
+    private long initialBackoffMs;
+
+    @Value("${email.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${email.outbox.stale-claim-minutes:5}")
+    private long staleClaimMinutes;
+
+    @Value("${email.outbox.sent-retention-days:7}")
+    private long sentRetentionDays;
+
+    @Value("${spring.mail.properties.mail.smtp.connectiontimeout:10000}")
+    private long smtpConnectTimeoutMs;
+
+    @Value("${spring.mail.properties.mail.smtp.timeout:10000}")
+    private long smtpReadTimeoutMs;
+
+    @Value("${spring.mail.properties.mail.smtp.writetimeout:10000}")
+    private long smtpWriteTimeoutMs;
+
+    @Value("${resend.from-email:noreply@garrizon.com}")
+    private String fromEmail;
+
+    @Value("${resend.from-name:Garrizon}")
+    private String fromName;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository,
+                                 SmtpConnectionPool connectionPool,
+                                 ThreadPoolTaskExecutor emailExecutor,
+                                 JdbcTemplate jdbcTemplate,
+                                 LeaseService leaseService,
+                                 MeterRegistry meterRegistry) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.connectionPool = connectionPool;
+        this.emailExecutor = emailExecutor;
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaseService = leaseService;
+        this.sentCounter = outcomeCounter(meterRegistry, "sent");
+        this.retriedCounter = outcomeCounter(meterRegistry, "retried");
+        this.deadCounter = outcomeCounter(meterRegistry, "dead");
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        if (!connectionPool.isConfigured()) {
+            if (warnedUnconfigured.compareAndSet(false, true)) {
+                log.warn("spring.mail.host is not set; queued emails stay in the outbox until it is");
+            }
+            return;
+        }
+
+        int freeLanes = emailExecutor.getMaxPoolSize() - activeLanes.get();
+        if (freeLanes <= 0) {
+            return;
+        }
+        int laneSize = laneSize();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusMinutes(staleClaimMinutes);
+        PageRequest page = PageRequest.of(0, Math.min(batchSize, freeLanes * laneSize));
+        List<String> busyDomains = new ArrayList<>();
+        activeLanesByDomain.forEach((domain, lanes) -> {
+            if (lanes >= perDomainConcurrency) {
+                busyDomains.add(domain);
+            }
+        });
+        List<Long> due = busyDomains.isEmpty()
+                ? emailOutboxRepository.findDueIds(now, staleBefore, page)
+                : emailOutboxRepository.findDueIdsExcludingDomains(now, staleBefore, busyDomains, page);
+        if (due.isEmpty()) {
+            return;
+        }
+
+        String token = UUID.randomUUID().toString();
+        if (emailOutboxRepository.claim(due, token, now, staleBefore) == 0) {
+            return;
+        }
+        List<EmailOutbox> claimed = emailOutboxRepository.findByIdInAndClaimToken(due, token);
+
+        List<Long> unassigned = new ArrayList<>();
+        for (List<EmailOutbox> lane : lanes(claimed, freeLanes, laneSize, unassigned)) {
+            String domain = lane.get(0).getRecipientDomain();
+            activeLanes.incrementAndGet();
+            activeLanesByDomain.merge(domain, 1, Integer::sum);
+            try {
+                CompletableFuture.supplyAsync(() -> send(lane), emailExecutor)
+                        .thenAccept(result -> record(result, token))
+                        .whenComplete((ignored, e) -> {
+                            finishLane(domain);
+                            if (e != null) {
+                                // The messages stay claimed and are picked up again once stale
+                                log.warn("Failed to record email results for {}: {}", domain, e.getMessage());
+                            }
+                        });
+            } catch (TaskRejectedException e) {
+                finishLane(domain);
+                lane.forEach(message -> unassigned.add(message.getId()));
+            }
+        }
+        if (!unassigned.isEmpty()) {
+            emailOutboxRepository.release(unassigned, token);
+        }
+    }
+
+    private void record(LaneResult result, String token) {
+        if (!result.sent.isEmpty()) {
+            emailOutboxRepository.markSent(result.sent, token, LocalDateTime.now());
+            sentCounter.increment(result.sent.size());
+        }
+        if (!result.failed.isEmpty()) {
+            recordFailures(result.failed, token);
+        }
+        log.debug("Dispatched {} emails, {} failed", result.sent.size(), result.failed.size());
+    }
+
+    private void finishLane(String domain) {
+        activeLanesByDomain.computeIfPresent(domain, (d, lanes) -> lanes > 1 ? lanes - 1 : null);
+        activeLanes.decrementAndGet();
+    }
+
+    /**
+     * Messages per lane. The worst case for one message is a connect, a
+     * stalled write and a stalled read, each up to its SMTP timeout; this
+     * keeps a lane of those within half the stale-claim window.
+     */
+    private int laneSize() {
+        long window = Duration.ofMinutes(staleClaimMinutes).toMillis();
+        long perMessage = smtpConnectTimeoutMs + smtpWriteTimeoutMs + smtpReadTimeoutMs;
+        return (int) Math.max(1, Math.min(batchSize, window / (2 * perMessage)));
+    }
+
+    @Scheduled(cron = "${email.outbox.purge-cron:0 30 4 * * *}")
+    public void scheduledPurge() {
+        leaseService.runExclusively("email-outbox-purge", this::purgeSent);
+    }
+
+    public void purgeSent() {
+        LocalDateTime before = LocalDateTime.now().minusDays(sentRetentionDays);
+        int rows;
+        do {
+            rows = emailOutboxRepository.deleteSentBefore(before, PURGE_BATCH_SIZE);
+        } while (rows == PURGE_BATCH_SIZE);
+    }
+
+    /**
+     * Deals each domain's messages round-robin into the lanes it has left, up
+     * to {@code perDomainConcurrency} per domain including lanes still running
+     * and {@code freeLanes} in total, so no receiving server sees more
+     * parallel connections from this node than that. Messages that do not fit
+     * are added to {@code unassigned}.
+     */
+    private List<List<EmailOutbox>> lanes(List<EmailOutbox> claimed, int freeLanes, int laneSize,
+                                          List<Long> unassigned) {
+        Map<String, List<EmailOutbox>> byDomain = new LinkedHashMap<>();
+        for (EmailOutbox message : claimed) {
+            byDomain.computeIfAbsent(message.getRecipientDomain(), d -> new ArrayList<>()).add(message);
+        }
+
+        List<List<EmailOutbox>> lanes = new ArrayList<>();
+        byDomain.forEach((domain, messages) -> {
+            int available = Math.min(perDomainConcurrency - activeLanesByDomain.getOrDefault(domain, 0),
+                    freeLanes - lanes.size());
+            int count = Math.max(0, Math.min(available, messages.size()));
+            int dealt = Math.min(messages.size(), count * laneSize);
+
+            List<List<EmailOutbox>> domainLanes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                domainLanes.add(new ArrayList<>());
+            }
+            for (int i = 0; i < dealt; i++) {
+                domainLanes.get(i % count).add(messages.get(i));
+            }
+            for (int i = dealt; i < messages.size(); i++) {
+                unassigned.add(messages.get(i).getId());
+            }
+            lanes.addAll(domainLanes);
+        });
+        return lanes;
+    }
+
+    private LaneResult send(List<EmailOutbox> lane) {
+        LaneResult result = new LaneResult();
+        Transport transport = null;
+        try {
+            for (EmailOutbox message : lane) {
+                try {
+                    if (transport == null) {
+                        transport = connectionPool.borrow();
+                    }
+                    MimeMessage mime = toMimeMessage(message);
+                    transport.sendMessage(mime, mime.getAllRecipients());
+                    result.sent.add(message.getId());
+                } catch (MessagingException | UnsupportedEncodingException e) {
+                    result.failed.add(new Failure(message, e, isPermanent(e)));
+                    if (transport != null && !transport.isConnected()) {
+                        connectionPool.invalidate(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            if (transport != null) {
+                connectionPool.release(transport);
+            }
+        }
+        return result;
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox message) throws MessagingException, UnsupportedEncodingException {
+        MimeMessage mime = new MimeMessage(connectionPool.getSession());
+        MimeMessageHelper helper = new MimeMessageHelper(mime, "UTF-8");
+        helper.setFrom(fromEmail, fromName);
+        helper.setTo(message.getRecipient());
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getBody(), Boolean.TRUE.equals(message.getHtml()));
+        mime.saveChanges();
+        return mime;
+    }
+
+    // Bad addresses will not fix themselves; everything else (timeouts, 4xx, dropped connections) is retried
+    private boolean isPermanent(Exception e) {
+        if (e instanceof AddressException) {
+            return true;
+        }
+        return e instanceof SendFailedException
+                && ((SendFailedException) e).getInvalidAddresses() != null
+                && ((SendFailedException) e).getInvalidAddresses().length > 0;
+    }
+
+    private void recordFailures(List<Failure> failed, String token) {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(FAILURE_SQL, failed, failed.size(), (ps, failure) -> {
+            int attempts = failure.message.getAttempts() + 1;
+            boolean dead = failure.permanent || attempts >= maxAttempts;
+            if (dead) {
+                deadCounter.increment();
+                log.warn("Dead-lettering email {} to {} after {} attempts: {}",
+                        failure.message.getId(), failure.message.getRecipientDomain(), attempts, failure.error);
+            } else {
+                retriedCounter.increment();
+            }
+            ps.setString(1, (dead ? EmailOutboxStatus.DEAD : EmailOutboxStatus.PENDING).name());
+            ps.setInt(2, attempts);
+            ps.setTimestamp(3, Timestamp.valueOf(now.plus(backoff(attempts))));
+            ps.setString(4, failure.error);
+            ps.setLong(5, failure.message.getId());
+            ps.setString(6, token);
+        });
+    }
+
+    /**
+     * Doubles from {@code initialBackoffMs} per attempt up to
+     * {@code maxBackoffMs}, with up to 20% jitter so a failed batch does not
+     * come due again all at once.
+     */
+    private Duration backoff(int attempts) {
+        long delay = initialBackoffMs << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > maxBackoffMs) {
+            delay = maxBackoffMs;
+        }
+        return Duration.ofMillis(delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1));
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("garrizon.email.outbox")
+                .description("Outbox messages by delivery outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static final class LaneResult {
+        private final List<Long> sent = new ArrayList<>();
+        private final List<Failure> failed = new ArrayList<>();
+    }
+
+    private static final class Failure {
+        private final EmailOutbox message;
+        private final String error;
+        private final boolean permanent;
+
+        private Failure(EmailOutbox message, Exception e, boolean permanent) {
+            this.message = message;
+            String text = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            this.error = text.length() > 1000 ? text.substring(0, 1000) : text;
+            this.permanent = permanent;
+        }
+    }
+}
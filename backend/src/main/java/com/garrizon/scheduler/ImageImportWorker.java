@@ -0,0 +1,537 @@
+package com.garrizon.scheduler;
+
+import com.garrizon.exception.BadRequestException;
+import com.garrizon.model.ImageImportItem;
+import com.garrizon.model.ImageImportItemStatus;
+import com.garrizon.repository.ImageImportItemRepository;
+import com.garrizon.service.ImageImportService;
+import com.garrizon.service.ImageUploadService;
+import com.garrizon.storage.ImageVariantService;
+import com.garrizon.storage.LocalImageStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Works through queued image imports. Each poll claims only what the free
+ * threads of {@code imageImportExecutor} can take, splits it by source host
+ * into lanes, with at most {@code storage.imports.per-host-concurrency} per
+ * host across polls, and starts the lanes without waiting for them. An image
+ * is streamed from its host into {@link LocalImageStore} and published the
+ * same way as an upload. When a lane finishes, its results are written
+ * together by {@link ImageImportService#record}.
+ * <p>
+ * Each download, headers and body, must finish within
+ * {@code request-timeout-ms}; a host that drips its body has the stream
+ * closed under it at the deadline. Lanes are kept short enough that a lane
+ * whose items all take their full download and Cloudinary timeouts still
+ * finishes within half of {@code stale-claim-minutes}, so other nodes do not
+ * re-claim and fetch the same items again. Claimed items without a lane are
+ * released at once.
+ * <p>
+ * Source URLs are supplied by admins, so every request, including each
+ * redirect hop, must resolve to public addresses only. Loopback, private,
+ * link-local and similar destinations fail at once.
+ * <p>
+ * Timeouts, 5xx and 429 responses are retried with exponential backoff and
+ * jitter; other 4xx responses, non-images and oversized files fail at once.
+ */
+@Component
+@Slf4j
+public class ImageImportWorker {
+
+    private static final int MAX_REDIRECTS = 5;
+    private static final Set<Integer> REDIRECT_STATUSES = Set.of(301, 302, 303, 307, 308);
+
+    private final ImageImportItemRepository itemRepository;
+    private final ImageImportService imageImportService;
+    private final ImageUploadService imageUploadService;
+    private final ImageVariantService imageVariantService;
+    private final LocalImageStore localImageStore;
+    private final ThreadPoolTaskExecutor imageImportExecutor;
+    private final HttpClient httpClient;
+    private final Counter importedCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+    private final AtomicInteger activeLanes = new AtomicInteger();
+    private final ScheduledExecutorService deadlines = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-import-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Integer> activeLanesByHost = new ConcurrentHashMap<>();
+
+    @Value("${storage.imports.batch-size:100}")
+    private int batchSize;
+
+    @Value("${storage.imports.per-host-concurrency:2}")
+    private int perHostConcurrency;
+
+    @Value("${storage.imports.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${storage.imports.initial-backoff-ms:10000}")
+    private long initialBackoffMs;
+
+    @Value("${storage.imports.max-backoff-ms:600000}")
+    private long maxBackoffMs;
+
+    @Value("${storage.imports.stale-claim-minutes:10}")
+    private long staleClaimMinutes;
+
+    @Value("${storage.imports.request-timeout-ms:30000}")
+    private long requestTimeoutMs;
+
+    @Value("${storage.imports.max-image-bytes:10485760}")
+    private long maxImageBytes;
+
+    @Value("${cloudinary.connect-timeout-ms:5000}")
+    private long publishConnectTimeoutMs;
+
+    @Value("${cloudinary.read-timeout-ms:30000}")
+    private long publishReadTimeoutMs;
+
+    public ImageImportWorker(ImageImportItemRepository itemRepository,
+                             ImageImportService imageImportService,
+                             ImageUploadService imageUploadService,
+                             ImageVariantService imageVariantService,
+                             LocalImageStore localImageStore,
+                             ThreadPoolTaskExecutor imageImportExecutor,
+                             MeterRegistry meterRegistry,
+                             @Value("${storage.imports.connect-timeout-ms:5000}") long connectTimeoutMs) {
+        this.itemRepository = itemRepository;
+        this.imageImportService = imageImportService;
+        this.imageUploadService = imageUploadService;
+        this.imageVariantService = imageVariantService;
+        this.localImageStore = localImageStore;
+        this.imageImportExecutor = imageImportExecutor;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.importedCounter = outcomeCounter(meterRegistry, "imported");
+        this.retriedCounter = outcomeCounter(meterRegistry, "retried");
+        this.failedCounter = outcomeCounter(meterRegistry, "failed");
+    }
+
+    @PreDestroy
+    public void stop() {
+        deadlines.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${storage.imports.poll-interval-ms:1000}")
+    public void poll() {
+        int freeLanes = imageImportExecutor.getMaxPoolSize() - activeLanes.get();
+        if (freeLanes <= 0) {
+            return;
+        }
+        int laneSize = laneSize();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusMinutes(staleClaimMinutes);
+        PageRequest page = PageRequest.of(0, Math.min(batchSize, freeLanes * laneSize));
+        List<String> busyHosts = new ArrayList<>();
+        activeLanesByHost.forEach((host, lanes) -> {
+            if (lanes >= perHostConcurrency) {
+                busyHosts.add(host);
+            }
+        });
+        List<Long> due = busyHosts.isEmpty()
+                ? itemRepository.findDueIds(now, staleBefore, page)
+                : itemRepository.findDueIdsExcludingHosts(now, staleBefore, busyHosts, page);
+        if (due.isEmpty()) {
+            return;
+        }
+
+        String token = UUID.randomUUID().toString();
+        if (itemRepository.claim(due, token, now, staleBefore) == 0) {
+            return;
+        }
+        List<ImageImportItem> claimed = itemRepository.findByIdInAndClaimToken(due, token);
+
+        List<Long> unassigned = new ArrayList<>();
+        for (List<ImageImportItem> lane : lanes(claimed, freeLanes, laneSize, unassigned)) {
+            String host = lane.get(0).getHost();
+            activeLanes.incrementAndGet();
+            activeLanesByHost.merge(host, 1, Integer::sum);
+            try {
+                CompletableFuture.supplyAsync(() -> fetch(lane), imageImportExecutor)
+                        .thenAccept(result -> record(result, token))
+                        .whenComplete((ignored, e) -> {
+                            finishLane(host);
+                            if (e != null) {
+                                // The items stay claimed and are picked up again once stale
+                                log.warn("Failed to record image imports from {}: {}", host, e.getMessage());
+                            }
+                        });
+            } catch (TaskRejectedException e) {
+                finishLane(host);
+                lane.forEach(item -> unassigned.add(item.getId()));
+            }
+        }
+        if (!unassigned.isEmpty()) {
+            itemRepository.release(unassigned, token);
+        }
+    }
+
+    private void record(LaneResult result, String token) {
+        for (ImageImportItem item : imageImportService.record(result.succeeded, result.failed, token)) {
+            imageVariantService.generate(item.getProductId(), item.getImageUrl());
+        }
+        importedCounter.increment(result.succeeded.size());
+        log.debug("Imported {} images, {} failed", result.succeeded.size(), result.failed.size());
+    }
+
+    private void finishLane(String host) {
+        activeLanesByHost.computeIfPresent(host, (h, lanes) -> lanes > 1 ? lanes - 1 : null);
+        activeLanes.decrementAndGet();
+    }
+
+    /**
+     * Items per lane. A lane downloads and publishes its items one after
+     * another, so this keeps a lane of timeouts within half the stale-claim
+     * window.
+     */
+    private int laneSize() {
+        long window = Duration.ofMinutes(staleClaimMinutes).toMillis();
+        long perItem = requestTimeoutMs + publishConnectTimeoutMs + publishReadTimeoutMs;
+        return (int) Math.max(1, Math.min(batchSize, window / (2 * perItem)));
+    }
+
+    /**
+     * Deals each host's items round-robin into the lanes it has left, up to
+     * {@code perHostConcurrency} per host including lanes still running and
+     * {@code freeLanes} in total, so no source host sees more parallel
+     * downloads from this node than that. Items that do not fit are added to
+     * {@code unassigned}.
+     */
+    private List<List<ImageImportItem>> lanes(List<ImageImportItem> claimed, int freeLanes, int laneSize,
+                                              List<Long> unassigned) {
+        Map<String, List<ImageImportItem>> byHost = new LinkedHashMap<>();
+        for (ImageImportItem item : claimed) {
+            byHost.computeIfAbsent(item.getHost(), h -> new ArrayList<>()).add(item);
+        }
+
+        List<List<ImageImportItem>> lanes = new ArrayList<>();
+        byHost.forEach((host, items) -> {
+            int available = Math.min(perHostConcurrency - activeLanesByHost.getOrDefault(host, 0),
+                    freeLanes - lanes.size());
+            int count = Math.max(0, Math.min(available, items.size()));
+            int dealt = Math.min(items.size(), count * laneSize);
+
+            List<List<ImageImportItem>> hostLanes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                hostLanes.add(new ArrayList<>());
+            }
+            for (int i = 0; i < dealt; i++) {
+                hostLanes.get(i % count).add(items.get(i));
+            }
+            for (int i = dealt; i < items.size(); i++) {
+                unassigned.add(items.get(i).getId());
+            }
+            lanes.addAll(hostLanes);
+        });
+        return lanes;
+    }
+
+    private LaneResult fetch(List<ImageImportItem> lane) {
+        LaneResult result = new LaneResult();
+        for (ImageImportItem item : lane) {
+            try {
+                item.setImageUrl(imageUploadService.publish(download(item.getSourceUrl())));
+                result.succeeded.add(item);
+            } catch (ImportException e) {
+                result.failed.add(failure(item, e.getMessage(), e.permanent));
+            } catch (BadRequestException e) {
+                // Content type the store does not accept
+                result.failed.add(failure(item, e.getMessage(), true));
+            } catch (IOException | RuntimeException e) {
+                result.failed.add(failure(item, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName(), false));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.failed.add(failure(item, "Interrupted", false));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Streams one image into the local store without holding it in memory.
+     * Redirects are followed here rather than by the client, so each hop is
+     * checked. All hops and the body share one request timeout.
+     *
+     * @return the store key of the image
+     */
+    private String download(String url) throws IOException, InterruptedException {
+        URI uri = URI.create(url);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(requestTimeoutMs);
+        for (int hops = 0; ; hops++) {
+            checkDestination(uri);
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs <= 0) {
+                throw new HttpTimeoutException("Request timed out");
+            }
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofMillis(remainingMs))
+                    .header("Accept", "image/*")
+                    .GET()
+                    .build();
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                int status = response.statusCode();
+                if (REDIRECT_STATUSES.contains(status)) {
+                    if (hops >= MAX_REDIRECTS) {
+                        throw new ImportException("More than " + MAX_REDIRECTS + " redirects", true);
+                    }
+                    uri = redirectTarget(uri, response.headers().firstValue("Location").orElse(null), status);
+                    continue;
+                }
+                return store(response, body, deadline);
+            }
+        }
+    }
+
+    private String store(HttpResponse<InputStream> response, InputStream body, long deadline) throws IOException {
+        int status = response.statusCode();
+        if (status != 200) {
+            throw new ImportException("HTTP " + status, status >= 400 && status < 500 && status != 408 && status != 429);
+        }
+        String contentType = response.headers().firstValue("Content-Type")
+                .map(type -> type.split(";", 2)[0].trim().toLowerCase(Locale.ROOT))
+                .orElse("");
+        if (!contentType.startsWith("image/")) {
+            throw new ImportException("Not an image: " + (contentType.isEmpty() ? "no content type" : contentType), true);
+        }
+        OptionalLong length = response.headers().firstValueAsLong("Content-Length");
+        if (length.isPresent() && length.getAsLong() > maxImageBytes) {
+            throw new ImportException("Image is larger than " + maxImageBytes + " bytes", true);
+        }
+
+        // Closing the body wakes a read blocked on a host that has stopped sending
+        ScheduledFuture<?> watchdog = deadlines.schedule(() -> {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // The copy fails with a timeout either way
+            }
+        }, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        try {
+            return localImageStore.store(new DeadlineInputStream(new LimitedInputStream(body, maxImageBytes), deadline),
+                    contentType, response.uri().getPath());
+        } finally {
+            watchdog.cancel(false);
+        }
+    }
+
+    /**
+     * Resolves a redirect against the URL that returned it. Where it points
+     * is checked before the next hop is requested.
+     */
+    private static URI redirectTarget(URI from, String location, int status) throws ImportException {
+        if (location == null) {
+            throw new ImportException("HTTP " + status + " without a Location", true);
+        }
+        try {
+            return from.resolve(location);
+        } catch (IllegalArgumentException e) {
+            throw new ImportException("Invalid redirect: " + location, true);
+        }
+    }
+
+    /**
+     * Fails an http(s) URL whose host resolves to any address that is not
+     * public. The client resolves the host again when it connects, so a host
+     * that changes its DNS answer in between can still slip through.
+     */
+    private static void checkDestination(URI uri) throws IOException {
+        String scheme = uri.getScheme();
+        if (uri.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            throw new ImportException("Not an http or https URL: " + uri, true);
+        }
+        for (InetAddress address : InetAddress.getAllByName(uri.getHost())) {
+            if (!isPublic(address)) {
+                throw new ImportException(uri.getHost() + " resolves to a non-public address", true);
+            }
+        }
+    }
+
+    static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            int first = bytes[0] & 0xFF;
+            int second = bytes[1] & 0xFF;
+            // 0.0.0.0/8, carrier-grade NAT 100.64.0.0/10 and benchmarking 198.18.0.0/15
+            return first != 0
+                    && !(first == 100 && (second & 0xC0) == 64)
+                    && !(first == 198 && (second & 0xFE) == 18);
+        }
+        // IPv6 unique local fc00::/7
+        return (bytes[0] & 0xFE) != 0xFC;
+    }
+
+    private ImageImportItem failure(ImageImportItem item, String error, boolean permanent) {
+        int attempts = item.getAttempts() + 1;
+        boolean dead = permanent || attempts >= maxAttempts;
+        if (dead) {
+            failedCounter.increment();
+            log.warn("Giving up on image for product {} from {} after {} attempts: {}",
+                    item.getProductId(), item.getHost(), attempts, error);
+        } else {
+            retriedCounter.increment();
+        }
+        item.setStatus(dead ? ImageImportItemStatus.FAILED : ImageImportItemStatus.PENDING);
+        item.setAttempts(attempts);
+        item.setNextAttemptAt(LocalDateTime.now().plus(backoff(attempts)));
+        item.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+        return item;
+    }
+
+    /**
+     * Doubles from {@code initialBackoffMs} per attempt up to
+     * {@code maxBackoffMs}, with up to 20% jitter.
+     */
+    private Duration backoff(int attempts) {
+        long delay = initialBackoffMs << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > maxBackoffMs) {
+            delay = maxBackoffMs;
+        }
+        return Duration.ofMillis(delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1));
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("garrizon.image.imports")
+                .description("Image import attempts by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static final class LaneResult {
+        private final List<ImageImportItem> succeeded = new ArrayList<>();
+        private final List<ImageImportItem> failed = new ArrayList<>();
+    }
+
+    private static final class ImportException extends IOException {
+        private final boolean permanent;
+
+        private ImportException(String message, boolean permanent) {
+            super(message);
+            this.permanent = permanent;
+        }
+    }
+
+    // Fails a download that runs past its deadline, including one cut off by the watchdog
+    static final class DeadlineInputStream extends FilterInputStream {
+        private final long deadline;
+
+        DeadlineInputStream(InputStream in, long deadline) {
+            super(in);
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                checkDeadline();
+                throw e;
+            }
+            checkDeadline();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n;
+            try {
+                n = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                checkDeadline();
+                throw e;
+            }
+            checkDeadline();
+            return n;
+        }
+
+        private void checkDeadline() throws HttpTimeoutException {
+            if (System.nanoTime() - deadline >= 0) {
+                throw new HttpTimeoutException("Download timed out");
+            }
+        }
+    }
+
+    // Stops a download without Content-Length once it passes the size limit
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws ImportException {
+            read += n;
+            if (read > limit) {
+                throw new ImportException("Image is larger than " + limit + " bytes", true);
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.garrizon.scheduler;
+
+import com.garrizon.cluster.LeaseService;
+import com.garrizon.dto.PaymentStatusUpdate;
+import com.garrizon.dto.PaymentVerification;
+import com.garrizon.dto.PendingPaymentView;
+import com.garrizon.model.PaymentProvider;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.repository.OrderRepository;
+import com.garrizon.resilience.RateLimiter;
+import com.garrizon.service.OrderService;
+import com.garrizon.service.PaystackService;
+import com.garrizon.service.StripeService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import javax.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Settles orders whose customers paid but never came back to call
+ * verify-payment. Pending orders are read in keyset batches, checked against
+ * their provider with bounded concurrency and a per-provider rate limit, and
+ * the results are written back with one batched update per batch.
+ * <p>
+ * A run waits on rate limits and provider calls for minutes at a time, so it
+ * runs on {@code paymentReconcilerExecutor} instead of the scheduling pool,
+ * and under a cluster lease so only one replica checks the pending orders.
+ * Throughput and settle delays are published as
+ * {@code garrizon.payments.reconciler.*} meters.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentReconciler {
+
+    private static final String LEASE_NAME = "payment-reconciler";
+
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final StripeService stripeService;
+    private final PaystackService paystackService;
+    private final LeaseService leaseService;
+    private final ThreadPoolTaskExecutor paymentReconcilerExecutor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payments.reconciler.enabled:true}")
+    private boolean enabled;
+
+    @Value("${payments.reconciler.batch-size:200}")
+    private int batchSize;
+
+    @Value("${payments.reconciler.max-in-flight:8}")
+    private int maxInFlight;
+
+    @Value("${payments.reconciler.min-age-minutes:15}")
+    private long minAgeMinutes;
+
+    @Value("${payments.reconciler.max-age-hours:72}")
+    private long maxAgeHours;
+
+    @Value("${payments.reconciler.call-timeout-ms:15000}")
+    private long callTimeoutMs;
+
+    @Value("${payments.reconciler.stripe-requests-per-second:20}")
+    private double stripeRequestsPerSecond;
+
+    @Value("${payments.reconciler.paystack-requests-per-second:10}")
+    private double paystackRequestsPerSecond;
+
+    private final Map<PaymentProvider, RateLimiter> rateLimiters = new EnumMap<>(PaymentProvider.class);
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong ordersChecked = new AtomicLong();
+    private final AtomicLong ordersSettled = new AtomicLong();
+    private final AtomicLong verificationErrors = new AtomicLong();
+    private final AtomicLong settledWaitSecondsTotal = new AtomicLong();
+    private volatile long lastRunDurationMs;
+    private volatile double lastRunOrdersPerSecond;
+    private volatile long lastRunMaxWaitSeconds;
+
+    private Counter checkedCounter;
+    private Counter settledCounter;
+    private Counter errorCounter;
+    private Timer runTimer;
+    private Timer settleDelayTimer;
+
+    @PostConstruct
+    public void init() {
+        rateLimiters.put(PaymentProvider.STRIPE, new RateLimiter(stripeRequestsPerSecond));
+        rateLimiters.put(PaymentProvider.PAYSTACK, new RateLimiter(paystackRequestsPerSecond));
+
+        checkedCounter = orderCounter("checked");
+        settledCounter = orderCounter("settled");
+        errorCounter = orderCounter("error");
+        runTimer = Timer.builder("garrizon.payments.reconciler.runs")
+                .description("Duration of payment reconciliation runs")
+                .register(meterRegistry);
+        settleDelayTimer = Timer.builder("garrizon.payments.reconciler.settle.delay")
+                .description("Time from order creation until the reconciler settled its payment")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${payments.reconciler.interval-ms:300000}",
+            initialDelayString = "${payments.reconciler.initial-delay-ms:60000}")
+    public void schedule() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            paymentReconcilerExecutor.execute(() -> leaseService.runExclusively(LEASE_NAME, this::reconcile));
+        } catch (TaskRejectedException e) {
+            log.debug("Skipping payment reconciliation: the previous run is still going");
+        }
+    }
+
+    public void reconcile() {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long afterId = 0;
+        long checked = 0;
+        long settled = 0;
+        long maxWaitSeconds = 0;
+
+        while (true) {
+            List<PendingPaymentView> batch = orderRepository.findPendingPayments(afterId,
+                    now.minusMinutes(minAgeMinutes), now.minusHours(maxAgeHours), PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            List<CompletableFuture<PaymentStatusUpdate>> checks = new ArrayList<>(batch.size());
+            for (PendingPaymentView pending : batch) {
+                inFlight.acquireUninterruptibly();
+                rateLimiters.get(pending.getPaymentProvider()).acquire();
+                checks.add(check(pending).whenComplete((result, error) -> inFlight.release()));
+            }
+            CompletableFuture.allOf(checks.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+
+            List<PaymentStatusUpdate> updates = checks.stream()
+                    .map(check -> check.getNow(null))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            List<PaymentStatusUpdate> applied = orderService.updatePaymentStatuses(updates);
+
+            Map<Long, LocalDateTime> createdAt = batch.stream()
+                    .collect(Collectors.toMap(PendingPaymentView::getId, PendingPaymentView::getCreatedAt));
+            for (PaymentStatusUpdate update : applied) {
+                long waited = Duration.between(createdAt.get(update.getOrderId()), now).getSeconds();
+                settledWaitSecondsTotal.addAndGet(waited);
+                settleDelayTimer.record(waited, TimeUnit.SECONDS);
+                maxWaitSeconds = Math.max(maxWaitSeconds, waited);
+            }
+
+            checked += batch.size();
+            settled += applied.size();
+            checkedCounter.increment(batch.size());
+            settledCounter.increment(applied.size());
+            afterId = batch.get(batch.size() - 1).getId();
+        }
+
+        long elapsedNanos = System.nanoTime() - started;
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        runTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        runs.incrementAndGet();
+        ordersChecked.addAndGet(checked);
+        ordersSettled.addAndGet(settled);
+        lastRunDurationMs = elapsedMs;
+        lastRunOrdersPerSecond = elapsedMs == 0 ? checked : checked * 1000.0 / elapsedMs;
+        lastRunMaxWaitSeconds = maxWaitSeconds;
+
+        if (checked > 0) {
+            log.info("Payment reconciliation checked {} orders, settled {} in {} ms", checked, settled, elapsedMs);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long totalSettled = ordersSettled.get();
+        stats.put("runs", runs.get());
+        stats.put("ordersChecked", ordersChecked.get());
+        stats.put("ordersSettled", totalSettled);
+        stats.put("verificationErrors", verificationErrors.get());
+        stats.put("averageWaitSeconds", totalSettled == 0 ? 0 : settledWaitSecondsTotal.get() / totalSettled);
+        stats.put("lastRunDurationMs", lastRunDurationMs);
+        stats.put("lastRunOrdersPerSecond", lastRunOrdersPerSecond);
+        stats.put("lastRunMaxWaitSeconds", lastRunMaxWaitSeconds);
+        return stats;
+    }
+
+    /**
+     * Resolves to the update to apply, or null when the payment is still open
+     * or could not be checked this time.
+     */
+    private CompletableFuture<PaymentStatusUpdate> check(PendingPaymentView pending) {
+        String reference = pending.getPaymentIntentId();
+        CompletableFuture<PaymentStatus> status;
+        try {
+            CompletableFuture<PaymentVerification> verification =
+                    pending.getPaymentProvider() == PaymentProvider.STRIPE
+                            ? stripeService.verifyPaymentIntent(reference)
+                            : paystackService.verifyTransaction(reference).toFuture();
+            status = verification.thenApply(result -> {
+                if (result.getStatus() != PaymentStatus.COMPLETED) {
+                    return result.getStatus();
+                }
+                if (result.paid(pending.getTotalAmount())) {
+                    return PaymentStatus.COMPLETED;
+                }
+                // Left pending for someone to look at rather than settled for the wrong amount
+                log.warn("Order {} not settled: provider reports {} {} paid for a total of {}",
+                        pending.getId(), result.getAmount(), result.getCurrency(), pending.getTotalAmount());
+                return null;
+            });
+        } catch (RuntimeException e) {
+            status = CompletableFuture.failedFuture(e);
+        }
+
+        return status
+                .orTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((result, error) -> {
+                    if (error != null) {
+                        verificationErrors.incrementAndGet();
+                        errorCounter.increment();
+                        log.debug("Could not verify order {}: {}", pending.getId(), error.getMessage());
+                        return null;
+                    }
+                    return result == null ? null : new PaymentStatusUpdate(pending.getId(), result, reference);
+                });
+    }
+
+    private Counter orderCounter(String outcome) {
+        return Counter.builder("garrizon.payments.reconciler.orders")
+                .description("Pending orders checked by the payment reconciler, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
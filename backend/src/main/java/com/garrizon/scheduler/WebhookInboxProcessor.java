@@ -0,0 +1,77 @@
+package com.garrizon.scheduler;
+
+import com.garrizon.repository.WebhookEventRepository;
+import com.garrizon.service.WebhookService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the webhook inbox. Each event is claimed with a conditional update,
+ * so several replicas can poll the same table without applying an event twice.
+ * Claimed events are handed to {@code webhookExecutor} without waiting for
+ * them, and a poll only claims up to {@code webhooks.batch-size} events in
+ * flight, so the scheduler thread is never held by slow events.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookInboxProcessor {
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final WebhookService webhookService;
+    private final ThreadPoolTaskExecutor webhookExecutor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Value("${webhooks.batch-size:100}")
+    private int batchSize;
+
+    @Value("${webhooks.stale-claim-minutes:5}")
+    private long staleClaimMinutes;
+
+    @Scheduled(fixedDelayString = "${webhooks.poll-interval-ms:1000}")
+    public void processInbox() {
+        int capacity = batchSize - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime staleBefore = now.minusMinutes(staleClaimMinutes);
+
+        List<Long> pending = webhookEventRepository.findPendingIds(now, staleBefore, PageRequest.of(0, capacity));
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int started = 0;
+        for (Long id : pending) {
+            if (webhookEventRepository.claim(id, now, staleBefore) != 1) {
+                continue;
+            }
+            inFlight.incrementAndGet();
+            try {
+                webhookExecutor.execute(() -> {
+                    try {
+                        webhookService.process(id);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+                started++;
+            } catch (TaskRejectedException e) {
+                inFlight.decrementAndGet();
+                webhookEventRepository.release(id);
+            }
+        }
+        log.debug("Started {} webhook events", started);
+    }
+}
@@ -1,5 +1,7 @@
 package com.garrizon.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -22,6 +24,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
     private final UserDetailsService userDetailsService;
+    private final MeterRegistry meterRegistry;
 
     @Override
     protected void doFilterInternal(
@@ -40,6 +43,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             return;
         }
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "rejected";
         try {
             jwt = authHeader.substring(7);
             userEmail = jwtTokenProvider.extractUsername(jwt);
@@ -54,11 +59,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     authToken.setDetails(
                             new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    outcome = "authenticated";
                 }
             }
         } catch (Exception e) {
             // Token is invalid or expired. Proceed without setting authentication.
             // The SecurityConfig will handle 401/403 based on the endpoint protection.
+        } finally {
+            sample.stop(Timer.builder("garrizon.security.jwt")
+                    .description("Time spent validating bearer tokens")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
         }
         filterChain.doFilter(request, response);
     }
@@ -17,6 +17,8 @@ import java.util.function.Function;
 @Component
 public class JwtTokenProvider {
 
+    public static final String FAMILY_CLAIM = "fam";
+
     @Value("${jwt.secret}")
     private String secret;
 
@@ -34,8 +36,25 @@ public class JwtTokenProvider {
         return generateToken(userDetails, accessTokenExpiration);
     }
 
-    public String generateRefreshToken(UserDetails userDetails) {
-        return generateToken(userDetails, refreshTokenExpiration);
+    /**
+     * Refresh tokens carry their own ID and the ID of the rotation family they
+     * belong to, so they can be revoked individually or all at once.
+     */
+    public String generateRefreshToken(UserDetails userDetails, String familyId, String tokenId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(FAMILY_CLAIM, familyId);
+        return Jwts.builder()
+                .setClaims(claims)
+                .setId(tokenId)
+                .setSubject(userDetails.getUsername())
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
+                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    public Long getRefreshTokenExpiration() {
+        return refreshTokenExpiration;
     }
 
     private String generateToken(UserDetails userDetails, Long expiration) {
@@ -62,7 +81,7 @@ public class JwtTokenProvider {
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
+    public Claims extractAllClaims(String token) {
         return Jwts.parserBuilder()
                 .setSigningKey(getSigningKey())
                 .build()
@@ -70,12 +89,11 @@ public class JwtTokenProvider {
                 .getBody();
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        // Refresh tokens are only accepted by the refresh endpoint, never as bearer tokens
+        return (claims.getSubject().equals(userDetails.getUsername())
+                && claims.get(FAMILY_CLAIM) == null
+                && !claims.getExpiration().before(new Date()));
     }
 }
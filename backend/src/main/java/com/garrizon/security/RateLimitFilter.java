@@ -0,0 +1,209 @@
+package com.garrizon.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.garrizon.resilience.TokenBucket;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-client rate limits for the public endpoints that are expensive to serve:
+ * login and registration (BCrypt), product search (LIKE scans) and checkout
+ * (provider calls). Auth and search are keyed by client IP; checkout is keyed
+ * by the authenticated user and falls back to the IP without a valid token.
+ * <p>
+ * Buckets live in one concurrent map. Full buckets are swept periodically,
+ * and once the map reaches its bound new clients share an overflow bucket per
+ * route instead of growing it further.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final JwtTokenProvider jwtTokenProvider;
+    private final ObjectMapper objectMapper;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.max-tracked-clients:100000}")
+    private int maxTrackedClients;
+
+    @Value("${rate-limit.auth.permits-per-minute:10}")
+    private int authPermitsPerMinute;
+
+    @Value("${rate-limit.auth.burst:5}")
+    private int authBurst;
+
+    @Value("${rate-limit.search.permits-per-minute:60}")
+    private int searchPermitsPerMinute;
+
+    @Value("${rate-limit.search.burst:20}")
+    private int searchBurst;
+
+    @Value("${rate-limit.checkout.permits-per-minute:20}")
+    private int checkoutPermitsPerMinute;
+
+    @Value("${rate-limit.checkout.burst:10}")
+    private int checkoutBurst;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private Policy auth;
+    private Policy search;
+    private Policy checkout;
+
+    @PostConstruct
+    void init() {
+        long now = System.nanoTime();
+        auth = new Policy("auth", authPermitsPerMinute, authBurst, now);
+        search = new Policy("search", searchPermitsPerMinute, searchBurst, now);
+        checkout = new Policy("checkout", checkoutPermitsPerMinute, checkoutBurst, now);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !enabled || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+
+        Policy policy = resolvePolicy(request);
+        if (policy == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String client = policy == checkout ? clientUser(request) : null;
+        String key = policy.name + '|' + (client != null ? client : request.getRemoteAddr());
+
+        long now = System.nanoTime();
+        TokenBucket bucket = bucketFor(key, policy, now);
+        long result = bucket.tryAcquire(now);
+
+        response.setHeader("RateLimit-Limit", policy.limitHeader);
+        if (result < 0) {
+            long retryAfterSeconds = toSecondsCeil(-result);
+            response.setHeader("RateLimit-Remaining", "0");
+            response.setHeader("RateLimit-Reset", Long.toString(retryAfterSeconds));
+            response.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+            writeTooManyRequests(response);
+            return;
+        }
+        response.setHeader("RateLimit-Remaining", Long.toString(result));
+        response.setHeader("RateLimit-Reset", Long.toString(toSecondsCeil(bucket.nanosUntilFull(now))));
+
+        filterChain.doFilter(request, response);
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void sweepFullBuckets() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+        if (before >= maxTrackedClients) {
+            log.warn("Rate limiter reached {} tracked clients; {} remain after sweep", before, buckets.size());
+        }
+    }
+
+    private Policy resolvePolicy(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+
+        if (path.startsWith("/api/auth/") && "POST".equals(method)) {
+            return auth;
+        }
+        if (path.startsWith("/api/checkout/") || ("/api/orders".equals(path) && "POST".equals(method))) {
+            return checkout;
+        }
+        if ("/api/products".equals(path) && "GET".equals(method) && request.getParameter("search") != null) {
+            return search;
+        }
+        return null;
+    }
+
+    private TokenBucket bucketFor(String key, Policy policy, long now) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxTrackedClients) {
+            return policy.overflow;
+        }
+        return buckets.computeIfAbsent(key, k -> policy.newBucket(now));
+    }
+
+    /**
+     * Only a correctly signed token identifies a user; otherwise anyone could
+     * drain another user's bucket by forging the subject.
+     */
+    private String clientUser(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        try {
+            return "user:" + jwtTokenProvider.extractUsername(authHeader.substring(7));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void writeTooManyRequests(HttpServletResponse response) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("timestamp", LocalDateTime.now());
+        body.put("message", "Too many requests, please slow down");
+        body.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    private static long toSecondsCeil(long nanos) {
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static final class Policy {
+        private final String name;
+        private final long intervalNanos;
+        private final int burst;
+        private final String limitHeader;
+        private final TokenBucket overflow;
+
+        private Policy(String name, int permitsPerMinute, int burst, long now) {
+            this.name = name;
+            this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+            this.burst = burst;
+            this.limitHeader = Integer.toString(burst);
+            this.overflow = newBucket(now);
+        }
+
+        private TokenBucket newBucket(long now) {
+            return new TokenBucket(intervalNanos, burst, now);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.garrizon.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory set of revoked token and family IDs. A Bloom filter answers the
+ * common "not revoked" case with a few bit reads; only on a filter hit is the
+ * exact map consulted, which rules out false positives.
+ * <p>
+ * Entries carry their expiry so {@link #withoutExpired(long)} can rebuild a
+ * smaller filter once old tokens can no longer be presented anyway.
+ */
+public class RevocationFilter {
+
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+    private final int expectedInsertions;
+    private final double falsePositiveRate;
+    private final Map<String, Long> exact = new ConcurrentHashMap<>();
+
+    public RevocationFilter(int expectedInsertions, double falsePositiveRate) {
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    public void add(String id, long expiresAtMillis) {
+        exact.merge(id, expiresAtMillis, Math::max);
+        long hash = hash64(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            setBit(index(h1 + i * h2));
+        }
+    }
+
+    public boolean isRevoked(String id) {
+        long hash = hash64(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            if (!getBit(index(h1 + i * h2))) {
+                return false;
+            }
+        }
+        return exact.containsKey(id);
+    }
+
+    public int size() {
+        return exact.size();
+    }
+
+    /**
+     * Returns a fresh filter holding only entries that have not yet expired.
+     */
+    public RevocationFilter withoutExpired(long nowMillis) {
+        RevocationFilter rebuilt = new RevocationFilter(expectedInsertions, falsePositiveRate);
+        exact.forEach((id, expiresAt) -> {
+            if (expiresAt > nowMillis) {
+                rebuilt.add(id, expiresAt);
+            }
+        });
+        return rebuilt;
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitCount;
+    }
+
+    private void setBit(int index) {
+        int word = index >>> 6;
+        long mask = 1L << (index & 63);
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+    }
+
+    private boolean getBit(int index) {
+        return (bits.get(index >>> 6) & (1L << (index & 63))) != 0;
+    }
+
+    private static long hash64(String value) {
+        // FNV-1a followed by a SplitMix64 finalizer to spread the bits
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -4,96 +4,122 @@ import com.garrizon.dto.AuthRequest;
 import com.garrizon.dto.AuthResponse;
 import com.garrizon.dto.RegisterRequest;
 import com.garrizon.dto.UserDTO;
+import com.garrizon.event.UserRegisteredEvent;
 import com.garrizon.exception.BadRequestException;
 import com.garrizon.exception.ResourceNotFoundException;
 import com.garrizon.model.Role;
 import com.garrizon.model.User;
 import com.garrizon.repository.UserRepository;
 import com.garrizon.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final JwtTokenProvider jwtTokenProvider;
-    private final AuthenticationManager authenticationManager;
+    private final RefreshTokenService refreshTokenService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public AuthResponse register(RegisterRequest request) {
+    public CompletableFuture<AuthResponse> register(RegisterRequest request) {
         if (userRepository.existsByEmail(request.getEmail())) {
             throw new BadRequestException("Email already in use");
         }
 
-        User user = User.builder()
-                .firstName(request.getFirstName())
-                .lastName(request.getLastName())
-                .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
-                .role(Role.USER)
-                .build();
+        return passwordHashingService.encode(request.getPassword()).thenApply(hash -> {
+            User user = User.builder()
+                    .firstName(request.getFirstName())
+                    .lastName(request.getLastName())
+                    .email(request.getEmail())
+                    .password(hash)
+                    .role(Role.USER)
+                    .build();
+
+            userRepository.save(user);
+            eventPublisher.publishEvent(new UserRegisteredEvent(user.getId()));
+
+            String accessToken = jwtTokenProvider.generateAccessToken(user);
+            String refreshToken = refreshTokenService.issue(user);
+
+            return AuthResponse.builder()
+                    .accessToken(accessToken)
+                    .refreshToken(refreshToken)
+                    .user(mapToUserDTO(user))
+                    .build();
+        });
+    }
 
-        userRepository.save(user);
+    public CompletableFuture<AuthResponse> login(AuthRequest request) {
+        User user = userRepository.findByEmail(request.getEmail()).orElse(null);
 
-        String accessToken = jwtTokenProvider.generateAccessToken(user);
-        String refreshToken = jwtTokenProvider.generateRefreshToken(user);
+        return passwordHashingService.matches(request.getPassword(), user != null ? user.getPassword() : null)
+                .thenApply(matches -> {
+                    if (!matches) {
+                        throw new BadCredentialsException("Bad credentials");
+                    }
 
-        return AuthResponse.builder()
-                .accessToken(accessToken)
-                .refreshToken(refreshToken)
-                .user(mapToUserDTO(user))
-                .build();
+                    if (passwordHashingService.needsUpgrade(user.getPassword())) {
+                        upgradePasswordHash(user, request.getPassword());
+                    }
+
+                    String accessToken = jwtTokenProvider.generateAccessToken(user);
+                    String refreshToken = refreshTokenService.issue(user);
+
+                    return AuthResponse.builder()
+                            .accessToken(accessToken)
+                            .refreshToken(refreshToken)
+                            .user(mapToUserDTO(user))
+                            .build();
+                });
     }
 
-    public AuthResponse login(AuthRequest request) {
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.getEmail(),
-                        request.getPassword()
-                )
-        );
+    public AuthResponse refreshToken(String refreshToken) {
+        Claims claims = refreshTokenService.verify(refreshToken);
 
-        User user = userRepository.findByEmail(request.getEmail())
+        User user = userRepository.findByEmail(claims.getSubject())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
         String accessToken = jwtTokenProvider.generateAccessToken(user);
-        String refreshToken = jwtTokenProvider.generateRefreshToken(user);
+        String nextRefreshToken = refreshTokenService.rotate(claims, user);
 
         return AuthResponse.builder()
                 .accessToken(accessToken)
-                .refreshToken(refreshToken)
+                .refreshToken(nextRefreshToken)
                 .user(mapToUserDTO(user))
                 .build();
     }
 
-    public AuthResponse refreshToken(String refreshToken) {
-        String userEmail = jwtTokenProvider.extractUsername(refreshToken);
-        
-        if (userEmail == null) {
-            throw new BadRequestException("Invalid refresh token");
-        }
-
-        User user = userRepository.findByEmail(userEmail)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+    public void logout(String refreshToken) {
+        refreshTokenService.revoke(refreshToken);
+    }
 
-        if (!jwtTokenProvider.validateToken(refreshToken, user)) {
-            throw new BadRequestException("Invalid refresh token");
+    /**
+     * Rehashes with the current cost factor after a successful login. Runs in
+     * the background; if the pool is busy the upgrade waits for the next login.
+     */
+    private void upgradePasswordHash(User user, String rawPassword) {
+        try {
+            passwordHashingService.encode(rawPassword)
+                    .thenAccept(hash -> userRepository.updatePassword(user.getId(), hash))
+                    .exceptionally(e -> {
+                        log.warn("Failed to upgrade password hash for user {}: {}", user.getId(), e.getMessage());
+                        return null;
+                    });
+        } catch (RuntimeException e) {
+            log.debug("Skipping password hash upgrade for user {}: {}", user.getId(), e.getMessage());
         }
-
-        String accessToken = jwtTokenProvider.generateAccessToken(user);
-
-        return AuthResponse.builder()
-                .accessToken(accessToken)
-                .refreshToken(refreshToken)
-                .user(mapToUserDTO(user))
-                .build();
     }
-    
+
     private UserDTO mapToUserDTO(User user) {
         return UserDTO.builder()
                 .id(user.getId())
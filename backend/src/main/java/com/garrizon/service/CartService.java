@@ -1,11 +1,13 @@
 package com.garrizon.service;
 
+import com.garrizon.dto.AbandonedCartView;
 import com.garrizon.dto.AddToCartRequest;
 import com.garrizon.dto.CartDTO;
 import com.garrizon.dto.CartItemDTO;
 import com.garrizon.exception.ResourceNotFoundException;
 import com.garrizon.model.Cart;
 import com.garrizon.model.CartItem;
+import com.garrizon.model.Money;
 import com.garrizon.model.Product;
 import com.garrizon.model.User;
 import com.garrizon.repository.CartItemRepository;
@@ -13,11 +15,15 @@ import com.garrizon.repository.CartRepository;
 import com.garrizon.repository.ProductRepository;
 import com.garrizon.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -25,12 +31,21 @@ import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class CartService {
 
+    private static final int BACKFILL_BATCH_SIZE = 5000;
+
+    private static final String BACKFILL_ITEM_COUNT_SQL =
+            "UPDATE carts c SET item_count = (SELECT COUNT(*) FROM cart_items i WHERE i.cart_id = c.id) " +
+            "WHERE c.item_count < 0 LIMIT " + BACKFILL_BATCH_SIZE;
+
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EmailService emailService;
 
     @Transactional
     public CartDTO getCart(UserDetails userDetails) {
@@ -114,10 +129,40 @@ public class CartService {
     public void clearCart(UserDetails userDetails) {
         User user = getUser(userDetails);
         Cart cart = getOrCreateCart(user);
-        cart.getCartItems().clear();
+        cart.clearItems();
         cartRepository.save(cart);
     }
 
+    /**
+     * Queues reminders for one chunk of abandoned carts and marks them
+     * emailed in the same transaction, so a cart is never marked without its
+     * email or emailed twice for one chunk.
+     */
+    @Transactional
+    public void queueAbandonedCartReminders(List<AbandonedCartView> carts) {
+        emailService.queueAbandonedCartReminders(carts);
+        cartRepository.markEmailSent(
+                carts.stream().map(AbandonedCartView::getId).collect(Collectors.toList()),
+                LocalDateTime.now());
+    }
+
+    /**
+     * Fills {@code item_count} for carts created before the column existed,
+     * in small autocommitted batches so no single statement locks every cart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillItemCounts() {
+        long total = 0;
+        int rows;
+        do {
+            rows = jdbcTemplate.update(BACKFILL_ITEM_COUNT_SQL);
+            total += rows;
+        } while (rows == BACKFILL_BATCH_SIZE);
+        if (total > 0) {
+            log.info("Backfilled item counts for {} carts", total);
+        }
+    }
+
     private User getUser(UserDetails userDetails) {
         return userRepository.findByEmail(userDetails.getUsername())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
@@ -139,9 +184,9 @@ public class CartService {
                 .map(this::mapItemToDTO)
                 .collect(Collectors.toList());
 
-        BigDecimal totalAmount = itemDTOs.stream()
+        Money totalAmount = itemDTOs.stream()
                 .map(CartItemDTO::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                .reduce(Money.ZERO, Money::plus);
 
         return CartDTO.builder()
                 .id(cart.getId())
@@ -159,7 +204,7 @@ public class CartService {
                 .productImageUrl(item.getProduct().getImageUrl())
                 .price(item.getPrice())
                 .quantity(item.getQuantity())
-                .subtotal(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                .subtotal(item.getPrice().times(item.getQuantity()))
                 .build();
     }
 }
@@ -2,10 +2,13 @@ package com.garrizon.service;
 
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
+import com.garrizon.resilience.ProviderGuard;
+import com.garrizon.resilience.ProviderGuardRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 
@@ -14,14 +17,31 @@ import java.util.Map;
 public class CloudinaryService {
 
     private final Cloudinary cloudinary;
+    private final ProviderGuardRegistry providerGuardRegistry;
 
-    public String uploadImage(MultipartFile file) throws IOException {
-        Map uploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.emptyMap());
+    @Value("${cloudinary.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${cloudinary.read-timeout-ms:30000}")
+    private int readTimeoutMs;
+
+    /**
+     * Uploads a file already on disk; the HTTP client streams it from there.
+     * The public ID is the content hash, so re-uploading the same image
+     * returns the existing asset instead of creating a copy.
+     */
+    public String uploadImage(File file, String publicId) throws IOException {
+        Map uploadResult = guard().execute(() -> cloudinary.uploader().upload(file, ObjectUtils.asMap(
+                "public_id", publicId,
+                "overwrite", false,
+                "resource_type", "image",
+                "connect_timeout", connectTimeoutMs,
+                "timeout", readTimeoutMs)));
         return (String) uploadResult.get("secure_url");
     }
 
     public String uploadImageFromUrl(String url) throws IOException {
-        Map uploadResult = cloudinary.uploader().upload(url, ObjectUtils.emptyMap());
+        Map uploadResult = guard().execute(() -> cloudinary.uploader().upload(url, ObjectUtils.emptyMap()));
         return (String) uploadResult.get("secure_url");
     }
 
@@ -35,6 +55,10 @@ public class CloudinaryService {
         }
 
         String publicId = imageUrl.substring(imageUrl.lastIndexOf("/") + 1, imageUrl.lastIndexOf("."));
-        cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
+        guard().execute(() -> cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap()));
+    }
+
+    private ProviderGuard guard() {
+        return providerGuardRegistry.get(ProviderGuardRegistry.CLOUDINARY);
     }
 }
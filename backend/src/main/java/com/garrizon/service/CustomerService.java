@@ -0,0 +1,109 @@
+package com.garrizon.service;
+
+import com.garrizon.dto.CustomerDTO;
+import com.garrizon.dto.CustomerPageDTO;
+import com.garrizon.dto.CustomerSummaryView;
+import com.garrizon.event.OrderCreatedEvent;
+import com.garrizon.event.PaymentCompletedEvent;
+import com.garrizon.model.Money;
+import com.garrizon.repository.CustomerStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Admin customer list backed by {@code customer_stats}. Aggregates are
+ * adjusted with one upsert per order or payment event, and pages are read
+ * by keyset on the user ID, so neither depends on the number of orders.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final String ORDER_CREATED_SQL =
+            "INSERT INTO customer_stats (user_id, order_count, total_spent, last_order_at) VALUES (?, 1, 0, ?) " +
+            "ON DUPLICATE KEY UPDATE order_count = order_count + 1, " +
+            "last_order_at = GREATEST(COALESCE(last_order_at, VALUES(last_order_at)), VALUES(last_order_at))";
+
+    private static final String PAYMENT_COMPLETED_SQL =
+            "INSERT INTO customer_stats (user_id, order_count, total_spent, last_order_at) VALUES (?, 0, ?, NULL) " +
+            "ON DUPLICATE KEY UPDATE total_spent = total_spent + VALUES(total_spent)";
+
+    private static final String BACKFILL_SQL =
+            "INSERT INTO customer_stats (user_id, order_count, total_spent, last_order_at) " +
+            "SELECT user_id, COUNT(*), COALESCE(SUM(CASE WHEN payment_status = 'COMPLETED' THEN total_amount END), 0), " +
+            "MAX(created_at) FROM orders GROUP BY user_id " +
+            "ON DUPLICATE KEY UPDATE order_count = VALUES(order_count), total_spent = VALUES(total_spent), " +
+            "last_order_at = VALUES(last_order_at)";
+
+    private final CustomerStatsRepository customerStatsRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Transactional(readOnly = true)
+    public CustomerPageDTO getCustomers(Long cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<CustomerSummaryView> rows = customerStatsRepository.findCustomersBefore(
+                cursor != null ? cursor : Long.MAX_VALUE, PageRequest.of(0, pageSize));
+
+        List<CustomerDTO> content = rows.stream().map(this::mapToDTO).collect(Collectors.toList());
+        Long nextCursor = content.size() == pageSize ? content.get(content.size() - 1).getId() : null;
+
+        return CustomerPageDTO.builder()
+                .content(content)
+                .nextCursor(nextCursor)
+                .size(pageSize)
+                .build();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        jdbcTemplate.update(ORDER_CREATED_SQL, event.getUserId(), Timestamp.valueOf(event.getCreatedAt()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentCompleted(PaymentCompletedEvent event) {
+        jdbcTemplate.update(PAYMENT_COMPLETED_SQL, event.getUserId(), event.getAmount().toBigDecimal());
+    }
+
+    /**
+     * Computes the aggregates from existing orders the first time the table
+     * is empty. The writes are absolute, so concurrent starts agree.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (customerStatsRepository.count() > 0) {
+            return;
+        }
+        int rows = jdbcTemplate.update(BACKFILL_SQL);
+        if (rows > 0) {
+            log.info("Backfilled customer aggregates from existing orders");
+        }
+    }
+
+    private CustomerDTO mapToDTO(CustomerSummaryView view) {
+        return CustomerDTO.builder()
+                .id(view.getId())
+                .firstName(view.getFirstName())
+                .lastName(view.getLastName())
+                .email(view.getEmail())
+                .role(view.getRole())
+                .createdAt(view.getCreatedAt())
+                .orderCount(view.getOrderCount() != null ? view.getOrderCount() : 0L)
+                .totalSpent(view.getTotalSpent() != null ? view.getTotalSpent() : Money.ZERO)
+                .lastOrderAt(view.getLastOrderAt())
+                .build();
+    }
+}
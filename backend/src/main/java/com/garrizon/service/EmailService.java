@@ -1,90 +1,124 @@
 package com.garrizon.service;
 
+import com.garrizon.dto.AbandonedCartView;
+import com.garrizon.mail.EmailTemplateEngine;
+import com.garrizon.mail.RenderedEmail;
+import com.garrizon.model.EmailOutbox;
+import com.garrizon.model.EmailOutboxStatus;
 import com.garrizon.model.Order;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.garrizon.model.OrderItem;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-// @Service - Disabled for development (no email server configured)
-@Slf4j
-public class EmailService {
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
 
-    private final JavaMailSender mailSender;
+/**
+ * Renders customer emails from the precompiled templates in
+ * {@code templates/email} and queues them in the {@code email_outbox} table.
+ * Writes join the caller's transaction, so a message exists exactly when the
+ * business change that caused it commits; {@code EmailOutboxDispatcher}
+ * delivers it later over SMTP, off the request thread.
+ */
+@Service
+@RequiredArgsConstructor
+public class EmailService {
 
-    @Value("${resend.from-email:noreply@garrizon.com}")
-    private String fromEmail;
+    private static final String INSERT_SQL =
+            "INSERT INTO email_outbox (recipient, recipient_domain, subject, body, html, status, attempts, " +
+            "next_attempt_at, created_at) VALUES (?, ?, ?, ?, ?, ?, 0, ?, ?)";
 
-    @Autowired(required = false)
-    public EmailService(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
-    }
+    private final JdbcTemplate jdbcTemplate;
+    private final EmailTemplateEngine templateEngine;
 
-    // Note: In a real production app, we would use Resend API directly or via SMTP
-    // For this implementation, we'll use Spring Mail which can be configured for
-    // SMTP (Resend supports SMTP)
+    @Value("${email.storefront-url:http://localhost:5173}")
+    private String storefrontUrl;
 
-    public void sendOrderConfirmation(Order order) {
-        if (mailSender == null) {
-            log.warn("JavaMailSender not configured. Skipping email for order: {}", order.getOrderNumber());
-            return;
+    public void queueOrderConfirmation(Order order) {
+        String currency = order.getTotalAmount().getCurrency().getSymbol(Locale.US);
+        List<Map<String, Object>> items = new ArrayList<>(order.getOrderItems().size());
+        for (OrderItem item : order.getOrderItems()) {
+            items.add(model(
+                    "name", item.getProductName(),
+                    "quantity", item.getQuantity(),
+                    "subtotal", item.getPrice().times(item.getQuantity())));
         }
 
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(order.getCustomerEmail());
-        message.setSubject("Order Confirmation - " + order.getOrderNumber());
-        message.setText("Thank you for your order!\n\n" +
-                "Order Number: " + order.getOrderNumber() + "\n" +
-                "Total Amount: $" + order.getTotalAmount() + "\n\n" +
-                "We will notify you when your order is shipped.");
-
-        try {
-            mailSender.send(message);
-        } catch (Exception e) {
-            log.error("Failed to send email: {}", e.getMessage());
-        }
+        queue(List.of(message(order.getCustomerEmail(), templateEngine.render("order-confirmation", model(
+                "customerName", order.getCustomerName(),
+                "orderNumber", order.getOrderNumber(),
+                "items", items,
+                "currency", currency,
+                "totalAmount", order.getTotalAmount(),
+                "shippingAddress", order.getShippingAddress(),
+                "storefrontUrl", storefrontUrl)))));
     }
 
-    public void sendOrderStatusUpdate(Order order) {
-        if (mailSender == null) {
-            log.warn("JavaMailSender not configured. Skipping email for order: {}", order.getOrderNumber());
-            return;
-        }
-
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(order.getCustomerEmail());
-        message.setSubject("Order Update - " + order.getOrderNumber());
-        message.setText("Your order status has been updated to: " + order.getStatus() + "\n\n" +
-                "Order Number: " + order.getOrderNumber());
+    public void queueOrderStatusUpdate(Order order) {
+        queue(List.of(message(order.getCustomerEmail(), templateEngine.render("order-status-update", model(
+                "customerName", order.getCustomerName(),
+                "orderNumber", order.getOrderNumber(),
+                "status", order.getStatus(),
+                "storefrontUrl", storefrontUrl)))));
+    }
 
-        try {
-            mailSender.send(message);
-        } catch (Exception e) {
-            log.error("Failed to send email: {}", e.getMessage());
-        }
+    public void queueAbandonedCartReminders(List<AbandonedCartView> carts) {
+        queue(carts.stream()
+                .map(cart -> message(cart.getEmail(), templateEngine.render("abandoned-cart", model(
+                        "firstName", cart.getFirstName(),
+                        "storefrontUrl", storefrontUrl))))
+                .collect(Collectors.toList()));
     }
 
-    public void sendAbandonedCartEmail(String email, String firstName) {
-        if (mailSender == null) {
-            log.warn("JavaMailSender not configured. Skipping abandoned cart email for: {}", email);
+    private void queue(List<EmailOutbox> messages) {
+        if (messages.isEmpty()) {
             return;
         }
+        // JDBC batch rather than saveAll: IDENTITY keys stop Hibernate from batching inserts
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_SQL, messages, messages.size(), (ps, message) -> {
+            ps.setString(1, message.getRecipient());
+            ps.setString(2, message.getRecipientDomain());
+            ps.setString(3, message.getSubject());
+            ps.setString(4, message.getBody());
+            ps.setBoolean(5, message.getHtml());
+            ps.setString(6, EmailOutboxStatus.PENDING.name());
+            ps.setTimestamp(7, now);
+            ps.setTimestamp(8, now);
+        });
+    }
 
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setFrom(fromEmail);
-        message.setTo(email);
-        message.setSubject("You left something behind!");
-        message.setText("Hi " + firstName + ",\n\n" +
-                "We noticed you left some items in your cart. Complete your purchase now before they sell out!");
+    private EmailOutbox message(String recipient, RenderedEmail email) {
+        return EmailOutbox.builder()
+                .recipient(recipient)
+                .recipientDomain(domainOf(recipient))
+                .subject(email.getSubject())
+                .body(email.getHtmlBody())
+                .html(true)
+                .build();
+    }
 
-        try {
-            mailSender.send(message);
-        } catch (Exception e) {
-            log.error("Failed to send email: {}", e.getMessage());
+    // Missing values render as empty, so nulls are simply left out of the model
+    private static Map<String, Object> model(Object... keysAndValues) {
+        Map<String, Object> model = new HashMap<>(keysAndValues.length);
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            if (keysAndValues[i + 1] != null) {
+                model.put((String) keysAndValues[i], keysAndValues[i + 1]);
+            }
         }
+        return model;
+    }
+
+    private static String domainOf(String recipient) {
+        int at = recipient.lastIndexOf('@');
+        return recipient.substring(at + 1).trim().toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,356 @@
+package com.garrizon.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.garrizon.exception.BadRequestException;
+import com.garrizon.exception.ConflictException;
+import com.garrizon.exception.UnprocessableEntityException;
+import com.garrizon.model.IdempotencyRecord;
+import com.garrizon.model.IdempotencyStatus;
+import com.garrizon.repository.IdempotencyRecordRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates retried requests carrying an {@code Idempotency-Key} header.
+ * Each key is tied to a fingerprint of the request it was first used with;
+ * reusing it for a different request is rejected with 422.
+ * <p>
+ * The first request claims the key by inserting its idempotency_keys row, so
+ * only one node runs the action. Duplicates get the stored response once it
+ * completes, or 409 while it is still running elsewhere. Duplicates on the
+ * same node wait for it instead. Completed responses are also cached in
+ * memory, least recently used first out.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, CachedResponse> responses = Collections.synchronizedMap(
+            new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                    return size() > maxCachedResponses;
+                }
+            });
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${idempotency.max-cached-responses:10000}")
+    private int maxCachedResponses;
+
+    @Value("${idempotency.claim-timeout-seconds:120}")
+    private long claimTimeoutSeconds;
+
+    @FunctionalInterface
+    public interface IdempotentAction<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * @param fingerprint the request fields that must match when the key is
+     *                    reused, e.g. the body; hashed before it is stored
+     */
+    public <T, E extends Exception> T execute(String scope, String key, String fingerprint, Class<T> responseType,
+            IdempotentAction<T, E> action) throws E {
+        if (key == null || key.isBlank()) {
+            return action.run();
+        }
+        validate(key);
+
+        String hash = hash(fingerprint);
+        String cacheKey = scope + "|" + key;
+        Optional<String> cached = cached(cacheKey, hash);
+        if (cached.isPresent()) {
+            return read(cached.get(), responseType);
+        }
+
+        InFlight mine = new InFlight(hash);
+        InFlight existing = inFlight.putIfAbsent(cacheKey, mine);
+        if (existing != null) {
+            requireSameRequest(existing.hash, hash);
+            return read(await(existing.future), responseType);
+        }
+
+        try {
+            Claim claim = claim(scope, key, cacheKey, hash);
+            if (claim.replay != null) {
+                mine.future.complete(claim.replay);
+                return read(claim.replay, responseType);
+            }
+
+            T result;
+            try {
+                result = action.run();
+            } catch (Exception e) {
+                // Failed attempts are not recorded, so a later retry runs the action again
+                release(claim.id);
+                throw e;
+            }
+            mine.future.complete(complete(claim.id, cacheKey, hash, result));
+            return result;
+        } catch (Exception e) {
+            mine.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, mine);
+        }
+    }
+
+    /**
+     * Variant of {@link #execute} for actions that complete asynchronously.
+     * The action itself is started on the calling thread.
+     */
+    public <T> CompletableFuture<T> executeAsync(String scope, String key, String fingerprint, Class<T> responseType,
+            Supplier<CompletableFuture<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        validate(key);
+
+        String hash = hash(fingerprint);
+        String cacheKey = scope + "|" + key;
+        Optional<String> cached = cached(cacheKey, hash);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(read(cached.get(), responseType));
+        }
+
+        InFlight mine = new InFlight(hash);
+        InFlight existing = inFlight.putIfAbsent(cacheKey, mine);
+        if (existing != null) {
+            requireSameRequest(existing.hash, hash);
+            return existing.future.thenApply(body -> read(body, responseType));
+        }
+
+        Claim claim;
+        CompletableFuture<T> result;
+        try {
+            claim = claim(scope, key, cacheKey, hash);
+            if (claim.replay != null) {
+                mine.future.complete(claim.replay);
+                inFlight.remove(cacheKey, mine);
+                return CompletableFuture.completedFuture(read(claim.replay, responseType));
+            }
+            try {
+                result = action.get();
+            } catch (RuntimeException e) {
+                release(claim.id);
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            mine.future.completeExceptionally(e);
+            inFlight.remove(cacheKey, mine);
+            throw e;
+        }
+
+        return result.whenComplete((value, error) -> {
+            try {
+                if (error != null) {
+                    release(claim.id);
+                    mine.future.completeExceptionally(error);
+                } else {
+                    mine.future.complete(complete(claim.id, cacheKey, hash, value));
+                }
+            } catch (RuntimeException e) {
+                mine.future.completeExceptionally(e);
+            } finally {
+                inFlight.remove(cacheKey, mine);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        responses.values().removeIf(CachedResponse::isExpired);
+        int deleted = idempotencyRecordRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.debug("Purged {} expired idempotency keys", deleted);
+        }
+    }
+
+    private void validate(String key) {
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key must be at most " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    private Optional<String> cached(String cacheKey, String hash) {
+        CachedResponse cached = responses.get(cacheKey);
+        if (cached == null || cached.isExpired()) {
+            return Optional.empty();
+        }
+        requireSameRequest(cached.hash, hash);
+        return Optional.of(cached.body);
+    }
+
+    /**
+     * Claims the key for this request by inserting its row, or returns the
+     * stored response when the same request already completed.
+     */
+    private Claim claim(String scope, String key, String cacheKey, String hash) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusHours(ttlHours);
+        try {
+            IdempotencyRecord record = idempotencyRecordRepository.save(IdempotencyRecord.builder()
+                    .scope(scope)
+                    .idempotencyKey(key)
+                    .requestHash(hash)
+                    .status(IdempotencyStatus.IN_PROGRESS)
+                    .claimedAt(now)
+                    .responseBody("")
+                    .expiresAt(expiresAt)
+                    .build());
+            return new Claim(record.getId(), null);
+        } catch (DataIntegrityViolationException e) {
+            // Already claimed, here or on another node
+        }
+
+        IdempotencyRecord existing = idempotencyRecordRepository.findByScopeAndIdempotencyKey(scope, key)
+                .orElseThrow(this::stillInProgress);
+        if (existing.getExpiresAt().isAfter(now)) {
+            requireSameRequest(existing.getRequestHash(), hash);
+            if (existing.getStatus() == IdempotencyStatus.COMPLETED) {
+                remember(cacheKey, existing.getRequestHash(), existing.getResponseBody(), existing.getExpiresAt());
+                return new Claim(existing.getId(), existing.getResponseBody());
+            }
+        }
+
+        LocalDateTime staleBefore = now.minusSeconds(claimTimeoutSeconds);
+        if (idempotencyRecordRepository.takeOver(existing.getId(), hash, now, staleBefore, expiresAt) == 1) {
+            return new Claim(existing.getId(), null);
+        }
+        throw stillInProgress();
+    }
+
+    private String complete(Long id, String cacheKey, String hash, Object response) {
+        String body = write(response);
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(ttlHours);
+        idempotencyRecordRepository.complete(id, body, expiresAt);
+        remember(cacheKey, hash, body, expiresAt);
+        return body;
+    }
+
+    private void release(Long id) {
+        try {
+            idempotencyRecordRepository.release(id);
+        } catch (RuntimeException e) {
+            // The claim goes stale and is taken over by the next retry instead
+            log.warn("Failed to release idempotency key {}: {}", id, e.getMessage());
+        }
+    }
+
+    private void remember(String cacheKey, String hash, String body, LocalDateTime expiresAt) {
+        responses.put(cacheKey, new CachedResponse(hash, body, expiresAt));
+    }
+
+    // Keys stored before fingerprints existed have no hash and match any request
+    private static void requireSameRequest(String storedHash, String hash) {
+        if (!storedHash.isEmpty() && !storedHash.equals(hash)) {
+            throw new UnprocessableEntityException("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private ConflictException stillInProgress() {
+        return new ConflictException("A request with this Idempotency-Key is still in progress; retry shortly");
+    }
+
+    private static String hash(String fingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest((fingerprint != null ? fingerprint : "").getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> String await(CompletableFuture<String> future) throws E {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // The leader's action can only fail with a RuntimeException or E
+            throw (E) e.getCause();
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize idempotent response", e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to deserialize idempotent response", e);
+        }
+    }
+
+    private static final class CachedResponse {
+        private final String hash;
+        private final String body;
+        private final LocalDateTime expiresAt;
+
+        private CachedResponse(String hash, String body, LocalDateTime expiresAt) {
+            this.hash = hash;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return expiresAt.isBefore(LocalDateTime.now());
+        }
+    }
+
+    private static final class InFlight {
+        private final String hash;
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private InFlight(String hash) {
+            this.hash = hash;
+        }
+    }
+
+    private static final class Claim {
+        private final Long id;
+        private final String replay; // Stored response, when the request already completed
+
+        private Claim(Long id, String replay) {
+            this.id = id;
+            this.replay = replay;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.garrizon.service;
+
+import com.garrizon.dto.ImageImportFailureDTO;
+import com.garrizon.dto.ImageImportJobDTO;
+import com.garrizon.dto.ImageImportRequest;
+import com.garrizon.exception.BadRequestException;
+import com.garrizon.exception.ResourceNotFoundException;
+import com.garrizon.model.ImageImportItem;
+import com.garrizon.model.ImageImportItemStatus;
+import com.garrizon.model.ImageImportJob;
+import com.garrizon.repository.ImageImportItemRepository;
+import com.garrizon.repository.ImageImportJobRepository;
+import com.garrizon.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product image imports. A submitted job is written as one row per
+ * product and returned straight away; {@code ImageImportWorker} fetches the
+ * images in the background and reports back through {@link #record}, which
+ * writes a whole batch of results, product updates and job progress in a
+ * handful of JDBC batches.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImageImportService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO image_import_items (job_id, product_id, source_url, host, status, attempts, next_attempt_at) " +
+            "VALUES (?, ?, ?, ?, ?, 0, ?)";
+
+    private static final String SUCCESS_SQL =
+            "UPDATE image_import_items SET status = ?, attempts = attempts + 1, image_url = ?, last_error = NULL, " +
+            "completed_at = ?, claim_token = NULL WHERE id = ? AND claim_token = ?";
+
+    private static final String FAILURE_SQL =
+            "UPDATE image_import_items SET status = ?, attempts = ?, next_attempt_at = ?, last_error = ?, " +
+            "completed_at = ?, claim_token = NULL WHERE id = ? AND claim_token = ?";
+
+    private static final String PRODUCT_SQL =
+            "UPDATE products SET image_url = ?, image_variants_ready = 0, updated_at = ? WHERE id = ?";
+
+    // MySQL assigns left to right, so status and completed_at see the new counts
+    private static final String PROGRESS_SQL =
+            "UPDATE image_import_jobs SET succeeded = succeeded + ?, failed = failed + ?, " +
+            "status = IF(succeeded + failed >= total, 'COMPLETED', status), " +
+            "completed_at = IF(succeeded + failed >= total, ?, completed_at) WHERE id = ?";
+
+    private static final int ID_CHUNK_SIZE = 1000;
+    private static final int MAX_URL_LENGTH = 2000;
+
+    private final ImageImportJobRepository jobRepository;
+    private final ImageImportItemRepository itemRepository;
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${storage.imports.max-items-per-job:10000}")
+    private int maxItemsPerJob;
+
+    @Value("${storage.imports.max-failures-shown:100}")
+    private int maxFailuresShown;
+
+    /**
+     * Queues a job. When a product appears more than once its last URL is
+     * used, since only one of them could end up as its image anyway.
+     */
+    @Transactional
+    public ImageImportJobDTO submit(ImageImportRequest request, String submittedBy) {
+        if (request == null || request.getItems() == null || request.getItems().isEmpty()) {
+            throw new BadRequestException("At least one item is required");
+        }
+
+        Map<Long, ImageImportRequest.Item> byProduct = new LinkedHashMap<>();
+        for (ImageImportRequest.Item item : request.getItems()) {
+            if (item.getProductId() == null) {
+                throw new BadRequestException("Every item needs a productId");
+            }
+            byProduct.remove(item.getProductId());
+            byProduct.put(item.getProductId(), item);
+        }
+        if (byProduct.size() > maxItemsPerJob) {
+            throw new BadRequestException("A job can import at most " + maxItemsPerJob + " images");
+        }
+
+        Map<Long, String> hosts = new LinkedHashMap<>();
+        for (ImageImportRequest.Item item : byProduct.values()) {
+            hosts.put(item.getProductId(), hostOf(item.getUrl()));
+        }
+        requireProducts(byProduct.keySet());
+
+        ImageImportJob job = jobRepository.save(ImageImportJob.builder()
+                .total(byProduct.size())
+                .submittedBy(submittedBy)
+                .build());
+
+        // JDBC batch rather than saveAll: IDENTITY keys stop Hibernate from batching inserts
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<ImageImportRequest.Item> items = new ArrayList<>(byProduct.values());
+        jdbcTemplate.batchUpdate(INSERT_SQL, items, items.size(), (ps, item) -> {
+            ps.setLong(1, job.getId());
+            ps.setLong(2, item.getProductId());
+            ps.setString(3, item.getUrl().trim());
+            ps.setString(4, hosts.get(item.getProductId()));
+            ps.setString(5, ImageImportItemStatus.PENDING.name());
+            ps.setTimestamp(6, now);
+        });
+
+        return mapToDTO(job, List.of());
+    }
+
+    @Transactional(readOnly = true)
+    public ImageImportJobDTO getJob(Long id) {
+        ImageImportJob job = jobRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Job not found"));
+        List<ImageImportItem> failures = job.getFailed() > 0
+                ? itemRepository.findByJobIdAndStatusOrderById(id, ImageImportItemStatus.FAILED,
+                        PageRequest.of(0, maxFailuresShown))
+                : List.of();
+        return mapToDTO(job, failures);
+    }
+
+    /**
+     * Writes the outcome of one claimed batch. {@code succeeded} items carry
+     * their new {@code imageUrl}; {@code failed} items carry the status,
+     * attempt count and next attempt the worker decided on. Items whose claim
+     * was lost to another node in the meantime are skipped, so neither the
+     * product nor the job counters are touched twice.
+     *
+     * @return the successful items that were applied
+     */
+    @Transactional
+    public List<ImageImportItem> record(List<ImageImportItem> succeeded, List<ImageImportItem> failed, String token) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, int[]> progress = new LinkedHashMap<>();
+
+        Set<Long> owned = lockClaimed(succeeded, failed, token);
+        List<ImageImportItem> applied = succeeded.stream()
+                .filter(item -> owned.contains(item.getId()))
+                .collect(Collectors.toList());
+        if (!applied.isEmpty()) {
+            jdbcTemplate.batchUpdate(SUCCESS_SQL, applied, applied.size(), (ps, item) -> {
+                ps.setString(1, ImageImportItemStatus.SUCCEEDED.name());
+                ps.setString(2, item.getImageUrl());
+                ps.setTimestamp(3, now);
+                ps.setLong(4, item.getId());
+                ps.setString(5, token);
+            });
+            for (ImageImportItem item : applied) {
+                progress.computeIfAbsent(item.getJobId(), id -> new int[2])[0]++;
+            }
+        }
+
+        if (!applied.isEmpty()) {
+            jdbcTemplate.batchUpdate(PRODUCT_SQL, applied, applied.size(), (ps, item) -> {
+                ps.setString(1, item.getImageUrl());
+                ps.setTimestamp(2, now);
+                ps.setLong(3, item.getProductId());
+            });
+        }
+
+        List<ImageImportItem> failedOwned = failed.stream()
+                .filter(item -> owned.contains(item.getId()))
+                .collect(Collectors.toList());
+        if (!failedOwned.isEmpty()) {
+            jdbcTemplate.batchUpdate(FAILURE_SQL, failedOwned, failedOwned.size(), (ps, item) -> {
+                boolean dead = item.getStatus() == ImageImportItemStatus.FAILED;
+                ps.setString(1, item.getStatus().name());
+                ps.setInt(2, item.getAttempts());
+                ps.setTimestamp(3, Timestamp.valueOf(item.getNextAttemptAt()));
+                ps.setString(4, item.getLastError());
+                ps.setTimestamp(5, dead ? now : null);
+                ps.setLong(6, item.getId());
+                ps.setString(7, token);
+            });
+            for (ImageImportItem item : failedOwned) {
+                if (item.getStatus() == ImageImportItemStatus.FAILED) {
+                    progress.computeIfAbsent(item.getJobId(), id -> new int[2])[1]++;
+                }
+            }
+        }
+
+        if (!progress.isEmpty()) {
+            List<Map.Entry<Long, int[]>> jobs = new ArrayList<>(progress.entrySet());
+            jdbcTemplate.batchUpdate(PROGRESS_SQL, jobs, jobs.size(), (ps, entry) -> {
+                ps.setInt(1, entry.getValue()[0]);
+                ps.setInt(2, entry.getValue()[1]);
+                ps.setTimestamp(3, now);
+                ps.setLong(4, entry.getKey());
+            });
+        }
+        return applied;
+    }
+
+    private void requireProducts(Set<Long> productIds) {
+        List<Long> ids = new ArrayList<>(productIds);
+        Set<Long> existing = new HashSet<>(ids.size());
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            existing.addAll(productRepository.findExistingIds(ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()))));
+        }
+        if (existing.size() < ids.size()) {
+            String missing = ids.stream()
+                    .filter(id -> !existing.contains(id))
+                    .limit(20)
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", "));
+            throw new BadRequestException("Unknown product IDs: " + missing);
+        }
+    }
+
+    private static String hostOf(String url) {
+        if (url == null || url.isBlank() || url.length() > MAX_URL_LENGTH) {
+            throw new BadRequestException("Invalid image URL: " + url);
+        }
+        try {
+            URI uri = new URI(url.trim());
+            String scheme = uri.getScheme();
+            if (uri.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+                throw new BadRequestException("Image URLs must be absolute http or https URLs: " + url);
+            }
+            return uri.getHost().toLowerCase(Locale.ROOT);
+        } catch (URISyntaxException e) {
+            throw new BadRequestException("Invalid image URL: " + url);
+        }
+    }
+
+    /**
+     * Locks the items this node still holds the claim for and returns their
+     * ids. The batch's update counts cannot tell a lost claim apart: with
+     * rewritten batches Connector/J reports SUCCESS_NO_INFO (-2) for every
+     * statement. With the rows locked, every write that follows applies.
+     */
+    private Set<Long> lockClaimed(List<ImageImportItem> succeeded, List<ImageImportItem> failed, String token) {
+        if (succeeded.isEmpty() && failed.isEmpty()) {
+            return Set.of();
+        }
+        List<Object> args = new ArrayList<>(succeeded.size() + failed.size() + 1);
+        args.add(token);
+        succeeded.forEach(item -> args.add(item.getId()));
+        failed.forEach(item -> args.add(item.getId()));
+        String placeholders = String.join(", ", Collections.nCopies(args.size() - 1, "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM image_import_items WHERE claim_token = ? AND id IN (" + placeholders + ") " +
+                "ORDER BY id FOR UPDATE", Long.class, args.toArray()));
+    }
+
+    private ImageImportJobDTO mapToDTO(ImageImportJob job, List<ImageImportItem> failures) {
+        return ImageImportJobDTO.builder()
+                .id(job.getId())
+                .status(job.getStatus())
+                .total(job.getTotal())
+                .succeeded(job.getSucceeded())
+                .failed(job.getFailed())
+                .pending(job.getTotal() - job.getSucceeded() - job.getFailed())
+                .createdAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .failures(failures.stream()
+                        .map(item -> ImageImportFailureDTO.builder()
+                                .productId(item.getProductId())
+                                .url(item.getSourceUrl())
+                                .attempts(item.getAttempts())
+                                .error(item.getLastError())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.garrizon.service;
+
+import com.garrizon.exception.TooManyRequestsException;
+import com.garrizon.storage.LocalImageStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Moves uploaded images to storage without holding them in the heap. The
+ * servlet container spools the multipart body to disk. From there the file
+ * is streamed into {@link LocalImageStore}, which hashes it on the way
+ * through a fixed-size buffer. The stored file is then streamed on to
+ * Cloudinary when that is configured, with the hash as its public ID.
+ * <p>
+ * Uploads run on {@code uploadExecutor}. Its thread count caps the copy
+ * buffers and outbound connections in use, and uploads beyond its queue are
+ * turned away with 429 rather than piling up.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageUploadService {
+
+    private final LocalImageStore localImageStore;
+    private final CloudinaryService cloudinaryService;
+    private final ThreadPoolTaskExecutor uploadExecutor;
+
+    /**
+     * @return the public URL of the stored image, or empty when it could not
+     *         be written anywhere
+     */
+    public CompletableFuture<Optional<String>> upload(MultipartFile file) {
+        try {
+            return CompletableFuture.supplyAsync(() -> store(file), uploadExecutor);
+        } catch (TaskRejectedException e) {
+            throw new TooManyRequestsException("Too many uploads in progress, please try again shortly");
+        }
+    }
+
+    private Optional<String> store(MultipartFile file) {
+        String key;
+        try (InputStream in = file.getInputStream()) {
+            key = localImageStore.store(in, file.getContentType(), file.getOriginalFilename());
+        } catch (IOException e) {
+            log.warn("Failed to store uploaded image {}: {}", file.getOriginalFilename(), e.getMessage());
+            return Optional.empty();
+        }
+
+        return Optional.of(publish(key));
+    }
+
+    /**
+     * The public URL for an image already in the local store: its Cloudinary
+     * copy when that can be made, otherwise the local URL.
+     */
+    public String publish(String key) {
+        Optional<Path> stored = localImageStore.resolve(key);
+        if (stored.isPresent()) {
+            try {
+                return cloudinaryService.uploadImage(stored.get().toFile(), LocalImageStore.hashOf(key));
+            } catch (Exception e) {
+                // Cloudinary not configured or unavailable; serve the local copy
+                log.debug("Cloudinary upload failed, using local image: {}", e.getMessage());
+            }
+        }
+        return localImageStore.urlFor(key);
+    }
+}
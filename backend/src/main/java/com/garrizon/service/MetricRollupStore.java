@@ -0,0 +1,236 @@
+package com.garrizon.service;
+
+import com.garrizon.model.MetricRollup;
+import com.garrizon.repository.MetricRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Named counters kept in memory and checkpointed to {@code metric_rollups}.
+ * <p>
+ * Each instance only records its own changes as deltas and adds them to the
+ * table on {@link #checkpoint()}, then reloads the totals. Instances therefore
+ * never overwrite each other, and all of them converge within one checkpoint
+ * interval. Reads are a couple of map lookups.
+ * <p>
+ * Deltas are kept per second in which they were recorded. A reconcile stamps
+ * each row with the cut-off its recount was taken at, and checkpoints drop
+ * deltas from before it, whichever node they come from, since the recount
+ * already includes them. This assumes node clocks agree to well within a
+ * second.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MetricRollupStore {
+
+    private static final long BUCKET_MS = 1000;
+
+    private static final String UPSERT_DELTA_SQL =
+            "INSERT INTO metric_rollups (name, total, counted_until, updated_at) VALUES (?, ?, 0, ?) " +
+            "ON DUPLICATE KEY UPDATE total = IF(counted_until <= ?, total + VALUES(total), total), " +
+            "updated_at = VALUES(updated_at)";
+
+    private static final String UPSERT_ABSOLUTE_SQL =
+            "INSERT INTO metric_rollups (name, total, counted_until, updated_at) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE total = VALUES(total), counted_until = VALUES(counted_until), " +
+            "updated_at = VALUES(updated_at)";
+
+    // Next-key locks on the whole table, so checkpoints on every node wait until the reconcile commits
+    private static final String LOCK_SQL = "SELECT name FROM metric_rollups FOR UPDATE";
+
+    private final MetricRollupRepository metricRollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Unsaved deltas by counter and the second they were recorded in
+    private final Map<Slot, Long> pending = new ConcurrentHashMap<>();
+
+    // Checkpointed totals plus deltas that are being written but not yet reloaded
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
+
+    public void add(String name, long delta) {
+        add(new Slot(name, bucketStart(System.currentTimeMillis())), delta);
+    }
+
+    public long get(String name) {
+        Snapshot current = snapshot;
+        long local = 0;
+        for (Map.Entry<Slot, Long> entry : pending.entrySet()) {
+            if (entry.getKey().name.equals(name)) {
+                local += entry.getValue();
+            }
+        }
+        return current.base.getOrDefault(name, 0L)
+                + current.inFlight.getOrDefault(name, 0L)
+                + local;
+    }
+
+    public boolean isEmpty() {
+        return snapshot.base.isEmpty();
+    }
+
+    public synchronized void reload() {
+        snapshot = new Snapshot(loadTotals(), Collections.emptyMap());
+    }
+
+    /**
+     * Adds local deltas to the table and reloads the totals written by all
+     * instances. Deltas are put back if the write fails.
+     */
+    public synchronized void checkpoint() {
+        Map<Slot, Long> deltas = drainPending(Long.MAX_VALUE);
+        if (!deltas.isEmpty()) {
+            snapshot = new Snapshot(snapshot.base, byName(deltas));
+            try {
+                writeDeltas(deltas);
+            } catch (RuntimeException e) {
+                deltas.forEach(this::add);
+                snapshot = new Snapshot(snapshot.base, Collections.emptyMap());
+                throw e;
+            }
+        }
+        snapshot = new Snapshot(loadTotals(), Collections.emptyMap());
+    }
+
+    /**
+     * Replaces stored totals with the ones {@code recount} computes. The rows
+     * are locked first, then the recount's consistent snapshot is taken at
+     * the start of the next second, which becomes the cut-off: deltas
+     * recorded before it are dropped, later ones are still added. This relies
+     * on MySQL's default repeatable-read isolation.
+     */
+    @Transactional
+    public synchronized void overwrite(Supplier<Map<String, Long>> recount) {
+        jdbcTemplate.queryForList(LOCK_SQL, String.class);
+        long cutoff = bucketStart(System.currentTimeMillis()) + BUCKET_MS;
+        sleepUntil(cutoff);
+
+        Map<String, Long> totals = recount.get();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<String, Long>> rows = new ArrayList<>(totals.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_ABSOLUTE_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setString(1, row.getKey());
+            ps.setLong(2, row.getValue());
+            ps.setLong(3, cutoff);
+            ps.setTimestamp(4, now);
+        });
+
+        // Saves a round trip for our own deltas; other nodes' are dropped by the checkpoint SQL
+        drainPending(cutoff);
+        snapshot = new Snapshot(loadTotals(), Collections.emptyMap());
+    }
+
+    public void deleteOlderThan(String prefix, String keepFrom) {
+        metricRollupRepository.deleteOlderThan(prefix, keepFrom);
+    }
+
+    private void add(Slot slot, long delta) {
+        pending.merge(slot, delta, Long::sum);
+    }
+
+    private Map<Slot, Long> drainPending(long before) {
+        Map<Slot, Long> deltas = new HashMap<>();
+        for (Slot slot : pending.keySet()) {
+            if (slot.bucket < before) {
+                Long delta = pending.remove(slot);
+                if (delta != null && delta != 0) {
+                    deltas.put(slot, delta);
+                }
+            }
+        }
+        return deltas;
+    }
+
+    private void writeDeltas(Map<Slot, Long> deltas) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<Slot, Long>> rows = new ArrayList<>(deltas.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_DELTA_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setString(1, row.getKey().name);
+            ps.setLong(2, row.getValue());
+            ps.setTimestamp(3, now);
+            ps.setLong(4, row.getKey().bucket);
+        });
+    }
+
+    private Map<String, Long> loadTotals() {
+        Map<String, Long> totals = new HashMap<>();
+        for (MetricRollup rollup : metricRollupRepository.findAll()) {
+            totals.put(rollup.getName(), rollup.getTotal());
+        }
+        return totals;
+    }
+
+    private static Map<String, Long> byName(Map<Slot, Long> deltas) {
+        Map<String, Long> totals = new HashMap<>();
+        deltas.forEach((slot, delta) -> totals.merge(slot.name, delta, Long::sum));
+        return totals;
+    }
+
+    private static long bucketStart(long epochMillis) {
+        return epochMillis - Math.floorMod(epochMillis, BUCKET_MS);
+    }
+
+    private static void sleepUntil(long epochMillis) {
+        long wait = epochMillis - System.currentTimeMillis();
+        while (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the reconcile cut-off", e);
+            }
+            wait = epochMillis - System.currentTimeMillis();
+        }
+    }
+
+    private static final class Slot {
+        private final String name;
+        private final long bucket;
+
+        private Slot(String name, long bucket) {
+            this.name = name;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Slot)) {
+                return false;
+            }
+            Slot other = (Slot) o;
+            return bucket == other.bucket && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, bucket);
+        }
+    }
+
+    private static final class Snapshot {
+        private final Map<String, Long> base;
+        private final Map<String, Long> inFlight;
+
+        private Snapshot(Map<String, Long> base, Map<String, Long> inFlight) {
+            this.base = base;
+            this.inFlight = inFlight;
+        }
+    }
+}
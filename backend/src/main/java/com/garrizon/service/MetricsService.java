@@ -1,52 +1,185 @@
 package com.garrizon.service;
 
+
+import com.garrizon.cluster.LeaseService;
+import com.garrizon.event.OrderCreatedEvent;
+import com.garrizon.event.OrderStatusChangedEvent;
+import com.garrizon.event.PaymentCompletedEvent;
+import com.garrizon.event.ProductCreatedEvent;
+import com.garrizon.event.ProductDeletedEvent;
+import com.garrizon.event.UserRegisteredEvent;
+import com.garrizon.model.Money;
 import com.garrizon.model.OrderStatus;
+import com.garrizon.model.RevenueGranularity;
 import com.garrizon.repository.OrderRepository;
 import com.garrizon.repository.ProductRepository;
 import com.garrizon.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Dashboard figures maintained as counters. Order, payment, user and product
+ * events adjust them after commit, so reading the dashboard only costs the
+ * revenue chart's read of about thirty daily rollup rows. A scheduled
+ * reconcile recomputes everything from the source tables to correct any
+ * drift, e.g. deltas lost in a crash.
+ */
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class MetricsService {
 
+    private static final String TOTAL_ORDERS = "orders.total";
+    private static final String TOTAL_CUSTOMERS = "customers.total";
+    private static final String TOTAL_PRODUCTS = "products.total";
+    private static final String TOTAL_REVENUE = "revenue.completed";
+    private static final String ORDERS_BY_STATUS = "orders.status:";
+    private static final String ORDERS_CREATED_ON = "orders.created:";
+
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final MetricRollupStore rollups;
+    private final RevenueTimeSeriesService revenueTimeSeriesService;
+    private final LeaseService leaseService;
 
+    @Transactional(readOnly = true)
     public Map<String, Object> getDashboardMetrics() {
+        Map<String, Object> metrics = getCounters();
+
+        LocalDateTime now = LocalDateTime.now();
+
+        // Revenue chart data: one point per day from the pre-bucketed series
+        metrics.put("revenueLast30Days", revenueTimeSeriesService.getSeries(now.minusDays(30), now, RevenueGranularity.DAY));
+
+        return metrics;
+    }
+
+    /**
+     * Current counter values; reads memory only.
+     */
+    public Map<String, Object> getCounters() {
         Map<String, Object> metrics = new HashMap<>();
-        
-        LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-        LocalDateTime startOfMonth = LocalDateTime.now().minusDays(30);
 
         // Basic counts
-        metrics.put("totalOrders", orderRepository.count());
-        metrics.put("totalCustomers", userRepository.count());
-        metrics.put("totalProducts", productRepository.count());
-        
+        metrics.put("totalOrders", rollups.get(TOTAL_ORDERS));
+        metrics.put("totalCustomers", rollups.get(TOTAL_CUSTOMERS));
+        metrics.put("totalProducts", rollups.get(TOTAL_PRODUCTS));
+
         // Sales metrics
-        BigDecimal totalRevenue = orderRepository.getTotalRevenue();
-        metrics.put("totalRevenue", totalRevenue != null ? totalRevenue : BigDecimal.ZERO);
-        
-        metrics.put("ordersToday", orderRepository.countOrdersSince(startOfDay));
-        
+        metrics.put("totalRevenue", Money.ofMinor(rollups.get(TOTAL_REVENUE)).toBigDecimal());
+        metrics.put("ordersToday", rollups.get(ORDERS_CREATED_ON + LocalDate.now()));
+
         // Order status breakdown
         Map<String, Long> statusBreakdown = new HashMap<>();
         for (OrderStatus status : OrderStatus.values()) {
-            statusBreakdown.put(status.name(), orderRepository.countByStatus(status));
+            statusBreakdown.put(status.name(), rollups.get(ORDERS_BY_STATUS + status.name()));
         }
         metrics.put("orderStatusBreakdown", statusBreakdown);
-        
-        // Revenue chart data (simplified for now)
-        metrics.put("recentOrders", orderRepository.findCompletedOrdersSince(startOfMonth));
-        
+
         return metrics;
     }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        rollups.add(TOTAL_ORDERS, 1);
+        rollups.add(ORDERS_BY_STATUS + OrderStatus.PENDING.name(), 1);
+        rollups.add(ORDERS_CREATED_ON + event.getCreatedAt().toLocalDate(), 1);
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        rollups.add(ORDERS_BY_STATUS + event.getPreviousStatus().name(), -1);
+        rollups.add(ORDERS_BY_STATUS + event.getNewStatus().name(), 1);
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentCompleted(PaymentCompletedEvent event) {
+        rollups.add(TOTAL_REVENUE, event.getAmount().getMinorUnits());
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRegistered(UserRegisteredEvent event) {
+        rollups.add(TOTAL_CUSTOMERS, 1);
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductCreated(ProductCreatedEvent event) {
+        rollups.add(TOTAL_PRODUCTS, 1);
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductDeleted(ProductDeletedEvent event) {
+        rollups.add(TOTAL_PRODUCTS, -1);
+    }
+
+    /**
+     * Loads checkpointed counters once seeding has run; the first start on a
+     * fresh database computes them from the source tables instead.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCounters() {
+        rollups.reload();
+        if (rollups.isEmpty()) {
+            reconcile();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.checkpoint-interval-ms:10000}")
+    public void checkpoint() {
+        try {
+            rollups.checkpoint();
+        } catch (RuntimeException e) {
+            log.warn("Failed to checkpoint dashboard metrics: {}", e.getMessage());
+        }
+    }
+
+    // Recomputes from the source tables, so one node per run is enough
+    @Scheduled(cron = "${metrics.reconcile-cron:0 30 3 * * *}")
+    public void scheduledReconcile() {
+        leaseService.runExclusively("metrics-reconcile", this::reconcile);
+    }
+
+    public void reconcile() {
+        LocalDate today = LocalDate.now();
+        rollups.overwrite(() -> recount(today));
+        rollups.deleteOlderThan(ORDERS_CREATED_ON, ORDERS_CREATED_ON + today.minusDays(7));
+        log.info("Reconciled dashboard metrics from source tables");
+    }
+
+    private Map<String, Long> recount(LocalDate today) {
+        Map<String, Long> totals = new HashMap<>();
+
+        totals.put(TOTAL_ORDERS, orderRepository.count());
+        totals.put(TOTAL_CUSTOMERS, userRepository.count());
+        totals.put(TOTAL_PRODUCTS, productRepository.count());
+
+        BigDecimal revenue = orderRepository.getTotalRevenue();
+        totals.put(TOTAL_REVENUE, revenue != null ? Money.of(revenue).getMinorUnits() : 0L);
+        totals.put(ORDERS_CREATED_ON + today, orderRepository.countOrdersSince(today.atStartOfDay()));
+
+        for (OrderStatus status : OrderStatus.values()) {
+            totals.put(ORDERS_BY_STATUS + status.name(), orderRepository.countByStatus(status));
+        }
+        return totals;
+    }
 }
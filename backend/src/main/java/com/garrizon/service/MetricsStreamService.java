@@ -0,0 +1,217 @@
+package com.garrizon.service;
+
+import com.garrizon.dto.MetricDelta;
+import com.garrizon.event.OrderCreatedEvent;
+import com.garrizon.event.OrderStatusChangedEvent;
+import com.garrizon.event.PaymentCompletedEvent;
+import com.garrizon.exception.TooManyRequestsException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes dashboard changes to admins over Server-Sent Events. Order and
+ * payment events are turned into compact deltas once and fanned out to
+ * every subscriber's bounded buffer; a single producer thread of its own
+ * flushes the buffers every {@code flush-interval-ms}, so database cost does
+ * not grow with the number of open dashboards and a slow scheduled job
+ * cannot hold up deltas or heartbeats.
+ * <p>
+ * New subscribers first receive a {@code snapshot} of the in-memory
+ * counters. A subscriber that falls so far behind that its buffer overflows
+ * has its backlog dropped and gets a fresh snapshot instead. Idle streams
+ * get a heartbeat comment so proxies keep them open.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MetricsStreamService {
+
+    private final MetricsService metricsService;
+    private final ThreadPoolTaskExecutor metricsStreamExecutor;
+
+    @Value("${metrics.stream.max-subscribers:50}")
+    private int maxSubscribers;
+
+    @Value("${metrics.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${metrics.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${metrics.stream.heartbeat-interval-ms:15000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${metrics.stream.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-stream-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        // An exception escaping a periodic task would cancel it for good
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush metrics stream: {}", e.getMessage());
+            }
+        }, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+    }
+
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new TooManyRequestsException("Too many open metric streams");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    // Ordered after MetricsService so a snapshot built now already includes the change
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderCreated(OrderCreatedEvent event) {
+        publish(MetricDelta.builder()
+                .type("order.created")
+                .orderId(event.getOrderId())
+                .at(event.getCreatedAt())
+                .build());
+    }
+
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderStatusChanged(OrderStatusChangedEvent event) {
+        publish(MetricDelta.builder()
+                .type("order.status")
+                .orderId(event.getOrderId())
+                .from(event.getPreviousStatus())
+                .to(event.getNewStatus())
+                .at(LocalDateTime.now())
+                .build());
+    }
+
+    @Order(10)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentCompleted(PaymentCompletedEvent event) {
+        publish(MetricDelta.builder()
+                .type("payment.completed")
+                .orderId(event.getOrderId())
+                .amount(event.getAmount())
+                .at(event.getCompletedAt())
+                .build());
+    }
+
+    /**
+     * Hands each subscriber with pending deltas, or due a heartbeat, to a
+     * sender. A subscriber whose previous send is still running is skipped;
+     * its deltas keep accumulating in its buffer.
+     */
+    void flush() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        for (Subscriber subscriber : subscribers) {
+            boolean heartbeatDue = now - subscriber.lastSentAt >= heartbeatIntervalMs;
+            if (!subscriber.needsSnapshot.get() && !heartbeatDue && subscriber.buffer.isEmpty()) {
+                continue;
+            }
+            if (!subscriber.sending.compareAndSet(false, true)) {
+                continue;
+            }
+            try {
+                metricsStreamExecutor.execute(() -> send(subscriber));
+            } catch (TaskRejectedException e) {
+                subscriber.sending.set(false);
+            }
+        }
+    }
+
+    private void publish(MetricDelta delta) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.buffer.offer(delta)) {
+                subscriber.buffer.clear();
+                subscriber.needsSnapshot.set(true);
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            if (subscriber.needsSnapshot.getAndSet(false)) {
+                // Read after the clear, so a delta dropped by it is already in the snapshot
+                subscriber.buffer.clear();
+                Map<String, Object> snapshot = metricsService.getCounters();
+                subscriber.emitter.send(SseEmitter.event().name("snapshot").data(snapshot, MediaType.APPLICATION_JSON));
+            }
+
+            List<MetricDelta> deltas = new ArrayList<>();
+            subscriber.buffer.drainTo(deltas);
+            if (!deltas.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event().name("delta").data(deltas, MediaType.APPLICATION_JSON));
+            } else if (System.currentTimeMillis() - subscriber.lastSentAt >= heartbeatIntervalMs) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            }
+            subscriber.lastSentAt = System.currentTimeMillis();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Dropping metrics stream subscriber: {}", e.getMessage());
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        } finally {
+            subscriber.sending.set(false);
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<MetricDelta> buffer;
+        private final AtomicBoolean needsSnapshot = new AtomicBoolean(true);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long lastSentAt;
+
+        private Subscriber(SseEmitter emitter, BlockingQueue<MetricDelta> buffer) {
+            this.emitter = emitter;
+            this.buffer = buffer;
+        }
+    }
+}
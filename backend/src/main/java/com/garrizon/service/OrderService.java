@@ -2,21 +2,36 @@ package com.garrizon.service;
 
 import com.garrizon.dto.OrderDTO;
 import com.garrizon.dto.OrderItemDTO;
+import com.garrizon.dto.OrderItemQuantityView;
+import com.garrizon.dto.OrderPaymentView;
+import com.garrizon.dto.PaymentStatusUpdate;
 import com.garrizon.exception.BadRequestException;
+import com.garrizon.event.OrderCreatedEvent;
+import com.garrizon.event.OrderStatusChangedEvent;
+import com.garrizon.event.PaymentCompletedEvent;
 import com.garrizon.exception.ResourceNotFoundException;
 import com.garrizon.model.*;
 import com.garrizon.repository.CartRepository;
+import com.garrizon.repository.OrderItemRepository;
 import com.garrizon.repository.OrderRepository;
 import com.garrizon.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,8 +39,12 @@ import java.util.stream.Collectors;
 public class OrderService {
 
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
     private final CartRepository cartRepository;
     private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EmailService emailService;
 
     @Transactional
     public OrderDTO createOrder(UserDetails userDetails, String shippingAddress, PaymentProvider paymentProvider) {
@@ -39,9 +58,9 @@ public class OrderService {
             throw new BadRequestException("Cart is empty");
         }
 
-        BigDecimal totalAmount = cart.getCartItems().stream()
-                .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Money totalAmount = cart.getCartItems().stream()
+                .map(item -> item.getPrice().times(item.getQuantity()))
+                .reduce(Money.ZERO, Money::plus);
 
         Order order = Order.builder()
                 .user(user)
@@ -66,14 +85,17 @@ public class OrderService {
         }
 
         Order savedOrder = orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderCreatedEvent(savedOrder.getId(), user.getId(), savedOrder.getCreatedAt()));
+        emailService.queueOrderConfirmation(savedOrder);
 
         // Clear cart after order creation
-        cart.getCartItems().clear();
+        cart.clearItems();
         cartRepository.save(cart);
 
         return mapToDTO(savedOrder);
     }
 
+    @Transactional(readOnly = true)
     public Page<OrderDTO> getUserOrders(UserDetails userDetails, Pageable pageable) {
         User user = userRepository.findByEmail(userDetails.getUsername())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
@@ -82,23 +104,126 @@ public class OrderService {
                 .map(this::mapToDTO);
     }
 
+    // Not read-only: payment verification reads the order straight after a webhook settles it,
+    // so it stays on the primary rather than risk a lagging replica
+    @Transactional
     public OrderDTO getOrder(Long id) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
         return mapToDTO(order);
     }
 
+    @Transactional(readOnly = true)
     public Page<OrderDTO> getAllOrders(Pageable pageable) {
         return orderRepository.findAllByOrderByCreatedAtDesc(pageable)
                 .map(this::mapToDTO);
     }
 
+    @Transactional
     public OrderDTO updateOrderStatus(Long id, OrderStatus status) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Order not found"));
-        
+
+        OrderStatus previousStatus = order.getStatus();
         order.setStatus(status);
-        return mapToDTO(orderRepository.save(order));
+        Order savedOrder = orderRepository.save(order);
+        if (previousStatus != status) {
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(id, previousStatus, status));
+            emailService.queueOrderStatusUpdate(savedOrder);
+        }
+        return mapToDTO(savedOrder);
+    }
+
+    /**
+     * Moves a pending order to the given payment status. Returns false when the
+     * order was already settled, so repeated confirmations are harmless.
+     */
+    @Transactional
+    public boolean updatePaymentStatus(Long orderId, PaymentStatus status, String reference) {
+        boolean applied = orderRepository.updatePaymentStatusIfPending(orderId, status, reference, LocalDateTime.now()) > 0;
+        if (applied && status == PaymentStatus.COMPLETED) {
+            publishPaymentsCompleted(List.of(orderId));
+        }
+        return applied;
+    }
+
+    /**
+     * Applies many payment status changes with one batched JDBC statement.
+     * Returns the updates that actually moved a pending order.
+     * <p>
+     * The batch's update counts cannot say which rows moved: with rewritten
+     * batches the driver reports SUCCESS_NO_INFO (-2) for every statement.
+     * So the orders still pending are locked first, and only those are
+     * written.
+     */
+    @Transactional
+    public List<PaymentStatusUpdate> updatePaymentStatuses(List<PaymentStatusUpdate> updates) {
+        if (updates.isEmpty()) {
+            return updates;
+        }
+
+        Object[] ids = updates.stream().map(PaymentStatusUpdate::getOrderId).distinct().toArray();
+        Set<Long> pending = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM orders WHERE payment_status = 'PENDING' AND id IN (" + placeholders(ids.length) +
+                ") ORDER BY id FOR UPDATE", Long.class, ids));
+        List<PaymentStatusUpdate> applied = updates.stream()
+                .filter(update -> pending.remove(update.getOrderId()))
+                .collect(Collectors.toList());
+        if (applied.isEmpty()) {
+            return applied;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(
+                "UPDATE orders SET payment_status = ?, payment_intent_id = ?, updated_at = ? " +
+                "WHERE id = ? AND payment_status = 'PENDING'",
+                applied, applied.size(), (ps, update) -> {
+                    ps.setString(1, update.getStatus().name());
+                    ps.setString(2, update.getReference());
+                    ps.setTimestamp(3, now);
+                    ps.setLong(4, update.getOrderId());
+                });
+
+        publishPaymentsCompleted(applied.stream()
+                .filter(update -> update.getStatus() == PaymentStatus.COMPLETED)
+                .map(PaymentStatusUpdate::getOrderId)
+                .collect(Collectors.toList()));
+        return applied;
+    }
+
+    /**
+     * Remembers the provider reference of a payment as soon as it is started,
+     * so the reconciler can check it later even if the customer never returns.
+     */
+    @Transactional
+    public void recordPaymentReference(Long orderId, String reference) {
+        orderRepository.updatePaymentReference(orderId, reference);
+    }
+
+    /**
+     * Announces completed payments with their amounts and items, read in two
+     * queries for the whole batch.
+     * Listeners run after the surrounding transaction commits.
+     */
+    private void publishPaymentsCompleted(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return;
+        }
+        LocalDateTime completedAt = LocalDateTime.now();
+        Map<Long, Map<Long, Integer>> quantities = new HashMap<>();
+        for (OrderItemQuantityView item : orderItemRepository.findItemQuantities(orderIds)) {
+            quantities.computeIfAbsent(item.getOrderId(), id -> new HashMap<>())
+                    .merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        for (OrderPaymentView payment : orderRepository.findPaymentViews(orderIds)) {
+            eventPublisher.publishEvent(new PaymentCompletedEvent(
+                    payment.getId(), payment.getUserId(), payment.getTotalAmount(), completedAt,
+                    quantities.getOrDefault(payment.getId(), Map.of())));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
     }
 
     private OrderDTO mapToDTO(Order order) {
@@ -110,7 +235,7 @@ public class OrderService {
                         .productImageUrl(item.getProduct().getImageUrl())
                         .quantity(item.getQuantity())
                         .price(item.getPrice())
-                        .subtotal(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+                        .subtotal(item.getPrice().times(item.getQuantity()))
                         .build())
                 .collect(Collectors.toList());
 
@@ -1,18 +1,20 @@
 package com.garrizon.service;
 
+import com.garrizon.dto.PaymentVerification;
 import com.garrizon.exception.BadRequestException;
+import com.garrizon.exception.ProviderUnavailableException;
 import com.garrizon.exception.ResourceNotFoundException;
+import com.garrizon.model.Money;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.resilience.ProviderGuard;
+import com.garrizon.resilience.ProviderGuardRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,66 +22,70 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PaystackService {
 
-    @Value("${paystack.secret-key}")
-    private String secretKey;
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE =
+            new ParameterizedTypeReference<Map<String, Object>>() {
+            };
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private static final String PAYSTACK_INIT_URL = "https://api.paystack.co/transaction/initialize";
-    private static final String PAYSTACK_VERIFY_URL = "https://api.paystack.co/transaction/verify/";
+    private final WebClient paystackWebClient;
+    private final ProviderGuardRegistry providerGuardRegistry;
 
-    public Map<String, Object> initializeTransaction(String email, BigDecimal amount) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    private static final String PAYSTACK_INIT_PATH = "/transaction/initialize";
+    private static final String PAYSTACK_VERIFY_PATH = "/transaction/verify/{reference}";
+
+    @SuppressWarnings("unchecked")
+    public Mono<Map<String, Object>> initializeTransaction(Long orderId, String reference, String email, Money amount) {
+        if (!amount.isPositive()) {
             throw new BadRequestException("Amount must be greater than zero");
         }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Authorization", "Bearer " + secretKey);
-
         Map<String, Object> body = new HashMap<>();
         body.put("email", email);
-        body.put("amount", amount.multiply(BigDecimal.valueOf(100)).longValue()); // Convert to kobo
+        body.put("reference", reference);
+        body.put("amount", amount.getMinorUnits()); // Already in kobo
+        body.put("currency", amount.getCurrency().getCurrencyCode());
+        body.put("metadata", Map.of("orderId", orderId)); // Lets webhooks find the order
 
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-
-        try {
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    PAYSTACK_INIT_URL,
-                    HttpMethod.POST,
-                    entity,
-                    Map.class
-            );
-            
-            if (response.getBody() != null && (boolean) response.getBody().get("status")) {
-                return (Map<String, Object>) response.getBody().get("data");
-            } else {
-                throw new BadRequestException("Failed to initialize Paystack transaction");
-            }
-        } catch (Exception e) {
-            throw new BadRequestException("Paystack error: " + e.getMessage());
-        }
+        return guard().executeMono(() -> paystackWebClient.post()
+                .uri(PAYSTACK_INIT_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(RESPONSE_TYPE)
+                .map(response -> {
+                    if (Boolean.TRUE.equals(response.get("status"))) {
+                        return (Map<String, Object>) response.get("data");
+                    }
+                    throw new BadRequestException("Failed to initialize Paystack transaction");
+                }))
+                // Mapped outside the guard so its breaker sees the real error
+                .onErrorMap(e -> !(e instanceof BadRequestException || e instanceof ProviderUnavailableException),
+                        e -> new BadRequestException("Paystack error: " + e.getMessage()));
     }
 
-    public boolean verifyTransaction(String reference) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Authorization", "Bearer " + secretKey);
-        HttpEntity<String> entity = new HttpEntity<>(headers);
-
-        try {
-            ResponseEntity<Map> response = restTemplate.exchange(
-                    PAYSTACK_VERIFY_URL + reference,
-                    HttpMethod.GET,
-                    entity,
-                    Map.class
-            );
+    @SuppressWarnings("unchecked")
+    public Mono<PaymentVerification> verifyTransaction(String reference) {
+        return guard().executeMono(() -> paystackWebClient.get()
+                .uri(PAYSTACK_VERIFY_PATH, reference)
+                .retrieve()
+                .bodyToMono(RESPONSE_TYPE)
+                .map(response -> {
+                    if (Boolean.TRUE.equals(response.get("status"))) {
+                        Map<String, Object> data = (Map<String, Object>) response.get("data");
+                        Object amount = data.get("amount");
+                        Object currency = data.get("currency");
+                        return new PaymentVerification(
+                                "success".equals(data.get("status")) ? PaymentStatus.COMPLETED : null,
+                                amount instanceof Number ? ((Number) amount).longValue() : null,
+                                currency != null ? currency.toString().toUpperCase() : null);
+                    }
+                    return new PaymentVerification();
+                })
+                .defaultIfEmpty(new PaymentVerification()))
+                .onErrorMap(e -> !(e instanceof ProviderUnavailableException),
+                        e -> new ResourceNotFoundException("Transaction verification failed: " + e.getMessage()));
+    }
 
-            if (response.getBody() != null && (boolean) response.getBody().get("status")) {
-                Map<String, Object> data = (Map<String, Object>) response.getBody().get("data");
-                return "success".equals(data.get("status"));
-            }
-            return false;
-        } catch (Exception e) {
-            throw new ResourceNotFoundException("Transaction verification failed: " + e.getMessage());
-        }
+    private ProviderGuard guard() {
+        return providerGuardRegistry.get(ProviderGuardRegistry.PAYSTACK);
     }
 }
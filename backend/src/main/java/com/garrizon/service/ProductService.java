@@ -1,23 +1,26 @@
 package com.garrizon.service;
 
 import com.garrizon.dto.ProductDTO;
+import com.garrizon.event.ProductCreatedEvent;
+import com.garrizon.event.ProductDeletedEvent;
 import com.garrizon.exception.ResourceNotFoundException;
 import com.garrizon.model.Category;
 import com.garrizon.model.Product;
 import com.garrizon.repository.CategoryRepository;
 import com.garrizon.repository.ProductRepository;
+import com.garrizon.storage.ImageVariantService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -26,7 +29,11 @@ public class ProductService {
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
     private final CloudinaryService cloudinaryService;
+    private final ImageUploadService imageUploadService;
+    private final ImageVariantService imageVariantService;
+    private final ApplicationEventPublisher eventPublisher;
 
+    @Transactional(readOnly = true)
     public Page<ProductDTO> getAllProducts(String search, Long categoryId, Pageable pageable) {
         Page<Product> products;
 
@@ -41,12 +48,14 @@ public class ProductService {
         return products.map(this::mapToDTO);
     }
 
+    @Transactional(readOnly = true)
     public ProductDTO getProductBySlug(String slug) {
         Product product = productRepository.findBySlug(slug)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
         return mapToDTO(product);
     }
 
+    @Transactional(readOnly = true)
     public Page<ProductDTO> getAllProductsForAdmin(@org.springframework.lang.NonNull Pageable pageable) {
         Page<Product> products = productRepository.findAll(pageable);
         return products.map(this::mapToDTO);
@@ -74,6 +83,8 @@ public class ProductService {
                 .build();
 
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductCreatedEvent(savedProduct.getId()));
+        imageVariantService.generate(savedProduct.getId(), savedProduct.getImageUrl());
         return mapToDTO(savedProduct);
     }
 
@@ -93,14 +104,20 @@ public class ProductService {
             product.setDescription(productDTO.getDescription());
         if (productDTO.getPrice() != null)
             product.setPrice(productDTO.getPrice());
-        if (productDTO.getImageUrl() != null)
+        boolean imageChanged = productDTO.getImageUrl() != null && !productDTO.getImageUrl().equals(product.getImageUrl());
+        if (imageChanged) {
             product.setImageUrl(productDTO.getImageUrl());
+            product.setImageVariantsReady(false);
+        }
         if (productDTO.getStock() != null)
             product.setStock(productDTO.getStock());
         if (productDTO.getIsActive() != null)
             product.setIsActive(productDTO.getIsActive());
 
         Product updatedProduct = productRepository.save(product);
+        if (imageChanged) {
+            imageVariantService.generate(id, updatedProduct.getImageUrl());
+        }
         return mapToDTO(updatedProduct);
     }
 
@@ -109,63 +126,43 @@ public class ProductService {
             throw new ResourceNotFoundException("Product not found");
         }
         productRepository.deleteById(id);
+        eventPublisher.publishEvent(new ProductDeletedEvent(id));
     }
 
-    public String uploadProductImage(Long id, MultipartFile file) throws IOException {
+    public CompletableFuture<String> uploadProductImage(Long id, MultipartFile file) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-
-        String imageUrl;
-        try {
-            imageUrl = cloudinaryService.uploadImage(file);
-        } catch (Exception e) {
-            // Cloudinary not configured, try local upload
-            try {
-                String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-                Path uploadPath = Paths.get("uploads");
-                if (!Files.exists(uploadPath)) {
-                    Files.createDirectories(uploadPath);
-                }
-                Files.copy(file.getInputStream(), uploadPath.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
-
-                // Return URL accessible via the static resource handler
-                // Note: This assumes the backend is accessible at the same host as the API
-                // For Docker, we might need a relative path or full URL.
-                // Since the frontend uses the URL directly, we'll try a relative path which
-                // might work if the frontend proxies or we use full URL.
-                // Let's use a relative path starting with /uploads/ which the browser will
-                // resolve against the current origin?
-                // No, the frontend is on port 5173, backend on 8080.
-                // If we return "/uploads/...", the browser will try
-                // "http://localhost:5173/uploads/..." which is wrong.
-                // We need "http://localhost:8080/uploads/...".
-                // Ideally we should have a base URL config, but for now hardcoding
-                // localhost:8080 is the quickest fix for dev.
-                imageUrl = "http://localhost:8080/uploads/" + fileName;
-
-            } catch (IOException ex) {
-                // Fallback to placeholder if local upload also fails
-                imageUrl = "https://picsum.photos/seed/" + product.getSlug() + "/400/300";
-            }
-        }
-
-        product.setImageUrl(imageUrl);
-        productRepository.save(product);
-
-        return imageUrl;
+        String slug = product.getSlug();
+
+        return imageUploadService.upload(file).thenApply(stored -> {
+            // Fallback to placeholder if the image could not be stored
+            String imageUrl = stored.orElse("https://picsum.photos/seed/" + slug + "/400/300");
+            setImage(id, imageUrl);
+            return imageUrl;
+        });
     }
 
     public String uploadProductImageFromUrl(Long id, String url) throws IOException {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+        if (!productRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Product not found");
+        }
 
         String imageUrl = cloudinaryService.uploadImageFromUrl(url);
-        product.setImageUrl(imageUrl);
-        productRepository.save(product);
-
+        setImage(id, imageUrl);
         return imageUrl;
     }
 
+    /**
+     * Writes only the new image, never the product loaded before the upload
+     * started: saving that copy would undo edits made in the meantime.
+     */
+    private void setImage(Long id, String imageUrl) {
+        if (productRepository.updateImage(id, imageUrl, LocalDateTime.now()) == 0) {
+            throw new ResourceNotFoundException("Product not found");
+        }
+        imageVariantService.generate(id, imageUrl);
+    }
+
     private ProductDTO mapToDTO(Product product) {
         return ProductDTO.builder()
                 .id(product.getId())
@@ -174,6 +171,7 @@ public class ProductService {
                 .description(product.getDescription())
                 .price(product.getPrice())
                 .imageUrl(product.getImageUrl())
+                .imageVariants(imageVariantService.variantsFor(product))
                 .categoryId(product.getCategory().getId())
                 .categoryName(product.getCategory().getName())
                 .stock(product.getStock())
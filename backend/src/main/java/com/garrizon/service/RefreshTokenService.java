@@ -0,0 +1,153 @@
+package com.garrizon.service;
+
+import com.garrizon.exception.BadRequestException;
+import com.garrizon.model.RefreshTokenFamily;
+import com.garrizon.model.User;
+import com.garrizon.repository.RefreshTokenFamilyRepository;
+import com.garrizon.security.JwtTokenProvider;
+import com.garrizon.security.RevocationFilter;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+/**
+ * Issues and rotates refresh tokens. Every exchange replaces the token with a
+ * new one in the same family; replaying a superseded token revokes the family.
+ * <p>
+ * Revocations are mirrored in an in-memory {@link RevocationFilter}, so
+ * checking a valid token needs no database read. The conditional update in
+ * {@link #rotate} remains the source of truth, which also catches reuse that
+ * was detected on another instance.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenService {
+
+    private static final String FAMILY_PREFIX = "family:";
+    private static final String TOKEN_PREFIX = "token:";
+
+    private final RefreshTokenFamilyRepository familyRepository;
+    private final JwtTokenProvider jwtTokenProvider;
+
+    @Value("${security.refresh-tokens.revocation-filter.expected-entries:100000}")
+    private int expectedEntries;
+
+    @Value("${security.refresh-tokens.revocation-filter.false-positive-rate:0.001}")
+    private double falsePositiveRate;
+
+    private volatile RevocationFilter revocations;
+
+    @PostConstruct
+    void loadRevocations() {
+        RevocationFilter filter = new RevocationFilter(expectedEntries, falsePositiveRate);
+        for (RefreshTokenFamily family : familyRepository.findActiveRevoked(LocalDateTime.now())) {
+            filter.add(FAMILY_PREFIX + family.getId(), toMillis(family.getExpiresAt()));
+        }
+        revocations = filter;
+        log.info("Loaded {} revoked refresh token families", filter.size());
+    }
+
+    public String issue(User user) {
+        String tokenId = UUID.randomUUID().toString();
+        RefreshTokenFamily family = RefreshTokenFamily.builder()
+                .id(UUID.randomUUID().toString())
+                .userId(user.getId())
+                .currentTokenId(tokenId)
+                .expiresAt(LocalDateTime.now().plusNanos(jwtTokenProvider.getRefreshTokenExpiration() * 1_000_000))
+                .build();
+        familyRepository.save(family);
+        return jwtTokenProvider.generateRefreshToken(user, family.getId(), tokenId);
+    }
+
+    /**
+     * Checks signature, expiry and revocation of a refresh token in memory.
+     */
+    public Claims verify(String refreshToken) {
+        Claims claims = parse(refreshToken);
+        String familyId = claims.get(JwtTokenProvider.FAMILY_CLAIM, String.class);
+
+        if (revocations.isRevoked(FAMILY_PREFIX + familyId)) {
+            throw new BadRequestException("Invalid refresh token");
+        }
+        if (revocations.isRevoked(TOKEN_PREFIX + claims.getId())) {
+            log.warn("Refresh token reuse detected for family {}", familyId);
+            revokeFamily(familyId);
+            throw new BadRequestException("Invalid refresh token");
+        }
+        return claims;
+    }
+
+    /**
+     * Exchanges a verified token for the next one in its family.
+     */
+    public String rotate(Claims claims, User user) {
+        String familyId = claims.get(JwtTokenProvider.FAMILY_CLAIM, String.class);
+        String nextTokenId = UUID.randomUUID().toString();
+        LocalDateTime expiresAt = LocalDateTime.now().plusNanos(jwtTokenProvider.getRefreshTokenExpiration() * 1_000_000);
+
+        if (familyRepository.rotate(familyId, claims.getId(), nextTokenId, expiresAt) == 0) {
+            log.warn("Refresh token reuse detected for family {}", familyId);
+            revokeFamily(familyId);
+            throw new BadRequestException("Invalid refresh token");
+        }
+
+        markRevoked(TOKEN_PREFIX + claims.getId(), claims.getExpiration().getTime());
+        return jwtTokenProvider.generateRefreshToken(user, familyId, nextTokenId);
+    }
+
+    public void revoke(String refreshToken) {
+        revokeFamily(parse(refreshToken).get(JwtTokenProvider.FAMILY_CLAIM, String.class));
+    }
+
+    /**
+     * Drops expired families and rebuilds the filter without entries whose
+     * tokens can no longer be presented.
+     */
+    @Scheduled(fixedDelayString = "${security.refresh-tokens.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int deleted = familyRepository.deleteExpired(LocalDateTime.now());
+        synchronized (this) {
+            revocations = revocations.withoutExpired(System.currentTimeMillis());
+        }
+        if (deleted > 0) {
+            log.info("Purged {} expired refresh token families", deleted);
+        }
+    }
+
+    private void revokeFamily(String familyId) {
+        familyRepository.revoke(familyId);
+        markRevoked(FAMILY_PREFIX + familyId, System.currentTimeMillis() + jwtTokenProvider.getRefreshTokenExpiration());
+    }
+
+    // Writers synchronize so an entry is not lost while purgeExpired swaps the filter
+    private synchronized void markRevoked(String id, long expiresAtMillis) {
+        revocations.add(id, expiresAtMillis);
+    }
+
+    private Claims parse(String refreshToken) {
+        Claims claims;
+        try {
+            claims = jwtTokenProvider.extractAllClaims(refreshToken);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new BadRequestException("Invalid refresh token");
+        }
+        if (claims.getId() == null || claims.get(JwtTokenProvider.FAMILY_CLAIM) == null) {
+            throw new BadRequestException("Invalid refresh token");
+        }
+        return claims;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
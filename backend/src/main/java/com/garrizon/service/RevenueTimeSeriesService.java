@@ -0,0 +1,248 @@
+package com.garrizon.service;
+
+
+import com.garrizon.cluster.LeaseService;
+import com.garrizon.dto.RevenuePointDTO;
+import com.garrizon.dto.RevenueSeriesDTO;
+import com.garrizon.event.PaymentCompletedEvent;
+import com.garrizon.exception.BadRequestException;
+import com.garrizon.model.Money;
+import com.garrizon.model.RevenueGranularity;
+import com.garrizon.model.RevenueRollup;
+import com.garrizon.repository.RevenueRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hourly and daily revenue buckets fed by completed payments. Increments are
+ * buffered in memory and added to {@code revenue_rollups} in one batch per
+ * flush, so concurrent instances never overwrite each other.
+ * <p>
+ * Queries read at most one row per stored bucket in the range and are
+ * downsampled to a bounded number of points, so neither response size nor
+ * latency depends on how many orders there are.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RevenueTimeSeriesService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO revenue_rollups (granularity, bucket_start, revenue_minor, order_count) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE revenue_minor = revenue_minor + VALUES(revenue_minor), " +
+            "order_count = order_count + VALUES(order_count)";
+
+    private static final String OVERWRITE_SQL =
+            "INSERT INTO revenue_rollups (granularity, bucket_start, revenue_minor, order_count) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE revenue_minor = VALUES(revenue_minor), order_count = VALUES(order_count)";
+
+    private static final String BACKFILL_SQL =
+            "SELECT DATE_FORMAT(updated_at, '%Y-%m-%d %H:00:00') AS bucket, SUM(total_amount) AS revenue, " +
+            "COUNT(*) AS order_count FROM orders WHERE payment_status = 'COMPLETED' GROUP BY bucket";
+
+    private static final RevenueGranularity[] STORED = {RevenueGranularity.HOUR, RevenueGranularity.DAY};
+
+    private final RevenueRollupRepository revenueRollupRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final LeaseService leaseService;
+
+    @Value("${metrics.revenue.max-points:400}")
+    private int maxPoints;
+
+    @Value("${metrics.revenue.hourly-retention-days:90}")
+    private int hourlyRetentionDays;
+
+    private final Map<BucketKey, BucketDelta> pending = new ConcurrentHashMap<>();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentCompleted(PaymentCompletedEvent event) {
+        record(event.getCompletedAt(), event.getAmount().getMinorUnits(), 1);
+    }
+
+    @Transactional(readOnly = true)
+    public RevenueSeriesDTO getSeries(LocalDateTime from, LocalDateTime to, RevenueGranularity granularity) {
+        if (!from.isBefore(to)) {
+            throw new BadRequestException("'from' must be before 'to'");
+        }
+
+        RevenueGranularity effective = granularity;
+        while (effective.countBuckets(from, to) > maxPoints) {
+            effective = effective.coarser();
+            if (effective == null) {
+                throw new BadRequestException("Requested range is too large");
+            }
+        }
+
+        Map<LocalDateTime, long[]> buckets = new LinkedHashMap<>();
+        for (LocalDateTime start = effective.truncate(from); start.isBefore(to); start = effective.next(start)) {
+            buckets.put(start, new long[2]);
+        }
+
+        RevenueGranularity source = effective.storedSource();
+        List<RevenueRollup> rows = revenueRollupRepository
+                .findByGranularityAndBucketStartGreaterThanEqualAndBucketStartLessThanOrderByBucketStart(
+                        source, source.truncate(from), to);
+        for (RevenueRollup row : rows) {
+            long[] totals = buckets.get(effective.truncate(row.getBucketStart()));
+            if (totals != null) {
+                totals[0] += row.getRevenueMinor();
+                totals[1] += row.getOrderCount();
+            }
+        }
+
+        List<RevenuePointDTO> points = new ArrayList<>(buckets.size());
+        long totalRevenue = 0;
+        long totalOrders = 0;
+        for (Map.Entry<LocalDateTime, long[]> bucket : buckets.entrySet()) {
+            long[] totals = bucket.getValue();
+            totalRevenue += totals[0];
+            totalOrders += totals[1];
+            points.add(RevenuePointDTO.builder()
+                    .bucketStart(bucket.getKey())
+                    .revenue(Money.ofMinor(totals[0]))
+                    .orderCount(totals[1])
+                    .build());
+        }
+
+        return RevenueSeriesDTO.builder()
+                .from(from)
+                .to(to)
+                .granularity(effective)
+                .totalRevenue(Money.ofMinor(totalRevenue))
+                .totalOrders(totalOrders)
+                .points(points)
+                .build();
+    }
+
+    @Scheduled(fixedDelayString = "${metrics.revenue.flush-interval-ms:5000}")
+    public void flush() {
+        Map<BucketKey, long[]> drained = new LinkedHashMap<>();
+        pending.forEach((key, delta) -> {
+            long revenue = delta.revenue.sumThenReset();
+            long orders = delta.orders.sumThenReset();
+            if (revenue != 0 || orders != 0) {
+                drained.put(key, new long[]{revenue, orders});
+            }
+        });
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(UPSERT_SQL, drained);
+        } catch (RuntimeException e) {
+            drained.forEach((key, totals) -> add(key, totals[0], totals[1]));
+            log.warn("Failed to flush {} revenue buckets, will retry: {}", drained.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Fills the buckets from existing orders the first time the table is
+     * empty, using the last update of a completed order as its payment time.
+     * Values are written absolutely, so instances starting together agree.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (revenueRollupRepository.count() > 0) {
+            return;
+        }
+        Map<BucketKey, long[]> buckets = new LinkedHashMap<>();
+        jdbcTemplate.query(BACKFILL_SQL, rs -> {
+            LocalDateTime hour = LocalDateTime.parse(rs.getString("bucket").replace(' ', 'T'));
+            long revenue = Money.of(rs.getBigDecimal("revenue")).getMinorUnits();
+            long orders = rs.getLong("order_count");
+            for (RevenueGranularity granularity : STORED) {
+                long[] totals = buckets.computeIfAbsent(
+                        new BucketKey(granularity, granularity.truncate(hour)), k -> new long[2]);
+                totals[0] += revenue;
+                totals[1] += orders;
+            }
+        });
+        if (!buckets.isEmpty()) {
+            write(OVERWRITE_SQL, buckets);
+            log.info("Backfilled {} revenue buckets from completed orders", buckets.size());
+        }
+    }
+
+    @Scheduled(cron = "${metrics.revenue.purge-cron:0 45 3 * * *}")
+    public void scheduledPurge() {
+        leaseService.runExclusively("revenue-purge", this::purgeOldHourlyBuckets);
+    }
+
+    public void purgeOldHourlyBuckets() {
+        int deleted = revenueRollupRepository.deleteOlderThan(
+                RevenueGranularity.HOUR, LocalDateTime.now().minusDays(hourlyRetentionDays));
+        if (deleted > 0) {
+            log.info("Purged {} hourly revenue buckets", deleted);
+        }
+    }
+
+    private void record(LocalDateTime time, long revenueMinor, long orders) {
+        for (RevenueGranularity granularity : STORED) {
+            add(new BucketKey(granularity, granularity.truncate(time)), revenueMinor, orders);
+        }
+    }
+
+    private void write(String sql, Map<BucketKey, long[]> buckets) {
+        List<Object[]> rows = new ArrayList<>(buckets.size());
+        buckets.forEach((key, totals) -> rows.add(new Object[]{
+                key.granularity.name(), Timestamp.valueOf(key.bucketStart), totals[0], totals[1]}));
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    private void add(BucketKey key, long revenueMinor, long orders) {
+        BucketDelta delta = pending.computeIfAbsent(key, k -> new BucketDelta());
+        delta.revenue.add(revenueMinor);
+        delta.orders.add(orders);
+    }
+
+    private static final class BucketKey {
+        private final RevenueGranularity granularity;
+        private final LocalDateTime bucketStart;
+
+        private BucketKey(RevenueGranularity granularity, LocalDateTime bucketStart) {
+            this.granularity = granularity;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return granularity == other.granularity && bucketStart.equals(other.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(granularity, bucketStart);
+        }
+    }
+
+    private static final class BucketDelta {
+        private final LongAdder revenue = new LongAdder();
+        private final LongAdder orders = new LongAdder();
+    }
+}
@@ -1,6 +1,10 @@
 package com.garrizon.service;
 
+import com.garrizon.dto.PaymentVerification;
 import com.garrizon.exception.BadRequestException;
+import com.garrizon.model.Money;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.resilience.ProviderGuardRegistry;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
@@ -8,40 +12,92 @@ import com.stripe.param.PaymentIntentCreateParams;
 import javax.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
 public class StripeService {
 
+    private final ThreadPoolTaskExecutor paymentExecutor;
+    private final ProviderGuardRegistry providerGuardRegistry;
+
     @Value("${stripe.secret-key}")
     private String secretKey;
 
+    @Value("${payments.http.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${payments.http.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
     @PostConstruct
     public void init() {
         Stripe.apiKey = secretKey;
+        Stripe.setConnectTimeout(connectTimeoutMs);
+        Stripe.setReadTimeout(readTimeoutMs);
     }
 
-    public PaymentIntent createPaymentIntent(BigDecimal amount, String currency) throws StripeException {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+    public CompletableFuture<PaymentIntent> createPaymentIntent(Long orderId, Money amount) {
+        if (!amount.isPositive()) {
             throw new BadRequestException("Amount must be greater than zero");
         }
 
         PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                .setAmount(amount.multiply(BigDecimal.valueOf(100)).longValue()) // Convert to cents
-                .setCurrency(currency)
+                .setAmount(amount.getMinorUnits()) // Already in cents
+                .setCurrency(amount.getCurrency().getCurrencyCode().toLowerCase())
+                .putMetadata("orderId", String.valueOf(orderId)) // Lets webhooks find the order
                 .setAutomaticPaymentMethods(
                         PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
                                 .setEnabled(true)
                                 .build())
                 .build();
 
-        return PaymentIntent.create(params);
+        return supply(() -> PaymentIntent.create(params));
+    }
+
+    public CompletableFuture<PaymentIntent> retrievePaymentIntent(String paymentIntentId) {
+        return supply(() -> PaymentIntent.retrieve(paymentIntentId));
+    }
+
+    /**
+     * Only a canceled intent is a final failure; after a failed attempt the
+     * customer can still pay on the same intent.
+     */
+    public CompletableFuture<PaymentVerification> verifyPaymentIntent(String paymentIntentId) {
+        return retrievePaymentIntent(paymentIntentId).thenApply(intent -> {
+            PaymentStatus status;
+            switch (intent.getStatus()) {
+                case "succeeded":
+                    status = PaymentStatus.COMPLETED;
+                    break;
+                case "canceled":
+                    status = PaymentStatus.FAILED;
+                    break;
+                default:
+                    status = null;
+            }
+            String currency = intent.getCurrency() != null ? intent.getCurrency().toUpperCase() : null;
+            return new PaymentVerification(status, intent.getAmountReceived(), currency);
+        });
+    }
+
+    private <T> CompletableFuture<T> supply(StripeCall<T> call) {
+        return providerGuardRegistry.get(ProviderGuardRegistry.STRIPE).executeAsync(() ->
+                CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return call.execute();
+                    } catch (StripeException e) {
+                        throw new CompletionException(e);
+                    }
+                }, paymentExecutor));
     }
 
-    public PaymentIntent retrievePaymentIntent(String paymentIntentId) throws StripeException {
-        return PaymentIntent.retrieve(paymentIntentId);
+    @FunctionalInterface
+    private interface StripeCall<T> {
+        T execute() throws StripeException;
     }
 }
@@ -0,0 +1,135 @@
+package com.garrizon.service;
+
+import com.garrizon.analytics.TopSellersTracker;
+import com.garrizon.dto.ProductSalesView;
+import com.garrizon.dto.TopSellerDTO;
+import com.garrizon.event.PaymentCompletedEvent;
+import com.garrizon.model.Product;
+import com.garrizon.model.TopSellerWindow;
+import com.garrizon.repository.OrderItemRepository;
+import com.garrizon.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Best sellers per window from an in-memory {@link TopSellersTracker} fed by
+ * completed payments. Memory and query cost depend only on the sketch size
+ * and ring length, not on order volume.
+ * <p>
+ * Each instance only sees the payments it completes, so the tracker is
+ * rebuilt from the last week of orders at startup and on a schedule, which
+ * also brings instances back in line with each other.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TopSellersService {
+
+    private static final int MAX_LIMIT = 50;
+
+    private final OrderItemRepository orderItemRepository;
+    private final ProductRepository productRepository;
+
+    @Value("${top-sellers.sketch-capacity:200}")
+    private int sketchCapacity;
+
+    @Value("${top-sellers.cache-ttl-ms:10000}")
+    private long cacheTtlMs;
+
+    private volatile TopSellersTracker tracker;
+
+    private final Map<String, CachedResult> cache = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        tracker = newTracker();
+    }
+
+    public List<TopSellerDTO> getTopSellers(TopSellerWindow window, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String key = window + ":" + size;
+        long now = System.currentTimeMillis();
+
+        CachedResult cached = cache.get(key);
+        if (cached != null && cached.expiresAt > now) {
+            return cached.sellers;
+        }
+
+        List<TopSellersTracker.Estimate> estimates = tracker.top(window.getHours(), size, LocalDateTime.now());
+        Map<Long, Product> products = productRepository.findAllById(estimates.stream()
+                        .map(TopSellersTracker.Estimate::getProductId)
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        List<TopSellerDTO> sellers = new ArrayList<>(estimates.size());
+        for (TopSellersTracker.Estimate estimate : estimates) {
+            Product product = products.get(estimate.getProductId());
+            if (product == null || !Boolean.TRUE.equals(product.getIsActive())) {
+                continue;
+            }
+            sellers.add(TopSellerDTO.builder()
+                    .productId(product.getId())
+                    .name(product.getName())
+                    .slug(product.getSlug())
+                    .imageUrl(product.getImageUrl())
+                    .price(product.getPrice())
+                    .unitsSold(estimate.getUnitsSold())
+                    .errorBound(estimate.getErrorBound())
+                    .build());
+        }
+
+        cache.put(key, new CachedResult(sellers, now + cacheTtlMs));
+        return sellers;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaymentCompleted(PaymentCompletedEvent event) {
+        TopSellersTracker current = tracker;
+        event.getProductQuantities().forEach((productId, quantity) ->
+                current.record(productId, quantity, event.getCompletedAt()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${top-sellers.rebuild-cron:0 5 * * * *}")
+    public void rebuild() {
+        TopSellersTracker rebuilt = newTracker();
+        LocalDateTime since = LocalDateTime.now().minusHours(rebuilt.getHours());
+        List<ProductSalesView> sales = orderItemRepository.findHourlySalesSince(since);
+        for (ProductSalesView sale : sales) {
+            rebuilt.record(sale.getProductId(), sale.getQuantity(),
+                    LocalDateTime.parse(sale.getHour().replace(' ', 'T')));
+        }
+        tracker = rebuilt;
+        log.debug("Rebuilt top-sellers tracker from {} hourly sales rows", sales.size());
+    }
+
+    private TopSellersTracker newTracker() {
+        return new TopSellersTracker(TopSellerWindow.WEEK.getHours(), sketchCapacity);
+    }
+
+    private static final class CachedResult {
+        private final List<TopSellerDTO> sellers;
+        private final long expiresAt;
+
+        private CachedResult(List<TopSellerDTO> sellers, long expiresAt) {
+            this.sellers = sellers;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.garrizon.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.garrizon.exception.BadRequestException;
+import com.garrizon.model.Money;
+import com.garrizon.model.Order;
+import com.garrizon.model.PaymentProvider;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.model.WebhookEvent;
+import com.garrizon.model.WebhookEventStatus;
+import com.garrizon.repository.OrderRepository;
+import com.garrizon.repository.WebhookEventRepository;
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.net.Webhook;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Receives signed payment webhooks into the webhook_inbox table and later
+ * applies them to orders. Ingestion only verifies and stores the event so the
+ * provider gets its acknowledgement right away; {@link #process(Long)} runs on
+ * the inbox worker pool.
+ * <p>
+ * A signed event proves the provider sent it, not that it paid for the order
+ * its metadata names: a Paystack inline charge can carry any metadata. The
+ * order is therefore found by the payment reference stored when the payment
+ * was started, and a success only settles it when the provider's amount and
+ * currency match the order total. Anything else is marked
+ * {@link WebhookEventStatus#REJECTED} for review.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookService {
+
+    private static final long STRIPE_SIGNATURE_TOLERANCE_SECONDS = 300;
+
+    private final WebhookEventRepository webhookEventRepository;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${stripe.webhook-secret:}")
+    private String stripeWebhookSecret;
+
+    @Value("${paystack.secret-key:}")
+    private String paystackSecretKey;
+
+    @Value("${webhooks.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${webhooks.initial-backoff-ms:5000}")
+    private long initialBackoffMs;
+
+    @Value("${webhooks.max-backoff-ms:600000}")
+    private long maxBackoffMs;
+
+    public void ingestStripe(String payload, String signatureHeader) {
+        if (stripeWebhookSecret == null || stripeWebhookSecret.isEmpty()) {
+            throw new BadRequestException("Stripe webhooks are not configured");
+        }
+        try {
+            Webhook.Signature.verifyHeader(payload, signatureHeader, stripeWebhookSecret,
+                    STRIPE_SIGNATURE_TOLERANCE_SECONDS);
+        } catch (SignatureVerificationException e) {
+            throw new BadRequestException("Invalid Stripe signature");
+        }
+
+        JsonNode event = parse(payload);
+        JsonNode object = event.path("data").path("object");
+        append(WebhookEvent.builder()
+                .provider(PaymentProvider.STRIPE)
+                .eventId(event.path("id").asText())
+                .eventType(event.path("type").asText())
+                .reference(textOrNull(object.path("id")))
+                .orderId(longOrNull(object.path("metadata").path("orderId")))
+                .amount(longOrNull(object.has("amount_received") ? object.path("amount_received") : object.path("amount")))
+                .currency(currencyOrNull(object.path("currency")))
+                .payload(payload)
+                .build());
+    }
+
+    public void ingestPaystack(String payload, String signatureHeader) {
+        if (paystackSecretKey == null || paystackSecretKey.isEmpty()) {
+            throw new BadRequestException("Paystack webhooks are not configured");
+        }
+        if (signatureHeader == null || !MessageDigest.isEqual(
+                hmacSha512Hex(paystackSecretKey, payload).getBytes(StandardCharsets.US_ASCII),
+                signatureHeader.toLowerCase().getBytes(StandardCharsets.US_ASCII))) {
+            throw new BadRequestException("Invalid Paystack signature");
+        }
+
+        JsonNode event = parse(payload);
+        JsonNode data = event.path("data");
+        String eventType = event.path("event").asText();
+        append(WebhookEvent.builder()
+                .provider(PaymentProvider.PAYSTACK)
+                // Paystack events carry no ID of their own; the transaction ID is stable across redeliveries
+                .eventId(eventType + ":" + data.path("id").asText())
+                .eventType(eventType)
+                .reference(textOrNull(data.path("reference")))
+                .orderId(longOrNull(data.path("metadata").path("orderId")))
+                .amount(longOrNull(data.path("amount")))
+                .currency(currencyOrNull(data.path("currency")))
+                .payload(payload)
+                .build());
+    }
+
+    /**
+     * Applies a claimed inbox event. Failures are put back for retry with
+     * exponential backoff until {@code webhooks.max-attempts} is reached.
+     */
+    public void process(Long eventId) {
+        WebhookEvent event = webhookEventRepository.findById(eventId).orElse(null);
+        if (event == null) {
+            return;
+        }
+
+        try {
+            WebhookEventStatus result = apply(event);
+            webhookEventRepository.updateStatus(eventId, result, null, LocalDateTime.now());
+        } catch (RejectedEventException e) {
+            log.warn("Rejected {} webhook {}: {}", event.getProvider(), event.getEventId(), e.getMessage());
+            webhookEventRepository.updateStatus(eventId, WebhookEventStatus.REJECTED, e.getMessage(), LocalDateTime.now());
+        } catch (Exception e) {
+            log.warn("Failed to apply {} webhook {}: {}", event.getProvider(), event.getEventId(), e.getMessage());
+            if (event.getAttempts() >= maxAttempts) {
+                webhookEventRepository.updateStatus(eventId, WebhookEventStatus.FAILED, truncate(e.getMessage()), null);
+            } else {
+                webhookEventRepository.retry(eventId, truncate(e.getMessage()),
+                        LocalDateTime.now().plus(backoff(event.getAttempts())));
+            }
+        }
+    }
+
+    /**
+     * Doubles from {@code initialBackoffMs} per attempt up to
+     * {@code maxBackoffMs}, with up to 20% jitter.
+     */
+    private Duration backoff(int attempts) {
+        long delay = initialBackoffMs << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > maxBackoffMs) {
+            delay = maxBackoffMs;
+        }
+        return Duration.ofMillis(delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1));
+    }
+
+    private WebhookEventStatus apply(WebhookEvent event) {
+        PaymentStatus paymentStatus = paymentStatusFor(event);
+        if (paymentStatus == null) {
+            return WebhookEventStatus.IGNORED;
+        }
+
+        if (event.getReference() == null) {
+            throw new RejectedEventException("No payment reference");
+        }
+        Order order = orderRepository.findFirstByPaymentIntentId(event.getReference())
+                .orElseThrow(() -> new RejectedEventException("No order with payment reference " + event.getReference()));
+        if (event.getOrderId() != null && !event.getOrderId().equals(order.getId())) {
+            throw new RejectedEventException("Metadata names order " + event.getOrderId()
+                    + " but the reference belongs to order " + order.getId());
+        }
+        if (paymentStatus == PaymentStatus.COMPLETED) {
+            checkAmount(event, order.getTotalAmount());
+        }
+
+        if (orderService.updatePaymentStatus(order.getId(), paymentStatus, event.getReference())) {
+            log.info("Order {} payment {} via {} webhook", order.getId(), paymentStatus, event.getProvider());
+        }
+        return WebhookEventStatus.PROCESSED;
+    }
+
+    private static void checkAmount(WebhookEvent event, Money total) {
+        String currency = total.getCurrency().getCurrencyCode();
+        if (event.getAmount() == null || event.getAmount() != total.getMinorUnits()
+                || !currency.equals(event.getCurrency())) {
+            throw new RejectedEventException("Paid " + event.getAmount() + " " + event.getCurrency()
+                    + " for an order of " + total.getMinorUnits() + " " + currency);
+        }
+    }
+
+    private PaymentStatus paymentStatusFor(WebhookEvent event) {
+        switch (event.getEventType()) {
+            case "payment_intent.succeeded":
+            case "charge.success":
+                return PaymentStatus.COMPLETED;
+            // A failed attempt is not final: the customer can retry on the same intent, and
+            // only PENDING orders take a later success. Only a canceled intent is terminal.
+            case "payment_intent.canceled":
+                return PaymentStatus.FAILED;
+            default:
+                return null;
+        }
+    }
+
+    private void append(WebhookEvent event) {
+        try {
+            webhookEventRepository.save(event);
+        } catch (DataIntegrityViolationException e) {
+            // Provider redelivered an event we already hold
+            log.debug("Duplicate {} webhook {}", event.getProvider(), event.getEventId());
+        }
+    }
+
+    private JsonNode parse(String payload) {
+        try {
+            return objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Malformed webhook payload");
+        }
+    }
+
+    private static String hmacSha512Hex(String key, String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA512");
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA512 unavailable", e);
+        }
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node.isMissingNode() || node.isNull() ? null : node.asText();
+    }
+
+    private static String currencyOrNull(JsonNode node) {
+        String text = textOrNull(node);
+        return text == null ? null : text.toUpperCase(Locale.ROOT);
+    }
+
+    private static Long longOrNull(JsonNode node) {
+        String text = textOrNull(node);
+        if (text == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    // An event that must not be applied; kept for review rather than retried
+    private static final class RejectedEventException extends RuntimeException {
+        private RejectedEventException(String message) {
+            super(truncate(message));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.garrizon.storage;
+
+/**
+ * Fixed sizes generated for every product image, bounded by the longest
+ * edge. Listed largest first, which is the order they are derived in.
+ */
+public enum ImageVariant {
+    DETAIL("detail", 1200),
+    CARD("card", 480),
+    THUMBNAIL("thumb", 160);
+
+    private final String key;
+    private final int maxEdge;
+
+    ImageVariant(String key, int maxEdge) {
+        this.key = key;
+        this.maxEdge = maxEdge;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+}
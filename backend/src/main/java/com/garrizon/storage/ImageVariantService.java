@@ -0,0 +1,222 @@
+package com.garrizon.storage;
+
+import com.garrizon.model.Product;
+import com.garrizon.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Resized variants of product images, so listings don't download originals.
+ * <p>
+ * Local images are resized in the background on {@code imageExecutor}. The
+ * original is decoded with source subsampling, so a large photo decodes at
+ * about twice the detail size rather than at full resolution. Each smaller
+ * variant is then scaled from the one above it. Heap per job stays at a few
+ * megabytes whatever the upload size, and the executor bounds the number of
+ * jobs. Once the variants are written the product is flagged, and its DTO
+ * starts listing them.
+ * <p>
+ * Originals in a format the JVM cannot decode (WebP and AVIF, out of the
+ * box) are skipped rather than queued: they would fail every time. Their
+ * products keep no variants, and clients use {@code imageUrl}.
+ * <p>
+ * Cloudinary images need no work: the variants are delivery URLs with a
+ * resize transformation and {@code f_auto}, which serves WebP or AVIF to
+ * browsers that accept them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageVariantService {
+
+    private static final String CLOUDINARY_UPLOAD = "/image/upload/";
+    private static final String VARIANT_EXTENSION = "jpg";
+
+    private final LocalImageStore imageStore;
+    private final ProductRepository productRepository;
+    private final ThreadPoolTaskExecutor imageExecutor;
+
+    @Value("${storage.variants.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    /**
+     * Queues variant generation for a product's current image. A no-op for
+     * images that are not in the local store or cannot be decoded.
+     */
+    public void generate(Long productId, String imageUrl) {
+        imageStore.keyForUrl(imageUrl).filter(ImageVariantService::isDecodable).ifPresent(key -> {
+            try {
+                imageExecutor.execute(() -> generateNow(productId, imageUrl, key));
+            } catch (TaskRejectedException e) {
+                // Picked up again by the startup sweep
+                log.warn("Image queue full; variants for product {} deferred", productId);
+            }
+        });
+    }
+
+    /**
+     * Variant URLs for a product, or null when there are none yet and
+     * clients should fall back to {@code imageUrl}.
+     */
+    public Map<String, String> variantsFor(Product product) {
+        String imageUrl = product.getImageUrl();
+        if (imageUrl == null) {
+            return null;
+        }
+
+        int upload = imageUrl.indexOf(CLOUDINARY_UPLOAD);
+        if (upload >= 0) {
+            int insertAt = upload + CLOUDINARY_UPLOAD.length();
+            Map<String, String> variants = new LinkedHashMap<>();
+            for (ImageVariant variant : ImageVariant.values()) {
+                variants.put(variant.getKey(), imageUrl.substring(0, insertAt)
+                        + "c_limit,w_" + variant.getMaxEdge() + ",h_" + variant.getMaxEdge() + ",f_auto,q_auto/"
+                        + imageUrl.substring(insertAt));
+            }
+            return variants;
+        }
+
+        if (!Boolean.TRUE.equals(product.getImageVariantsReady())) {
+            return null;
+        }
+        return imageStore.keyForUrl(imageUrl).map(key -> {
+            Map<String, String> variants = new LinkedHashMap<>();
+            for (ImageVariant variant : ImageVariant.values()) {
+                variants.put(variant.getKey(), imageStore.urlFor(LocalImageStore.variantKey(key, variant.getKey(), VARIANT_EXTENSION)));
+            }
+            return variants;
+        }).orElse(null);
+    }
+
+    // Covers jobs lost to a restart or a full queue
+    @EventListener(ApplicationReadyEvent.class)
+    public void generateMissing() {
+        List<Product> pending = productRepository.findByImageVariantsReadyFalseAndImageUrlStartingWith(imageStore.urlFor(""))
+                .stream()
+                .filter(product -> imageStore.keyForUrl(product.getImageUrl()).filter(ImageVariantService::isDecodable).isPresent())
+                .collect(Collectors.toList());
+        pending.forEach(product -> generate(product.getId(), product.getImageUrl()));
+        if (!pending.isEmpty()) {
+            log.info("Queued image variants for {} products", pending.size());
+        }
+    }
+
+    private void generateNow(Long productId, String imageUrl, String key) {
+        try {
+            Path original = imageStore.resolve(key)
+                    .orElseThrow(() -> new IOException("Original image " + key + " is missing"));
+
+            BufferedImage source = decodeSubsampled(original, ImageVariant.DETAIL.getMaxEdge());
+            for (ImageVariant variant : ImageVariant.values()) {
+                source = scaleToFit(source, variant.getMaxEdge());
+                BufferedImage image = source;
+                imageStore.write(LocalImageStore.variantKey(key, variant.getKey(), VARIANT_EXTENSION),
+                        out -> writeJpeg(image, out));
+            }
+
+            // Only flag the product if its image wasn't replaced in the meantime
+            productRepository.markImageVariantsReady(productId, imageUrl);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to generate image variants for product {}: {}", productId, e.getMessage());
+        }
+    }
+
+    static boolean isDecodable(String key) {
+        return ImageIO.getImageReadersByMIMEType(LocalImageStore.contentTypeOf(key)).hasNext();
+    }
+
+    /**
+     * Decodes the first frame, skipping rows and columns at the source so the
+     * decoded long edge lands between {@code minEdge} and twice that.
+     */
+    private static BufferedImage decodeSubsampled(Path file, int minEdge) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int longEdge = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longEdge / minEdge);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales down to fit {@code maxEdge}, halving in steps so bilinear
+     * filtering does not alias. Always returns an opaque RGB image, with any
+     * transparency flattened onto white for JPEG.
+     */
+    private static BufferedImage scaleToFit(BufferedImage image, int maxEdge) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
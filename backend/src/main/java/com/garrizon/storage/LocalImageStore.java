@@ -0,0 +1,215 @@
+package com.garrizon.storage;
+
+import com.garrizon.exception.BadRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed image storage on the local disk. A file is named after
+ * the SHA-256 of its bytes and kept under two levels of directories taken
+ * from the hash ({@code ab/cd/abcd...ef.jpg}), so identical uploads are
+ * stored once and a stored file never changes, which lets it be cached
+ * forever.
+ * <p>
+ * Keys are the path relative to the store root; {@link #resolve} only
+ * accepts keys of that exact shape, so request paths cannot escape it.
+ */
+@Component
+public class LocalImageStore {
+
+    // Originals are <hash>.<ext>; generated variants of an original are <hash>-<variant>.<ext>
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}(-[a-z]+)?\\.[a-z0-9]+");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Map<String, String> EXTENSIONS_BY_TYPE = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "image/avif", "avif");
+
+    private static final Map<String, String> TYPES_BY_EXTENSION = Map.of(
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "webp", "image/webp",
+            "avif", "image/avif");
+
+    private final Path root;
+    private final Path tmp;
+    private final String publicBaseUrl;
+
+    public LocalImageStore(@Value("${storage.local.directory:uploads}") String directory,
+                           @Value("${storage.local.public-base-url:http://localhost:8080/uploads/}") String publicBaseUrl)
+            throws IOException {
+        this.root = Paths.get(directory).toAbsolutePath().normalize();
+        // Beside the root rather than in it, so partial uploads are never reachable under /uploads/
+        this.tmp = root.resolveSibling(root.getFileName() + "-tmp");
+        this.publicBaseUrl = publicBaseUrl.endsWith("/") ? publicBaseUrl : publicBaseUrl + "/";
+        Files.createDirectories(tmp);
+    }
+
+    /**
+     * Streams an image into the store, hashing it on the way to a temp file,
+     * then moves it to its content address. An identical image that is
+     * already stored is kept and the new copy discarded.
+     *
+     * @return the key of the stored image
+     */
+    public String store(InputStream in, String contentType, String originalFilename) throws IOException {
+        String extension = extensionFor(contentType, originalFilename);
+
+        Path upload = Files.createTempFile(tmp, "upload-", ".part");
+        try {
+            MessageDigest sha256 = sha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(upload), sha256)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            String hash = toHex(sha256.digest());
+            String key = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "." + extension;
+            Path target = root.resolve(key);
+            if (Files.exists(target)) {
+                return key;
+            }
+
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(upload, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(upload, target);
+            } catch (FileAlreadyExistsException e) {
+                // A concurrent upload of the same bytes got there first
+            }
+            return key;
+        } finally {
+            Files.deleteIfExists(upload);
+        }
+    }
+
+    /**
+     * Writes derived content for an existing key, such as a resized variant,
+     * through a temp file so readers never see a partial file.
+     */
+    public void write(String key, ContentWriter writer) throws IOException {
+        Path target = root.resolve(key);
+        Path part = Files.createTempFile(tmp, "write-", ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(part)) {
+                writer.writeTo(out);
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+    }
+
+    public String urlFor(String key) {
+        return publicBaseUrl + key;
+    }
+
+    /**
+     * The key behind one of this store's public URLs, or empty for any other
+     * URL (Cloudinary, placeholders, legacy uploads).
+     */
+    public Optional<String> keyForUrl(String url) {
+        if (url == null || !url.startsWith(publicBaseUrl)) {
+            return Optional.empty();
+        }
+        String key = url.substring(publicBaseUrl.length());
+        return KEY.matcher(key).matches() ? Optional.of(key) : Optional.empty();
+    }
+
+    /**
+     * The key of a named variant of an original, e.g. {@code ab/cd/<hash>-thumb.jpg}.
+     */
+    public static String variantKey(String key, String variant, String extension) {
+        return key.substring(0, key.lastIndexOf('.')) + "-" + variant + "." + extension;
+    }
+
+    /**
+     * Returns the file for a key, or empty when the key is malformed or
+     * nothing is stored under it.
+     */
+    public Optional<Path> resolve(String key) {
+        if (!KEY.matcher(key).matches()) {
+            return Optional.empty();
+        }
+        Path file = root.resolve(key);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * The file name in a key without its extension: the SHA-256, plus the
+     * variant suffix for variants. Doubles as a strong ETag for the content.
+     */
+    public static String hashOf(String key) {
+        String name = key.substring(key.lastIndexOf('/') + 1);
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    public static String contentTypeOf(String key) {
+        String extension = key.substring(key.lastIndexOf('.') + 1);
+        return TYPES_BY_EXTENSION.getOrDefault(extension, "application/octet-stream");
+    }
+
+    private static String extensionFor(String contentType, String originalFilename) {
+        if (contentType != null) {
+            String extension = EXTENSIONS_BY_TYPE.get(contentType.toLowerCase(Locale.ROOT));
+            if (extension != null) {
+                return extension;
+            }
+        }
+        if (originalFilename != null && originalFilename.lastIndexOf('.') >= 0) {
+            String extension = originalFilename.substring(originalFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            if (TYPES_BY_EXTENSION.containsKey(extension)) {
+                return extension.equals("jpeg") ? "jpg" : extension;
+            }
+        }
+        throw new BadRequestException("Unsupported image type; use JPEG, PNG, GIF, WebP or AVIF");
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
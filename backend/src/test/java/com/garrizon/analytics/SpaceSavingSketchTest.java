@@ -0,0 +1,111 @@
+package com.garrizon.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingSketchTest {
+
+    private static final int KEYS = 5_000;
+    private static final int EVENTS = 200_000;
+    private static final int CAPACITY = 100;
+
+    @Test
+    void staysWithinItsErrorBoundsOnASkewedStream() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(CAPACITY);
+        Map<Long, Long> exact = new HashMap<>();
+        long total = 0;
+
+        Random random = new Random(42);
+        double[] cumulative = zipf(KEYS, 1.1);
+        for (int i = 0; i < EVENTS; i++) {
+            long key = sample(cumulative, random.nextDouble());
+            long weight = 1 + random.nextInt(3);
+            sketch.add(key, weight);
+            exact.merge(key, weight, Long::sum);
+            total += weight;
+        }
+
+        Map<Long, SpaceSavingSketch.Counter> counters = sketch.counters();
+        assertThat(counters).hasSize(CAPACITY);
+
+        // Every tracked count overestimates by at most its error
+        counters.forEach((key, counter) -> {
+            long truth = exact.getOrDefault(key, 0L);
+            assertThat(counter.getCount()).isGreaterThanOrEqualTo(truth);
+            assertThat(counter.getCount() - counter.getError()).isLessThanOrEqualTo(truth);
+        });
+
+        // Every heavy hitter is tracked, and nothing untracked exceeds the bound
+        long heavy = total / CAPACITY;
+        long bound = sketch.untrackedBound();
+        exact.forEach((key, truth) -> {
+            if (truth > heavy) {
+                assertThat(counters).containsKey(key);
+            }
+            if (!counters.containsKey(key)) {
+                assertThat(truth).isLessThanOrEqualTo(bound);
+            }
+        });
+
+        assertThat(topKeys(counters.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getCount())), 10))
+                .isEqualTo(topKeys(exact, 10));
+    }
+
+    @Test
+    void isExactBelowCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        for (long key = 1; key <= 5; key++) {
+            sketch.add(key, key);
+            sketch.add(key, key);
+        }
+
+        assertThat(sketch.untrackedBound()).isZero();
+        sketch.counters().forEach((key, counter) -> {
+            assertThat(counter.getCount()).isEqualTo(2 * key);
+            assertThat(counter.getError()).isZero();
+        });
+    }
+
+    static double[] zipf(int keys, double exponent) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keys; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    static long sample(double[] cumulative, double u) {
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] < u) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low + 1;
+    }
+
+    private static List<Long> topKeys(Map<Long, Long> counts, int limit) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,71 @@
+package com.garrizon.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopSellersTrackerTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 3, 1, 12, 30);
+
+    @Test
+    void estimatesBoundTheExactCountsOverAWindow() {
+        TopSellersTracker tracker = new TopSellersTracker(24, 50);
+        Map<Long, Long> lastSixHours = new HashMap<>();
+
+        Random random = new Random(7);
+        double[] cumulative = SpaceSavingSketchTest.zipf(2_000, 1.2);
+        for (int hour = 23; hour >= 0; hour--) {
+            LocalDateTime time = NOW.minusHours(hour);
+            for (int i = 0; i < 5_000; i++) {
+                long productId = SpaceSavingSketchTest.sample(cumulative, random.nextDouble());
+                long quantity = 1 + random.nextInt(2);
+                tracker.record(productId, quantity, time);
+                if (hour < 6) {
+                    lastSixHours.merge(productId, quantity, Long::sum);
+                }
+            }
+        }
+
+        List<TopSellersTracker.Estimate> top = tracker.top(6, 10, NOW);
+
+        assertThat(top).hasSize(10);
+        for (TopSellersTracker.Estimate estimate : top) {
+            long truth = lastSixHours.getOrDefault(estimate.getProductId(), 0L);
+            assertThat(estimate.getUnitsSold()).isGreaterThanOrEqualTo(truth);
+            assertThat(estimate.getUnitsSold() - estimate.getErrorBound()).isLessThanOrEqualTo(truth);
+        }
+        long bestSeller = lastSixHours.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .orElseThrow()
+                .getKey();
+        assertThat(top.get(0).getProductId()).isEqualTo(bestSeller);
+    }
+
+    @Test
+    void forgetsHoursThatLeaveTheRing() {
+        TopSellersTracker tracker = new TopSellersTracker(3, 10);
+        tracker.record(1, 100, NOW.minusHours(5));
+        tracker.record(2, 1, NOW);
+
+        List<TopSellersTracker.Estimate> top = tracker.top(24, 10, NOW);
+
+        assertThat(top).extracting(TopSellersTracker.Estimate::getProductId).containsExactly(2L);
+        assertThat(top.get(0).getErrorBound()).isZero();
+    }
+
+    @Test
+    void ignoresSalesOlderThanTheSlotsHour() {
+        TopSellersTracker tracker = new TopSellersTracker(2, 10);
+        tracker.record(1, 5, NOW);
+        tracker.record(1, 5, NOW.minusHours(2)); // Same slot, earlier hour
+
+        assertThat(tracker.top(2, 10, NOW).get(0).getUnitsSold()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,112 @@
+package com.garrizon.controller;
+
+import com.garrizon.dto.OrderDTO;
+import com.garrizon.dto.PaymentVerification;
+import com.garrizon.exception.BadRequestException;
+import com.garrizon.model.Money;
+import com.garrizon.model.Order;
+import com.garrizon.model.PaymentProvider;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.repository.OrderRepository;
+import com.garrizon.service.IdempotencyService;
+import com.garrizon.service.OrderService;
+import com.garrizon.service.PaystackService;
+import com.garrizon.service.StripeService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class CheckoutControllerTest {
+
+    private static final UserDetails OWNER = User.withUsername("ada@example.com").password("x").roles("USER").build();
+    private static final String REFERENCE = "GRZ-1-abc";
+
+    private final StripeService stripeService = mock(StripeService.class);
+    private final PaystackService paystackService = mock(PaystackService.class);
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final IdempotencyService idempotencyService = mock(IdempotencyService.class);
+    private final ThreadPoolTaskExecutor paymentExecutor = new ThreadPoolTaskExecutor();
+
+    private CheckoutController controller;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        paymentExecutor.initialize();
+        controller = new CheckoutController(stripeService, paystackService, orderRepository, orderService,
+                idempotencyService, paymentExecutor);
+        ReflectionTestUtils.setField(controller, "verifyFallback", true);
+        when(idempotencyService.executeAsync(anyString(), any(), anyString(), eq(OrderDTO.class), any()))
+                .thenAnswer(invocation -> invocation.getArgument(4, Supplier.class).get());
+        when(orderService.getOrder(1L)).thenReturn(new OrderDTO());
+
+        Order order = Order.builder()
+                .id(1L)
+                .paymentProvider(PaymentProvider.PAYSTACK)
+                .paymentIntentId(REFERENCE)
+                .totalAmount(Money.ofMinor(5000))
+                .build();
+        when(orderRepository.findByIdAndUserEmail(1L, OWNER.getUsername())).thenReturn(Optional.of(order));
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentExecutor.shutdown();
+    }
+
+    @Test
+    void settlesWhenTheProviderTookTheOrderTotal() {
+        when(paystackService.verifyTransaction(REFERENCE))
+                .thenReturn(Mono.just(new PaymentVerification(PaymentStatus.COMPLETED, 5000L, "USD")));
+
+        verifyPayment(OWNER, REFERENCE).join();
+
+        verify(orderService).updatePaymentStatus(1L, PaymentStatus.COMPLETED, REFERENCE);
+    }
+
+    @Test
+    void leavesTheOrderPendingWhenTheAmountDiffers() {
+        when(paystackService.verifyTransaction(REFERENCE))
+                .thenReturn(Mono.just(new PaymentVerification(PaymentStatus.COMPLETED, 100L, "USD")));
+
+        verifyPayment(OWNER, REFERENCE).join();
+
+        verify(orderService, never()).updatePaymentStatus(any(), any(), any());
+    }
+
+    @Test
+    void rejectsOtherUsersOrdersAndForeignReferences() {
+        UserDetails stranger = User.withUsername("eve@example.com").password("x").roles("USER").build();
+
+        assertThatThrownBy(() -> verifyPayment(stranger, REFERENCE)).isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> verifyPayment(OWNER, "someone-elses-paid-reference"))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(paystackService, stripeService);
+    }
+
+    private CompletableFuture<?> verifyPayment(UserDetails user, String reference) {
+        return controller.verifyPayment(user,
+                Map.of("orderId", "1", "provider", "PAYSTACK", "reference", reference), null);
+    }
+}
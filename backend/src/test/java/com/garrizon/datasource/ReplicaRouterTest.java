@@ -0,0 +1,133 @@
+package com.garrizon.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routes through the real DataSource stack against two embedded H2
+ * databases, one standing in for the primary and one for a replica. Each
+ * answers {@code SELECT name FROM whoami} with its own name.
+ */
+class ReplicaRouterTest {
+
+    private HikariDataSource primary;
+    private HikariDataSource replica;
+    private ReplicaRouter router;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate writes;
+    private TransactionTemplate reads;
+
+    @AfterEach
+    void tearDown() {
+        clearThreadPin();
+        ReplicaRouter.allowReplicaReads(false);
+        router.close();
+    }
+
+    @Test
+    void sendsReadOnlyServiceReadsToTheReplica() {
+        start(-1);
+
+        assertThat(serviceRead()).isEqualTo("replica-1");
+        // A bare read-only transaction, such as a repository finder, stays on the primary
+        assertThat(whoami(reads)).isEqualTo("primary");
+        assertThat(whoami(writes)).isEqualTo("primary");
+    }
+
+    @Test
+    void keepsReadsOnThePrimaryRightAfterAWrite() {
+        start(-1);
+
+        writes.executeWithoutResult(status -> jdbcTemplate.update("UPDATE whoami SET name = name"));
+        assertThat(serviceRead()).isEqualTo("primary");
+
+        clearThreadPin();
+        assertThat(serviceRead()).isEqualTo("replica-1");
+    }
+
+    @Test
+    void skipsAReplicaThatHasNotCaughtUp() {
+        start(1_000);
+
+        // Nothing replicates between the two databases, so the replica never sees the heartbeat
+        assertThat(serviceRead()).isEqualTo("primary");
+
+        Map<String, Object> beat = new JdbcTemplate(primary)
+                .queryForMap("SELECT node_id, beat_at FROM replication_heartbeats");
+        new JdbcTemplate(replica).update("INSERT INTO replication_heartbeats (node_id, beat_at) VALUES (?, ?)",
+                beat.get("node_id"), beat.get("beat_at"));
+        router.checkReplicas();
+        assertThat(serviceRead()).isEqualTo("replica-1");
+    }
+
+    @Test
+    void takesAFailedReplicaOutOfRotation() {
+        start(-1);
+        assertThat(serviceRead()).isEqualTo("replica-1");
+
+        replica.close();
+        router.checkReplicas();
+        assertThat(serviceRead()).isEqualTo("primary");
+    }
+
+    private void start(long maxLagMs) {
+        primary = pool("primary");
+        replica = pool("replica-1");
+        router = new ReplicaRouter(primary, List.of(replica), maxLagMs, 1_000, new SimpleMeterRegistry());
+
+        LazyConnectionDataSourceProxy dataSource =
+                new LazyConnectionDataSourceProxy(ReplicaRouter.routingDataSource(router));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writes = new TransactionTemplate(transactionManager);
+        reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+
+        // The proxy probes the primary for connection defaults, which counts as a write
+        clearThreadPin();
+        router.checkReplicas();
+    }
+
+    // What ReplicaReadAspect does around a @Transactional(readOnly = true) service method
+    private String serviceRead() {
+        boolean previous = ReplicaRouter.allowReplicaReads(true);
+        try {
+            return whoami(reads);
+        } finally {
+            ReplicaRouter.allowReplicaReads(previous);
+        }
+    }
+
+    private String whoami(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM whoami", String.class));
+    }
+
+    private static HikariDataSource pool(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl("jdbc:h2:mem:" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        pool.setMaximumPoolSize(2);
+        JdbcTemplate schema = new JdbcTemplate(pool);
+        schema.execute("CREATE TABLE whoami (name VARCHAR(20))");
+        schema.update("INSERT INTO whoami (name) VALUES (?)", name);
+        schema.execute("CREATE TABLE replication_heartbeats (node_id VARCHAR(100) PRIMARY KEY, beat_at BIGINT NOT NULL)");
+        return pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void clearThreadPin() {
+        ((ThreadLocal<Long>) ReflectionTestUtils.getField(ReplicaRouter.class, "THREAD_PINNED_UNTIL")).remove();
+    }
+}
@@ -0,0 +1,80 @@
+package com.garrizon.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailTemplateEngineTest {
+
+    @Test
+    void rendersTheBundledOrderConfirmation() throws Exception {
+        EmailTemplateEngine engine = new EmailTemplateEngine("classpath:templates/email/");
+
+        RenderedEmail email = engine.render("order-confirmation", Map.of(
+                "orderNumber", "GZ-1042",
+                "customerName", "Ada <Admin>",
+                "currency", "$",
+                "totalAmount", "59.97",
+                "items", List.of(
+                        Map.of("name", "Mug", "quantity", 2, "subtotal", "19.98"),
+                        Map.of("name", "Tea & Honey", "quantity", 1, "subtotal", "39.99"))));
+
+        assertThat(email.getSubject()).isEqualTo("Order Confirmation - GZ-1042");
+        assertThat(email.getHtmlBody())
+                .contains("Ada &lt;Admin&gt;")
+                .contains("Mug")
+                .contains("Tea &amp; Honey")
+                .contains("59.97")
+                .doesNotContain("{{");
+    }
+
+    @Test
+    void rejectsUnknownTemplates() throws Exception {
+        EmailTemplateEngine engine = new EmailTemplateEngine("classpath:templates/email/");
+
+        assertThatThrownBy(() -> engine.render("missing", Map.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void supportsSectionsInvertedSectionsAndRawValues() {
+        EmailTemplate template = EmailTemplate.compile("test",
+                "<title>Hi {{name}}</title>{{! ignored }}" +
+                "{{#items}}[{{label}} for {{name}}]{{/items}}" +
+                "{{^items}}none{{/items}}" +
+                "{{#vip}}VIP{{/vip}}{{{html}}}");
+
+        StringBuilder subject = new StringBuilder();
+        template.renderSubject(Map.of("name", "A&B"), subject);
+        assertThat(subject).hasToString("Hi A&B");
+
+        StringBuilder body = new StringBuilder();
+        template.renderBody(Map.of(
+                "name", "Ada",
+                "items", List.of(Map.of("label", "one"), Map.of("label", "<two>")),
+                "vip", false,
+                "html", "<b>raw</b>"), body);
+        assertThat(body.toString())
+                .endsWith("[one for Ada][&lt;two&gt; for Ada]<b>raw</b>")
+                .doesNotContain("none")
+                .doesNotContain("VIP");
+
+        StringBuilder empty = new StringBuilder();
+        template.renderBody(Map.of("items", List.of()), empty);
+        assertThat(empty.toString()).endsWith("none");
+    }
+
+    @Test
+    void rejectsMalformedTemplates() {
+        assertThatThrownBy(() -> EmailTemplate.compile("no-title", "<p>{{name}}</p>"))
+                .hasMessageContaining("<title>");
+        assertThatThrownBy(() -> EmailTemplate.compile("unclosed", "<title>x</title>{{#items}}"))
+                .hasMessageContaining("Unclosed");
+        assertThatThrownBy(() -> EmailTemplate.compile("mismatched", "<title>x</title>{{#a}}{{/b}}"))
+                .hasMessageContaining("Unexpected");
+    }
+}
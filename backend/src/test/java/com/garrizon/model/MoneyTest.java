@@ -0,0 +1,59 @@
+package com.garrizon.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    private static final Currency NGN = Currency.getInstance("NGN");
+    private static final Currency JPY = Currency.getInstance("JPY");
+
+    @Test
+    void convertsDecimalsToMinorUnits() {
+        assertThat(Money.of("4.99").getMinorUnits()).isEqualTo(499);
+        assertThat(Money.of("0.005").getMinorUnits()).isEqualTo(1); // Half up
+        assertThat(Money.of(new BigDecimal("1500"), JPY).getMinorUnits()).isEqualTo(1500);
+        assertThat(Money.of(new BigDecimal("12.5"), NGN).getMinorUnits()).isEqualTo(1250);
+    }
+
+    @Test
+    void printsAsAPlainDecimal() {
+        assertThat(Money.ofMinor(499)).hasToString("4.99");
+        assertThat(Money.ofMinor(100_000_000)).hasToString("1000000.00");
+        assertThat(Money.ofMinor(-5).toBigDecimal()).isEqualByComparingTo("-0.05");
+    }
+
+    @Test
+    void addsAndMultipliesExactly() {
+        Money price = Money.of("19.99");
+
+        assertThat(price.times(3).plus(Money.of("0.03"))).isEqualTo(Money.of("60.00"));
+        assertThat(Money.ZERO.isPositive()).isFalse();
+        assertThat(Money.ofMinor(1).isPositive()).isTrue();
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE / 2 + 1).times(2))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void refusesToMixCurrencies() {
+        Money dollars = Money.ofMinor(100);
+        Money naira = Money.ofMinor(100, NGN);
+
+        assertThat(dollars).isNotEqualTo(naira);
+        assertThatThrownBy(() -> dollars.plus(naira)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> dollars.compareTo(naira)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void comparesAndHashesByValue() {
+        assertThat(Money.of("1.10")).isEqualTo(Money.of("1.1")).hasSameHashCodeAs(Money.of("1.1"));
+        assertThat(Money.of("1.10")).isLessThan(Money.of("1.11"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.garrizon.monitoring;
+
+import java.util.Map;
+
+/**
+ * Helpers for integration tests that guard against query regressions, e.g.
+ * {@code QueryCountAssertions.assertMaxStatements(3, () -> mockMvc.perform(get("/api/cart")))}.
+ * MockMvc runs the request on the calling thread, so the statements of the
+ * whole request are captured.
+ */
+public final class QueryCountAssertions {
+
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private QueryCountAssertions() {
+    }
+
+    public static QueryStats capture(ThrowingRunnable action) throws Exception {
+        try (QueryStats stats = QueryStats.begin()) {
+            action.run();
+            return stats;
+        }
+    }
+
+    public static QueryStats assertMaxStatements(int max, ThrowingRunnable action) throws Exception {
+        QueryStats stats = capture(action);
+        if (stats.getStatements() > max) {
+            throw new AssertionError("Expected at most " + max + " SQL statements but " + stats.getStatements()
+                    + " were executed; repeated: " + stats.repeatedStatements(2));
+        }
+        return stats;
+    }
+
+    public static QueryStats assertNoRepeatedStatements(int threshold, ThrowingRunnable action) throws Exception {
+        QueryStats stats = capture(action);
+        Map<String, Integer> repeated = stats.repeatedStatements(threshold);
+        if (!repeated.isEmpty()) {
+            throw new AssertionError("Suspected N+1 queries: " + repeated);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,103 @@
+package com.garrizon.monitoring;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryCountingDataSourceTest {
+
+    private static final String ORDERS_SQL = "SELECT id FROM orders WHERE user_id = ?";
+    private static final String ITEMS_SQL = "SELECT * FROM order_items WHERE order_id = ?";
+
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        ResultSet twoRows = mock(ResultSet.class);
+        when(twoRows.next()).thenReturn(true, true, false);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.executeQuery()).thenReturn(twoRows);
+        when(statement.executeUpdate()).thenReturn(3);
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(connection);
+
+        dataSource = QueryCountingDataSource.wrap(target);
+    }
+
+    @Test
+    void countsStatementsAndRows() throws Exception {
+        QueryStats stats = QueryCountAssertions.assertMaxStatements(2, () -> {
+            query(ORDERS_SQL);
+            update("UPDATE carts SET reminder_sent_at = NOW() WHERE id IN (?, ?, ?)");
+        });
+
+        assertThat(stats.getStatements()).isEqualTo(2);
+        assertThat(stats.getRows()).isEqualTo(5);
+    }
+
+    @Test
+    void failsWhenTheBudgetIsExceeded() {
+        assertThatThrownBy(() -> QueryCountAssertions.assertMaxStatements(2, this::loadOrdersOneByOne))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("at most 2")
+                .hasMessageContaining(ITEMS_SQL);
+    }
+
+    @Test
+    void flagsRepeatedStatements() throws Exception {
+        QueryCountAssertions.assertNoRepeatedStatements(2, () -> query(ORDERS_SQL));
+
+        assertThatThrownBy(() -> QueryCountAssertions.assertNoRepeatedStatements(3, this::loadOrdersOneByOne))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("N+1");
+    }
+
+    @Test
+    void nestedScopesCountTowardsTheEnclosingOne() throws Exception {
+        QueryStats outer = QueryCountAssertions.capture(() -> {
+            query(ORDERS_SQL);
+            QueryStats inner = QueryCountAssertions.capture(() -> query(ITEMS_SQL));
+            assertThat(inner.getStatements()).isEqualTo(1);
+        });
+
+        assertThat(outer.getStatements()).isEqualTo(2);
+        assertThat(QueryStats.current()).isNull();
+    }
+
+    private void loadOrdersOneByOne() throws SQLException {
+        query(ORDERS_SQL);
+        for (int i = 0; i < 3; i++) {
+            query(ITEMS_SQL);
+        }
+    }
+
+    private void query(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                // Drain, as a mapper would
+            }
+        }
+    }
+
+    private void update(String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.executeUpdate();
+        }
+    }
+}
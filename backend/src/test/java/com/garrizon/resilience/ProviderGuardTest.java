@@ -0,0 +1,146 @@
+package com.garrizon.resilience;
+
+import com.garrizon.exception.ProviderUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProviderGuardTest {
+
+    private static final long NEVER_SLOW_MS = 60_000;
+
+    @Test
+    void opensOnceProviderFailuresCrossTheThreshold() {
+        ProviderGuard guard = guard(10, 30_000, 1, NEVER_SLOW_MS);
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> guard.execute(() -> {
+                throw new SocketTimeoutException("Read timed out");
+            })).isInstanceOf(SocketTimeoutException.class);
+        }
+
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.OPEN);
+        assertThatThrownBy(() -> guard.execute(() -> "unreachable"))
+                .isInstanceOf(ProviderUnavailableException.class);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheBreaker() {
+        ProviderGuard guard = guard(10, 30_000, 1, NEVER_SLOW_MS);
+
+        for (int i = 0; i < 20; i++) {
+            assertThatThrownBy(() -> guard.executeMono(() -> Mono.error(status(404))).block())
+                    .isInstanceOf(WebClientResponseException.class);
+        }
+
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.CLOSED);
+        assertThat(guard.snapshot()).containsEntry("failedCalls", 20L).containsEntry("failureRate", 0);
+    }
+
+    @Test
+    void serverErrorsOpenTheBreaker() {
+        ProviderGuard guard = guard(10, 30_000, 1, NEVER_SLOW_MS);
+
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> guard.executeMono(() -> Mono.error(status(503))).block())
+                    .isInstanceOf(WebClientResponseException.class);
+        }
+
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.OPEN);
+    }
+
+    @Test
+    void slowCallsCountAsFailures() throws Exception {
+        ProviderGuard guard = guard(10, 30_000, 1, 0);
+
+        for (int i = 0; i < 4; i++) {
+            guard.execute(() -> {
+                Thread.sleep(2);
+                return "ok";
+            });
+        }
+
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.OPEN);
+    }
+
+    @Test
+    void asyncFailuresAreUnwrapped() {
+        ProviderGuard guard = guard(10, 30_000, 1, NEVER_SLOW_MS);
+
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<String> call = guard.executeAsync(() -> CompletableFuture.supplyAsync(() -> {
+                throw new CompletionException(new IOException("Connection reset"));
+            }));
+            assertThatThrownBy(call::join).hasCauseInstanceOf(IOException.class);
+        }
+
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.OPEN);
+    }
+
+    @Test
+    void closesAfterSuccessfulProbes() throws Exception {
+        ProviderGuard guard = guard(1, 0, 2, NEVER_SLOW_MS);
+        open(guard);
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.HALF_OPEN);
+
+        guard.execute(() -> "ok");
+        guard.execute(() -> "ok");
+
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.CLOSED);
+    }
+
+    @Test
+    void cancelledMonoHandsBackItsProbePermit() {
+        ProviderGuard guard = guard(1, 0, 1, NEVER_SLOW_MS);
+        open(guard);
+
+        Disposable subscription = guard.executeMono(Mono::never).subscribe();
+        assertThatThrownBy(() -> guard.executeMono(() -> Mono.just("ok")).block())
+                .isInstanceOf(ProviderUnavailableException.class);
+        subscription.dispose();
+
+        assertThat(guard.executeMono(() -> Mono.just("ok")).block()).isEqualTo("ok");
+        assertThat(guard.getState()).isEqualTo(ProviderGuard.State.CLOSED);
+        assertThat(guard.snapshot()).containsEntry("activeCalls", 0);
+    }
+
+    @Test
+    void rejectsWhenTheBulkheadIsFull() {
+        ProviderGuard guard = guard(1, 30_000, 1, NEVER_SLOW_MS);
+
+        Disposable subscription = guard.executeMono(Mono::never).subscribe();
+        assertThatThrownBy(() -> guard.execute(() -> "ok")).isInstanceOf(ProviderUnavailableException.class);
+        subscription.dispose();
+
+        assertThat(guard.snapshot()).containsEntry("bulkheadRejections", 1L).containsEntry("activeCalls", 0);
+    }
+
+    private static void open(ProviderGuard guard) {
+        for (int i = 0; i < 4 && guard.getState() == ProviderGuard.State.CLOSED; i++) {
+            assertThatThrownBy(() -> guard.execute(() -> {
+                throw new IOException("Connection refused");
+            })).isInstanceOf(IOException.class);
+        }
+    }
+
+    private static ProviderGuard guard(int maxConcurrentCalls, long waitDurationOpenMs, int halfOpenCalls,
+                                       long slowCallThresholdMs) {
+        return new ProviderGuard("stub", maxConcurrentCalls, 50, 4, 4, waitDurationOpenMs, halfOpenCalls,
+                slowCallThresholdMs, ProviderGuardRegistry::isProviderFailure, new SimpleMeterRegistry());
+    }
+
+    private static WebClientResponseException status(int status) {
+        return WebClientResponseException.create(status, "stub", HttpHeaders.EMPTY, new byte[0], null);
+    }
+}
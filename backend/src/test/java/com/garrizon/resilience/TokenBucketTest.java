@@ -0,0 +1,82 @@
+package com.garrizon.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsABurstThenRejectsWithTheWait() {
+        TokenBucket bucket = new TokenBucket(SECOND, 3, 0);
+
+        assertThat(bucket.tryAcquire(0)).isEqualTo(2);
+        assertThat(bucket.tryAcquire(0)).isEqualTo(1);
+        assertThat(bucket.tryAcquire(0)).isEqualTo(0);
+        assertThat(bucket.tryAcquire(0)).isEqualTo(-SECOND);
+        assertThat(bucket.tryAcquire(SECOND / 4)).isEqualTo(-(SECOND * 3 / 4));
+    }
+
+    @Test
+    void refillsOnePermitPerInterval() {
+        TokenBucket bucket = new TokenBucket(SECOND, 2, 0);
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        assertThat(bucket.tryAcquire(SECOND)).isEqualTo(0);
+        assertThat(bucket.tryAcquire(SECOND)).isNegative();
+        assertThat(bucket.nanosUntilFull(SECOND)).isEqualTo(2 * SECOND);
+    }
+
+    @Test
+    void isFullOnceIdleLongEnough() {
+        TokenBucket bucket = new TokenBucket(SECOND, 5, 0);
+        assertThat(bucket.isFull(0)).isTrue();
+
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+        assertThat(bucket.isFull(SECOND)).isFalse();
+        assertThat(bucket.isFull(2 * SECOND)).isTrue();
+        assertThat(bucket.tryAcquire(10 * SECOND)).isEqualTo(4); // Idle time does not bank extra permits
+    }
+
+    @Test
+    void grantsExactlyTheBurstUnderContention() throws Exception {
+        int burst = 100;
+        TokenBucket bucket = new TokenBucket(SECOND, burst, 0);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < 1_000; i++) {
+                        if (bucket.tryAcquire(0) >= 0) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            pool.shutdown();
+            assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        }
+
+        assertThat(granted.get()).isEqualTo(burst);
+    }
+}
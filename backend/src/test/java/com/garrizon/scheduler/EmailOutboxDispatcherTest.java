@@ -0,0 +1,195 @@
+package com.garrizon.scheduler;
+
+import com.garrizon.cluster.LeaseService;
+import com.garrizon.mail.SmtpConnectionPool;
+import com.garrizon.model.EmailOutbox;
+import com.garrizon.model.EmailOutboxStatus;
+import com.garrizon.repository.EmailOutboxRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sends a claimed backlog through a local GreenMail SMTP server, with the
+ * outbox tables replaced by an in-memory stand-in.
+ */
+class EmailOutboxDispatcherTest {
+
+    private static final int MESSAGES = 300;
+    private static final int WORKER_THREADS = 4;
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP.dynamicPort());
+
+    private final Map<Long, EmailOutbox> outbox = new ConcurrentHashMap<>();
+    private final Set<Long> sent = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolTaskExecutor executor;
+    private SmtpConnectionPool connectionPool;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= MESSAGES; id++) {
+            String domain = id % 2 == 0 ? "example.com" : "example.org";
+            outbox.put(id, EmailOutbox.builder()
+                    .id(id)
+                    .recipient("customer" + id + "@" + domain)
+                    .recipientDomain(domain)
+                    .subject("Order #" + id)
+                    .body("<p>Thanks for your order</p>")
+                    .html(true)
+                    .nextAttemptAt(LocalDateTime.now())
+                    .build());
+        }
+
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+        @SuppressWarnings("unchecked")
+        ObjectProvider<JavaMailSender> mailSenderProvider = mock(ObjectProvider.class);
+        when(mailSenderProvider.getIfAvailable()).thenReturn(mailSender);
+        connectionPool = new SmtpConnectionPool(mailSenderProvider);
+        ReflectionTestUtils.setField(connectionPool, "maxIdleConnections", WORKER_THREADS);
+
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(WORKER_THREADS);
+        executor.setMaxPoolSize(WORKER_THREADS);
+        executor.setQueueCapacity(WORKER_THREADS);
+        executor.initialize();
+
+        dispatcher = new EmailOutboxDispatcher(repository(), connectionPool, executor, mock(JdbcTemplate.class),
+                mock(LeaseService.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 200);
+        ReflectionTestUtils.setField(dispatcher, "perDomainConcurrency", 2);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 8);
+        ReflectionTestUtils.setField(dispatcher, "staleClaimMinutes", 5L);
+        ReflectionTestUtils.setField(dispatcher, "smtpConnectTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(dispatcher, "smtpReadTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(dispatcher, "smtpWriteTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(dispatcher, "fromEmail", "noreply@garrizon.com");
+        ReflectionTestUtils.setField(dispatcher, "fromName", "Garrizon");
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+        connectionPool.destroy();
+    }
+
+    @Test
+    void deliversTheBacklogOverPooledConnections() throws Exception {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(30);
+        while (sent.size() < MESSAGES && System.nanoTime() < deadline) {
+            dispatcher.dispatch();
+            Thread.sleep(10);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(sent).hasSize(MESSAGES);
+        assertThat(greenMail.waitForIncomingEmail(5_000, MESSAGES)).isTrue();
+        assertThat(greenMail.getReceivedMessages()).hasSize(MESSAGES);
+        assertThat(outbox.values()).allMatch(message -> message.getStatus() == EmailOutboxStatus.SENT);
+        // A connect per message would run well past this on a loaded CI box
+        assertThat(elapsedMs).isLessThan(20_000);
+    }
+
+    /**
+     * Claims and releases rows the way the JPQL updates do, so the dispatcher
+     * sees the same state across polls.
+     */
+    private EmailOutboxRepository repository() {
+        EmailOutboxRepository repository = mock(EmailOutboxRepository.class);
+        when(repository.findDueIds(any(), any(), any())).thenAnswer(invocation ->
+                due(List.of(), invocation.getArgument(2, Pageable.class).getPageSize()));
+        when(repository.findDueIdsExcludingDomains(any(), any(), anyCollection(), any())).thenAnswer(invocation ->
+                due(invocation.getArgument(2), invocation.getArgument(3, Pageable.class).getPageSize()));
+        when(repository.claim(anyCollection(), anyString(), any(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            String token = invocation.getArgument(1);
+            int claimed = 0;
+            for (Long id : ids) {
+                EmailOutbox message = outbox.get(id);
+                if (message.getStatus() == EmailOutboxStatus.PENDING) {
+                    message.setStatus(EmailOutboxStatus.SENDING);
+                    message.setClaimToken(token);
+                    claimed++;
+                }
+            }
+            return claimed;
+        });
+        when(repository.findByIdInAndClaimToken(anyCollection(), anyString())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            String token = invocation.getArgument(1);
+            List<EmailOutbox> claimed = new ArrayList<>();
+            for (Long id : ids) {
+                if (token.equals(outbox.get(id).getClaimToken())) {
+                    claimed.add(outbox.get(id));
+                }
+            }
+            return claimed;
+        });
+        when(repository.release(anyCollection(), anyString())).thenAnswer(invocation ->
+                update(invocation.getArgument(0), invocation.getArgument(1), EmailOutboxStatus.PENDING));
+        when(repository.markSent(anyCollection(), anyString(), any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            int rows = update(ids, invocation.getArgument(1), EmailOutboxStatus.SENT);
+            sent.addAll(ids);
+            return rows;
+        });
+        return repository;
+    }
+
+    private synchronized List<Long> due(Collection<String> busyDomains, int limit) {
+        List<Long> ids = new ArrayList<>();
+        outbox.values().stream()
+                .filter(message -> message.getStatus() == EmailOutboxStatus.PENDING)
+                .filter(message -> !busyDomains.contains(message.getRecipientDomain()))
+                .map(EmailOutbox::getId)
+                .sorted()
+                .limit(limit)
+                .forEach(ids::add);
+        return ids;
+    }
+
+    private int update(Collection<Long> ids, String token, EmailOutboxStatus status) {
+        int rows = 0;
+        for (Long id : ids) {
+            EmailOutbox message = outbox.get(id);
+            if (token.equals(message.getClaimToken())) {
+                message.setStatus(status);
+                message.setClaimToken(null);
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,78 @@
+package com.garrizon.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageImportWorkerTest {
+
+    @Test
+    void onlyFetchesFromPublicAddresses() throws Exception {
+        for (String address : new String[]{"93.184.216.34", "1.1.1.1", "2606:4700:4700::1111"}) {
+            assertThat(ImageImportWorker.isPublic(InetAddress.getByName(address))).as(address).isTrue();
+        }
+        for (String address : new String[]{
+                "127.0.0.1", "0.0.0.0", "10.1.2.3", "172.16.0.1", "192.168.1.1", "169.254.169.254",
+                "100.64.0.1", "198.18.0.1", "224.0.0.1", "::1", "::", "fe80::1", "fd00::1", "::ffff:10.0.0.1"}) {
+            assertThat(ImageImportWorker.isPublic(InetAddress.getByName(address))).as(address).isFalse();
+        }
+    }
+
+    @Test
+    void failsABodyCutOffAtItsDeadline() throws Exception {
+        StalledBody body = new StalledBody();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+        try {
+            watchdog.schedule(body::close, 200, TimeUnit.MILLISECONDS);
+            InputStream in = new ImageImportWorker.DeadlineInputStream(body, deadline);
+
+            long start = System.nanoTime();
+            assertThat(in.read(new byte[3])).isEqualTo(3);
+            assertThatThrownBy(() -> in.transferTo(OutputStream.nullOutputStream()))
+                    .isInstanceOf(HttpTimeoutException.class);
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5_000);
+        } finally {
+            watchdog.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends a few bytes, then stalls until closed, like the HTTP client's
+     * body stream for a host that stops sending.
+     */
+    private static final class StalledBody extends InputStream {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private int sent;
+
+        @Override
+        public int read() throws IOException {
+            if (sent < 3) {
+                return ++sent;
+            }
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("closed");
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.garrizon.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevocationFilterTest {
+
+    @Test
+    void reportsRevokedIdsAndNothingElse() {
+        RevocationFilter filter = new RevocationFilter(10_000, 0.01);
+        String[] revoked = new String[5_000];
+        for (int i = 0; i < revoked.length; i++) {
+            revoked[i] = UUID.randomUUID().toString();
+            filter.add(revoked[i], Long.MAX_VALUE);
+        }
+
+        for (String id : revoked) {
+            assertThat(filter.isRevoked(id)).isTrue();
+        }
+        // Filter hits are confirmed against the exact set, so there are no false positives
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(filter.isRevoked(UUID.randomUUID().toString())).isFalse();
+        }
+        assertThat(filter.size()).isEqualTo(revoked.length);
+    }
+
+    @Test
+    void rebuildKeepsOnlyUnexpiredEntries() {
+        RevocationFilter filter = new RevocationFilter(100, 0.01);
+        filter.add("expired", 1_000);
+        filter.add("live", 5_000);
+        filter.add("extended", 1_000);
+        filter.add("extended", 9_000); // The later expiry wins
+
+        RevocationFilter rebuilt = filter.withoutExpired(2_000);
+
+        assertThat(rebuilt.size()).isEqualTo(2);
+        assertThat(rebuilt.isRevoked("expired")).isFalse();
+        assertThat(rebuilt.isRevoked("live")).isTrue();
+        assertThat(rebuilt.isRevoked("extended")).isTrue();
+        assertThat(filter.isRevoked("expired")).isTrue();
+    }
+}
@@ -0,0 +1,59 @@
+package com.garrizon.service;
+
+import com.garrizon.dto.PaymentStatusUpdate;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.repository.CartRepository;
+import com.garrizon.repository.OrderItemRepository;
+import com.garrizon.repository.OrderRepository;
+import com.garrizon.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class OrderServiceTest {
+
+    private final OrderRepository orderRepository = mock(OrderRepository.class);
+    private final OrderItemRepository orderItemRepository = mock(OrderItemRepository.class);
+    private JdbcTemplate jdbcTemplate;
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:orders-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE orders (id BIGINT PRIMARY KEY, payment_status VARCHAR(20), " +
+                "payment_intent_id VARCHAR(255), updated_at TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO orders (id, payment_status) VALUES (1, 'PENDING'), (2, 'COMPLETED'), " +
+                "(3, 'PENDING')");
+        orderService = new OrderService(orderRepository, orderItemRepository, mock(CartRepository.class),
+                mock(UserRepository.class), jdbcTemplate, mock(ApplicationEventPublisher.class),
+                mock(EmailService.class));
+    }
+
+    @Test
+    void reportsOnlyTheOrdersThatWerePending() {
+        List<PaymentStatusUpdate> applied = orderService.updatePaymentStatuses(List.of(
+                new PaymentStatusUpdate(1L, PaymentStatus.COMPLETED, "ref-1"),
+                new PaymentStatusUpdate(2L, PaymentStatus.COMPLETED, "ref-2"),
+                new PaymentStatusUpdate(3L, PaymentStatus.FAILED, "ref-3"),
+                new PaymentStatusUpdate(1L, PaymentStatus.COMPLETED, "ref-1"),
+                new PaymentStatusUpdate(4L, PaymentStatus.COMPLETED, "ref-4")));
+
+        assertThat(applied).extracting(PaymentStatusUpdate::getOrderId).containsExactly(1L, 3L);
+        assertThat(jdbcTemplate.queryForList("SELECT payment_status FROM orders ORDER BY id", String.class))
+                .containsExactly("COMPLETED", "COMPLETED", "FAILED");
+        assertThat(jdbcTemplate.queryForObject("SELECT payment_intent_id FROM orders WHERE id = 2", String.class))
+                .isNull();
+        verify(orderRepository).findPaymentViews(List.of(1L));
+        verify(orderItemRepository).findItemQuantities(anyList());
+    }
+}
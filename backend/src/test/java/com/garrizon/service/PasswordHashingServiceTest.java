@@ -0,0 +1,154 @@
+package com.garrizon.service;
+
+import com.garrizon.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Floods {@link PasswordHashingService} with logins while a stand-in for
+ * catalog requests runs alongside, and compares its p99 with the same flood
+ * hashed on a pool as wide as the flood, which is what running BCrypt on the
+ * request threads amounts to.
+ */
+class PasswordHashingServiceTest {
+
+    private static final int FLOOD_THREADS = 32;
+    private static final int CATALOG_REQUESTS = 200;
+
+    private final AtomicInteger hashing = new AtomicInteger();
+    private final AtomicInteger peakHashing = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    @Test
+    void keepsCatalogLatencyDownDuringALoginFlood() throws Exception {
+        long unbounded = catalogP99DuringFlood(FLOOD_THREADS, 1_000);
+        peakHashing.set(0);
+        rejected.set(0);
+        long bounded = catalogP99DuringFlood(2, 8);
+
+        assertThat(peakHashing.get()).isLessThanOrEqualTo(2);
+        assertThat(rejected.get()).isPositive();
+        assertThat(bounded)
+                .as("catalog p99 %d µs bounded vs %d µs unbounded", bounded, unbounded)
+                .isLessThan(unbounded / 2);
+    }
+
+    @Test
+    void stillChecksPasswords() {
+        PasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        ThreadPoolTaskExecutor executor = executor(1, 10);
+        try {
+            PasswordHashingService hashingService = new PasswordHashingService(encoder, executor);
+            hashingService.init();
+            String hash = hashingService.encode("secret").join();
+
+            assertThat(hashingService.matches("secret", hash).join()).isTrue();
+            assertThat(hashingService.matches("wrong", hash).join()).isFalse();
+            assertThat(hashingService.matches("secret", null).join()).isFalse();
+            assertThat(hashingService.needsUpgrade(hash)).isFalse();
+            assertThat(hashingService.needsUpgrade(new BCryptPasswordEncoder(4).encode("secret"))).isFalse();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private long catalogP99DuringFlood(int hashingThreads, int queueCapacity) throws Exception {
+        ThreadPoolTaskExecutor executor = executor(hashingThreads, queueCapacity);
+        PasswordHashingService hashingService = new PasswordHashingService(countingEncoder(), executor);
+        hashingService.init();
+        String stored = new BCryptPasswordEncoder(8).encode("correct horse");
+
+        AtomicBoolean flooding = new AtomicBoolean(true);
+        ExecutorService flood = Executors.newFixedThreadPool(FLOOD_THREADS);
+        try {
+            for (int i = 0; i < FLOOD_THREADS; i++) {
+                flood.execute(() -> {
+                    while (flooding.get()) {
+                        try {
+                            hashingService.matches("guess", stored).join();
+                        } catch (TooManyRequestsException e) {
+                            rejected.incrementAndGet();
+                            sleep(1);
+                        }
+                    }
+                });
+            }
+            sleep(100);
+            return catalogP99();
+        } finally {
+            flooding.set(false);
+            flood.shutdown();
+            flood.awaitTermination(10, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+    }
+
+    // Microseconds; each request is a fixed slice of CPU work
+    private static long catalogP99() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] page = new byte[64 * 1024];
+        long[] latencies = new long[CATALOG_REQUESTS];
+        for (int i = 0; i < CATALOG_REQUESTS; i++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < 4; j++) {
+                page[0] = digest.digest(page)[0];
+            }
+            latencies[i] = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        }
+        Arrays.sort(latencies);
+        return latencies[(int) Math.ceil(CATALOG_REQUESTS * 0.99) - 1];
+    }
+
+    private PasswordEncoder countingEncoder() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(8);
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return bcrypt.encode(rawPassword);
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                peakHashing.accumulateAndGet(hashing.incrementAndGet(), Math::max);
+                try {
+                    return bcrypt.matches(rawPassword, encodedPassword);
+                } finally {
+                    hashing.decrementAndGet();
+                }
+            }
+        };
+    }
+
+    private static ThreadPoolTaskExecutor executor(int threads, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hash-");
+        executor.initialize();
+        return executor;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
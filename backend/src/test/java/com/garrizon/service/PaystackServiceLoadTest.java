@@ -0,0 +1,126 @@
+package com.garrizon.service;
+
+import com.garrizon.config.PaymentClientConfig;
+import com.garrizon.dto.PaymentVerification;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.resilience.ProviderGuardRegistry;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Drives {@link PaystackService} against a local stub that answers every
+ * call after a fixed delay, the way a slow provider would.
+ */
+class PaystackServiceLoadTest {
+
+    private static final int CALLS = 200;
+    private static final int MAX_CONNECTIONS = 50;
+    private static final long LATENCY_MS = 200;
+    private static final String VERIFIED =
+            "{\"status\":true,\"data\":{\"status\":\"success\",\"amount\":5000,\"currency\":\"NGN\"}}";
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private volatile long latencyMs = LATENCY_MS;
+
+    private HttpServer stub;
+    private ExecutorService stubThreads;
+    private ConnectionProvider connections;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stubThreads = Executors.newCachedThreadPool();
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), CALLS);
+        stub.createContext("/transaction/verify/", exchange -> {
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(latencyMs);
+                byte[] body = VERIFIED.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        stub.setExecutor(stubThreads);
+        stub.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        stub.stop(0);
+        stubThreads.shutdownNow();
+        if (connections != null) {
+            connections.dispose();
+        }
+    }
+
+    @Test
+    void overlapsSlowCallsOnABoundedPool() {
+        PaystackService paystack = paystack(10_000);
+
+        long start = System.nanoTime();
+        List<PaymentVerification> results = Flux.range(0, CALLS)
+                .flatMap(i -> paystack.verifyTransaction("ref-" + i), CALLS)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(results).hasSize(CALLS)
+                .containsOnly(new PaymentVerification(PaymentStatus.COMPLETED, 5000L, "NGN"));
+        // Never more connections than the pool allows
+        assertThat(peakInFlight.get()).isLessThanOrEqualTo(MAX_CONNECTIONS);
+        // One after another would take CALLS * LATENCY_MS = 40 s; pooled, it is a few waves of LATENCY_MS
+        assertThat(elapsedMs).isLessThan(CALLS / MAX_CONNECTIONS * LATENCY_MS * 5);
+    }
+
+    @Test
+    void givesUpOnAStalledProviderAtTheReadTimeout() {
+        latencyMs = 5_000;
+        PaystackService paystack = paystack(300);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> paystack.verifyTransaction("ref").block(Duration.ofSeconds(10)))
+                .hasMessageContaining("Transaction verification failed");
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(3_000);
+    }
+
+    private PaystackService paystack(int readTimeoutMs) {
+        PaymentClientConfig config = new PaymentClientConfig();
+        ReflectionTestUtils.setField(config, "maxConnections", MAX_CONNECTIONS);
+        ReflectionTestUtils.setField(config, "pendingAcquireMaxCount", CALLS);
+        ReflectionTestUtils.setField(config, "connectTimeoutMs", 3_000);
+        ReflectionTestUtils.setField(config, "readTimeoutMs", readTimeoutMs);
+        ReflectionTestUtils.setField(config, "maxIdleTimeMs", 30_000L);
+        connections = config.paymentConnectionProvider();
+        WebClient webClient = config.paystackWebClient(WebClient.builder(), connections,
+                "http://127.0.0.1:" + stub.getAddress().getPort(), "sk_test");
+
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("resilience.paystack.max-concurrent-calls", String.valueOf(CALLS));
+        return new PaystackService(webClient, new ProviderGuardRegistry(environment, new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,95 @@
+package com.garrizon.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.garrizon.model.Money;
+import com.garrizon.model.Order;
+import com.garrizon.model.PaymentProvider;
+import com.garrizon.model.PaymentStatus;
+import com.garrizon.model.WebhookEvent;
+import com.garrizon.model.WebhookEventStatus;
+import com.garrizon.repository.OrderRepository;
+import com.garrizon.repository.WebhookEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WebhookServiceTest {
+
+    private final WebhookEventRepository events = mock(WebhookEventRepository.class);
+    private final OrderRepository orders = mock(OrderRepository.class);
+    private final OrderService orderService = mock(OrderService.class);
+    private final WebhookService service = new WebhookService(events, orders, orderService, new ObjectMapper());
+
+    @BeforeEach
+    void setUp() {
+        Order order = Order.builder()
+                .id(7L)
+                .totalAmount(Money.of("59.97"))
+                .paymentIntentId("GZ-7-ab12")
+                .build();
+        when(orders.findFirstByPaymentIntentId("GZ-7-ab12")).thenReturn(Optional.of(order));
+    }
+
+    @Test
+    void settlesAMatchingPayment() {
+        receive(event("GZ-7-ab12", 7L, 5997L, "USD"));
+
+        verify(orderService).updatePaymentStatus(7L, PaymentStatus.COMPLETED, "GZ-7-ab12");
+        verify(events).updateStatus(eq(1L), eq(WebhookEventStatus.PROCESSED), any(), any());
+    }
+
+    @Test
+    void rejectsAnUnderpayment() {
+        receive(event("GZ-7-ab12", 7L, 1L, "USD"));
+
+        verify(orderService, never()).updatePaymentStatus(anyLong(), any(), anyString());
+        verify(events).updateStatus(eq(1L), eq(WebhookEventStatus.REJECTED), contains("Paid 1 USD"), any());
+    }
+
+    @Test
+    void rejectsAnotherCurrency() {
+        receive(event("GZ-7-ab12", 7L, 5997L, "NGN"));
+
+        verify(orderService, never()).updatePaymentStatus(anyLong(), any(), anyString());
+        verify(events).updateStatus(eq(1L), eq(WebhookEventStatus.REJECTED), any(), any());
+    }
+
+    @Test
+    void ignoresMetadataThatPointsAtAnotherOrder() {
+        // A cheap charge of its own, claiming to pay for someone else's order
+        receive(event("GZ-9-zz99", 7L, 5997L, "USD"));
+        receive(event("GZ-7-ab12", 8L, 5997L, "USD"));
+
+        verify(orderService, never()).updatePaymentStatus(anyLong(), any(), anyString());
+    }
+
+    private void receive(WebhookEvent event) {
+        when(events.findById(1L)).thenReturn(Optional.of(event));
+        service.process(1L);
+    }
+
+    private static WebhookEvent event(String reference, Long orderId, Long amount, String currency) {
+        return WebhookEvent.builder()
+                .id(1L)
+                .provider(PaymentProvider.PAYSTACK)
+                .eventId("charge.success:1")
+                .eventType("charge.success")
+                .reference(reference)
+                .orderId(orderId)
+                .amount(amount)
+                .currency(currency)
+                .attempts(1)
+                .build();
+    }
+}
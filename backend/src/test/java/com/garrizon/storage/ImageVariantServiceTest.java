@@ -0,0 +1,17 @@
+package com.garrizon.storage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageVariantServiceTest {
+
+    @Test
+    void onlyQueuesFormatsImageIoCanDecode() {
+        assertThat(ImageVariantService.isDecodable("ab/cd/abcd.jpg")).isTrue();
+        assertThat(ImageVariantService.isDecodable("ab/cd/abcd.png")).isTrue();
+        assertThat(ImageVariantService.isDecodable("ab/cd/abcd.gif")).isTrue();
+        assertThat(ImageVariantService.isDecodable("ab/cd/abcd.webp")).isFalse();
+        assertThat(ImageVariantService.isDecodable("ab/cd/abcd.avif")).isFalse();
+    }
+}
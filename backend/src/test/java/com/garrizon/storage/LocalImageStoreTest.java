@@ -0,0 +1,96 @@
+package com.garrizon.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalImageStoreTest {
+
+    private static final int UPLOADS = 50;
+    private static final int SIZE = 10 * 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storesConcurrentLargeUploadsByContent() throws Exception {
+        LocalImageStore store = new LocalImageStore(directory.resolve("uploads").toString(), "http://cdn/");
+
+        ExecutorService pool = Executors.newFixedThreadPool(UPLOADS);
+        List<Future<String>> keys = new ArrayList<>();
+        try {
+            for (int i = 0; i < UPLOADS; i++) {
+                int seed = i % (UPLOADS / 2); // Every image is uploaded twice
+                keys.add(pool.submit(() -> store.store(new GeneratedStream(seed, SIZE), "image/png", "photo.png")));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        List<String> stored = new ArrayList<>();
+        for (Future<String> key : keys) {
+            stored.add(key.get());
+        }
+
+        assertThat(new HashSet<>(stored)).hasSize(UPLOADS / 2);
+        for (String key : stored) {
+            assertThat(key).endsWith(".png");
+            assertThat(Files.size(store.resolve(key).orElseThrow())).isEqualTo(SIZE);
+        }
+        assertThat(stored.get(0)).isEqualTo(stored.get(UPLOADS / 2));
+        try (Stream<Path> leftovers = Files.list(directory.resolve("uploads-tmp"))) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    /**
+     * Deterministic bytes produced on demand, so no upload is ever held in
+     * memory by the test either.
+     */
+    private static final class GeneratedStream extends InputStream {
+        private final int size;
+        private int position;
+        private long state;
+
+        private GeneratedStream(int seed, int size) {
+            this.size = size;
+            this.state = seed * 0x9E3779B97F4A7C15L + 1;
+        }
+
+        @Override
+        public int read() {
+            if (position >= size) {
+                return -1;
+            }
+            position++;
+            state ^= state << 13;
+            state ^= state >>> 7;
+            state ^= state << 17;
+            return (int) (state & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= size) {
+                return -1;
+            }
+            int n = Math.min(length, size - position);
+            for (int i = 0; i < n; i++) {
+                buffer[offset + i] = (byte) read();
+            }
+            return n;
+        }
+    }
+}